@@ -0,0 +1,189 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.PlatformFolders;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * PlatformFolders rooted in a temporary directory. Benchmarks must never touch the thumbnail cache or the trash of the
+ * user running them.
+ */
+final class BenchmarkFolders implements PlatformFolders {
+
+  private final Path root;
+
+  BenchmarkFolders(String prefix) throws IOException
+  {
+    root = Files.createTempDirectory(prefix);
+  }
+
+  Path getRoot()
+  {
+    return root;
+  }
+
+  Path createDirectory(String name) throws IOException
+  {
+    return Files.createDirectories(root.resolve(name));
+  }
+
+  void delete() throws IOException
+  {
+    deleteTree(root,
+               true);
+  }
+
+  /**
+   * Deletes everything below {@code dir}, the directory itself is kept.
+   */
+  void clear(Path dir) throws IOException
+  {
+    deleteTree(dir,
+               false);
+  }
+
+  private static void deleteTree(Path start,
+                                 boolean includeStart) throws IOException
+  {
+    if (!Files.exists(start)) {
+      return;
+    }
+    Files.walkFileTree(start,
+                       new SimpleFileVisitor<Path>() {
+                 @Override
+                 public FileVisitResult visitFile(Path file,
+                                                  BasicFileAttributes attrs) throws IOException
+                 {
+                   Files.delete(file);
+                   return FileVisitResult.CONTINUE;
+                 }
+
+                 @Override
+                 public FileVisitResult postVisitDirectory(Path dir,
+                                                           IOException exc) throws IOException
+                 {
+                   if (includeStart || !dir.equals(start)) {
+                     Files.delete(dir);
+                   }
+                   return FileVisitResult.CONTINUE;
+                 }
+
+               });
+  }
+
+  @Override
+  public Path getTrashFolder()
+  {
+    return root.resolve("Trash");
+  }
+
+  @Override
+  public Path getUserHome()
+  {
+    return root;
+  }
+
+  @Override
+  public Path getDownloadsFolder()
+  {
+    return root.resolve("Downloads");
+  }
+
+  @Override
+  public Path getDesktopFolder()
+  {
+    return root.resolve("Desktop");
+  }
+
+  @Override
+  public Path getDokumentsFolder()
+  {
+    return root.resolve("Documents");
+  }
+
+  @Override
+  public Path getPicturesFolder()
+  {
+    return root.resolve("Pictures");
+  }
+
+  @Override
+  public Path getVideosFolder()
+  {
+    return root.resolve("Videos");
+  }
+
+  @Override
+  public Path getMusicFolder()
+  {
+    return root.resolve("Music");
+  }
+
+  @Override
+  public Path getPublicDownloadsFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicDesktopFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicDokumentsFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicPicturesFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicVideosFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicMusicFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getCacheFolder()
+  {
+    return root.resolve(".cache");
+  }
+
+  @Override
+  public Path getThumbnailFolder()
+  {
+    return getCacheFolder().resolve("thumbnails");
+  }
+
+}
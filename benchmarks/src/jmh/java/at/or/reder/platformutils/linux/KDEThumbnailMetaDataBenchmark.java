@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.thumbnails.ImageThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.KDEThumbnailMetaData;
+import at.or.reder.platformutils.thumbnails.ThumbnailSize;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Parsing and serializing of the thumbnail tEXt chunks. {@link #parsePng()} is the path used by the thumbnail service,
+ * {@link #parse()} the ImageIO metadata tree it replaced. {@link #defaultMetadata()} is the baseline for
+ * {@link #serialize()}, because every serialization needs a fresh metadata tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KDEThumbnailMetaDataBenchmark {
+
+  private BenchmarkFolders folders;
+  private IIOMetadata parsedMetadata;
+  private KDEThumbnailMetaData meta;
+  private ImageWriter writer;
+  private ImageWriteParam writeParam;
+  private ImageTypeSpecifier typeSpecifier;
+  private FileChannel thumbChannel;
+
+  @Setup
+  public void setup() throws IOException
+  {
+    folders = new BenchmarkFolders("thumbMetaBench");
+    LinuxThumbnailService service = new LinuxThumbnailService(folders);
+    Path image = SyntheticImages.createImage(folders.createDirectory("images"),
+                                             "640x480",
+                                             "png");
+    Path thumb = service.getThumbnail(image,
+                                      ThumbnailSize.NORMAL,
+                                      new ImageThumbnailGenerator());
+    try (ImageInputStream iis = new FileImageInputStream(thumb.toFile())) {
+      ImageReader reader = ImageIO.getImageReaders(iis).next();
+      try {
+        reader.setInput(iis);
+        parsedMetadata = reader.getImageMetadata(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+    meta = KDEThumbnailMetaData.fromMeta(parsedMetadata);
+    thumbChannel = FileChannel.open(thumb,
+                                    StandardOpenOption.READ);
+    Iterator<ImageWriter> iter = ImageIO.getImageWritersByMIMEType("image/png");
+    writer = iter.next();
+    writeParam = writer.getDefaultWriteParam();
+    typeSpecifier = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_4BYTE_ABGR);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException
+  {
+    writer.dispose();
+    thumbChannel.close();
+    folders.delete();
+  }
+
+  @Benchmark
+  public KDEThumbnailMetaData parsePng() throws IOException
+  {
+    return KDEThumbnailMetaData.fromPng(thumbChannel);
+  }
+
+  @Benchmark
+  public KDEThumbnailMetaData parse()
+  {
+    return KDEThumbnailMetaData.fromMeta(parsedMetadata);
+  }
+
+  @Benchmark
+  public IIOMetadata defaultMetadata()
+  {
+    return writer.getDefaultImageMetadata(typeSpecifier,
+                                          writeParam);
+  }
+
+  @Benchmark
+  public IIOMetadata serialize() throws IOException
+  {
+    IIOMetadata imeta = writer.getDefaultImageMetadata(typeSpecifier,
+                                                       writeParam);
+    meta.toMeta(imeta);
+    return imeta;
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+
+/**
+ * Creates synthetic source images for the thumbnail benchmarks.
+ */
+final class SyntheticImages {
+
+  private SyntheticImages()
+  {
+  }
+
+  /**
+   * Write a gradient image with some structure, so that the PNG encoder and the scaler have real work to do.
+   *
+   * @param dir target directory
+   * @param resolution {@code WIDTHxHEIGHT}
+   * @param format ImageIO format name
+   * @return the written file
+   * @throws IOException on Error
+   */
+  static Path createImage(Path dir,
+                          String resolution,
+                          String format) throws IOException
+  {
+    int sep = resolution.indexOf('x');
+    int width = Integer.parseInt(resolution.substring(0,
+                                                      sep));
+    int height = Integer.parseInt(resolution.substring(sep + 1));
+    BufferedImage img = new BufferedImage(width,
+                                          height,
+                                          BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = img.createGraphics();
+    try {
+      g.setPaint(new GradientPaint(0,
+                                   0,
+                                   Color.BLUE,
+                                   width,
+                                   height,
+                                   Color.ORANGE));
+      g.fillRect(0,
+                 0,
+                 width,
+                 height);
+      g.setColor(Color.WHITE);
+      int step = Math.max(8,
+                          Math.min(width,
+                                   height) / 32);
+      for (int i = 0; i < width; i += step) {
+        g.drawLine(i,
+                   0,
+                   width - i,
+                   height);
+      }
+    } finally {
+      g.dispose();
+    }
+    Path result = dir.resolve("img_" + resolution + "." + format);
+    ImageIO.write(img,
+                  format,
+                  result.toFile());
+    return result;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.thumbnails.ImageThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.ThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.ThumbnailSize;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Lookup of an already existing, up to date thumbnail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ThumbnailCacheBenchmark {
+
+  @Param({"NORMAL", "LARGE", "XLARGE", "XXLARGE"})
+  public ThumbnailSize thumbnailSize;
+
+  private BenchmarkFolders folders;
+  private LinuxThumbnailService service;
+  private ThumbnailGenerator generator;
+  private Path image;
+
+  @Setup
+  public void setup() throws IOException
+  {
+    folders = new BenchmarkFolders("thumbCacheBench");
+    service = new LinuxThumbnailService(folders);
+    generator = new ImageThumbnailGenerator();
+    image = SyntheticImages.createImage(folders.createDirectory("images"),
+                                        "1920x1080",
+                                        "png");
+    service.getThumbnail(image,
+                         thumbnailSize,
+                         generator);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException
+  {
+    folders.delete();
+  }
+
+  @Benchmark
+  public Path cacheHit() throws IOException
+  {
+    return service.getThumbnail(image,
+                                thumbnailSize,
+                                generator);
+  }
+
+}
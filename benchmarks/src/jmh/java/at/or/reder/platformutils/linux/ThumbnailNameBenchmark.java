@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * MD5 based thumbnail file name computation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ThumbnailNameBenchmark {
+
+  @Param({"short", "long", "unicode"})
+  public String pathKind;
+
+  private BenchmarkFolders folders;
+  private LinuxThumbnailService service;
+  private Path file;
+
+  @Setup
+  public void setup() throws IOException
+  {
+    folders = new BenchmarkFolders("thumbNameBench");
+    service = new LinuxThumbnailService(folders);
+    file = switch (pathKind) {
+      case "long" ->
+        Paths.get("/home/user/Pictures/2024/holidays/south tyrol/day 3/hiking/DSC_20240812_143012_0042.JPG");
+      case "unicode" ->
+        Paths.get("/home/user/Bilder/Urlaub S\u00fcdtirol/\u00dcbersicht \u00c4\u00d6\u00dc \u00df.png");
+      default ->
+        Paths.get("/tmp/a.png");
+    };
+  }
+
+  @TearDown
+  public void tearDown() throws IOException
+  {
+    folders.delete();
+  }
+
+  @Benchmark
+  public String createThumbFileName() throws IOException
+  {
+    return service.createThumbFileName(file);
+  }
+
+}
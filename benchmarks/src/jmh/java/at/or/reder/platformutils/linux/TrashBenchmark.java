@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Latency of {@code moveToTrash} with 1, 4 and as many threads as cores. Sample time mode reports the percentiles
+ * (p50, p99), so contention on name allocation and {@code directorysizes} shows up in the tail. The files to trash are
+ * created before each invocation. Each iteration uses its own service, which is shut down before the temporary trash
+ * is cleared. {@link TrashPhaseBenchmark} measures the phases of a trash operation one by one.
+ * <p>
+ * Scenarios: {@code UNIQUE} trashes files with distinct names, {@code COLLIDING} trashes files that are all named
+ * {@code IMG_0001.JPG}, {@code LARGE_DIR} trashes directory trees of {@code filesPerTree} files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrashBenchmark {
+
+  private static final int SUBDIRECTORIES = 10;
+
+  @Param({"UNIQUE", "COLLIDING", "LARGE_DIR"})
+  public String scenario;
+
+  @Param({"500"})
+  public int filesPerTree;
+
+  private BenchmarkFolders folders;
+  private LinuxTrashService service;
+  private Path data;
+  private final AtomicLong counter = new AtomicLong();
+
+  @State(Scope.Thread)
+  public static class Victim {
+
+    private Path file;
+
+    @Setup(Level.Invocation)
+    public void create(TrashBenchmark benchmark) throws IOException
+    {
+      file = benchmark.createVictim();
+    }
+
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    folders = new BenchmarkFolders("trashBench");
+    data = folders.createDirectory("data");
+  }
+
+  @Setup(Level.Iteration)
+  public void createService()
+  {
+    service = new LinuxTrashService(folders);
+  }
+
+  @TearDown(Level.Iteration)
+  public void emptyTrash() throws IOException
+  {
+    // waits for the deferred directory size computations, which would otherwise race with the deletion
+    service.shutdown();
+    // only the temporary home trash, service.emptyTrash() would also purge the trashes on all other mounts
+    Path trash = folders.getTrashFolder();
+    folders.clear(trash.resolve(TrashDirectory.FILES));
+    folders.clear(trash.resolve(TrashDirectory.INFO));
+    Files.deleteIfExists(trash.resolve(TrashDirectory.DIRECTORY_SIZES));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException
+  {
+    folders.delete();
+  }
+
+  Path createVictim() throws IOException
+  {
+    long n = counter.incrementAndGet();
+    switch (scenario) {
+      case "COLLIDING":
+        return Files.writeString(Files.createDirectory(data.resolve("d" + n)).resolve("IMG_0001.JPG"),
+                                 "x");
+      case "LARGE_DIR":
+        Path tree = Files.createDirectory(data.resolve("tree" + n));
+        for (int i = 0; i < filesPerTree; ++i) {
+          Path dir = Files.createDirectories(tree.resolve("sub" + (i % SUBDIRECTORIES)));
+          Files.writeString(dir.resolve("f" + i),
+                            "x");
+        }
+        return tree;
+      default:
+        return Files.writeString(data.resolve("f" + n),
+                                 "x");
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean trash1Thread(Victim victim) throws IOException
+  {
+    return service.moveToTrash(victim.file);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean trash4Threads(Victim victim) throws IOException
+  {
+    return service.moveToTrash(victim.file);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public boolean trashMaxThreads(Victim victim) throws IOException
+  {
+    return service.moveToTrash(victim.file);
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Latency of the syscall-heavy phases of {@code moveToTrash}, each measured on its own so a regression can be traced
+ * to one phase: allocating a trash name (one {@code open(O_CREAT|O_EXCL)} per probe plus a file lock), writing the
+ * info file, appending to {@code directorysizes} (file lock per batch) and walking a trashed directory. All but the
+ * walk run on as many threads as cores, so contention shows up in the p99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrashPhaseBenchmark {
+
+  private static final int SUBDIRECTORIES = 10;
+
+  /**
+   * {@code true}: every allocation uses the same name, so each one probes past the names taken before.
+   */
+  @Param({"false", "true"})
+  public boolean colliding;
+
+  @Param({"500"})
+  public int filesPerTree;
+
+  private BenchmarkFolders folders;
+  private TrashDirectory trash;
+  private TrashNameAllocator allocator;
+  private DirectorySizesWriter directorySizesWriter;
+  private ForkJoinPool walkPool;
+  private Path tree;
+  private final AtomicLong counter = new AtomicLong();
+
+  @State(Scope.Thread)
+  public static class Writer {
+
+    private final TrashInfoWriter writer = new TrashInfoWriter();
+
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    folders = new BenchmarkFolders("trashPhaseBench");
+    walkPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    tree = folders.createDirectory("tree");
+    for (int i = 0; i < filesPerTree; ++i) {
+      Path dir = Files.createDirectories(tree.resolve("sub" + (i % SUBDIRECTORIES)));
+      Files.writeString(dir.resolve("f" + i),
+                        "x");
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void createTrash() throws IOException
+  {
+    trash = new TrashDirectory(folders.getTrashFolder(),
+                               null);
+    trash.ensureExists();
+    // the allocator caches the suffixes in use, which the teardown deletes
+    allocator = new TrashNameAllocator(trash);
+    directorySizesWriter = new DirectorySizesWriter();
+  }
+
+  @TearDown(Level.Iteration)
+  public void emptyTrash() throws IOException, InterruptedException
+  {
+    directorySizesWriter.close(10,
+                               TimeUnit.SECONDS);
+    folders.clear(trash.getInfoDir());
+    Files.deleteIfExists(trash.getDirectorySizesFile());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException
+  {
+    walkPool.close();
+    folders.delete();
+  }
+
+  private String nextName()
+  {
+    return colliding ? "IMG_0001.JPG" : "f" + counter.incrementAndGet();
+  }
+
+  /**
+   * Take a name and keep its info file, like a successful trash operation does.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Path allocateName() throws IOException
+  {
+    try (TrashContext context = allocator.allocate(nextName())) {
+      context.setSuccess(true);
+      return context.getNewDataFile();
+    }
+  }
+
+  /**
+   * Take a name and write the info file into it.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Path writeInfo(Writer writer) throws IOException
+  {
+    try (TrashContext context = allocator.allocate(nextName())) {
+      writer.writer.writeTrashInfo(context.getInfoLock().channel(),
+                                   "/home/user/" + context.getNewDataFile().getFileName(),
+                                   LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+      context.setSuccess(true);
+      return context.getNewDataFile();
+    }
+  }
+
+  /**
+   * Queue a {@code directorysizes} line and write it, as the deferred size computation of a trashed directory does.
+   */
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void appendDirectorySize() throws IOException
+  {
+    directorySizesWriter.append(trash.getDirectorySizesFile(),
+                                TrashInfoWriter.directorySizeLine(4711,
+                                                                  System.currentTimeMillis(),
+                                                                  nextName()));
+    directorySizesWriter.flush();
+  }
+
+  /**
+   * Compute the size of a directory of {@code filesPerTree} files.
+   */
+  @Benchmark
+  @Threads(1)
+  public long directorySize()
+  {
+    return walkPool.invoke(new DirectorySizeTask(tree));
+  }
+
+}
@@ -15,10 +15,48 @@
  */
 package at.or.reder.platformutils;
 
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface CommandService {
 
+  /**
+   * Creates a ProcessBuilder for {@code command} using the absolute path of the executable.
+   *
+   * @param command name of the command
+   * @return the ProcessBuilder, empty if the command is not in the search path
+   */
   Optional<ProcessBuilder> findCommand(String command);
 
+  /**
+   * Resolves {@code command} against the search path. The default implementation takes the executable of
+   * {@link #findCommand(java.lang.String)}.
+   *
+   * @param command name of the command
+   * @return absolute path of the first matching executable
+   */
+  default Optional<Path> resolveCommand(String command)
+  {
+    return findCommand(command).map(pb -> Path.of(pb.command().get(0)));
+  }
+
+  /**
+   * Resolves several commands at once.
+   *
+   * @param commands names of the commands
+   * @return the absolute paths of the commands found, commands not found are missing
+   */
+  default Map<String, Path> findCommands(Set<String> commands)
+  {
+    Map<String, Path> result = new LinkedHashMap<>();
+    for (String command : commands) {
+      resolveCommand(command).ifPresent(p -> result.put(command,
+                                                        p));
+    }
+    return result;
+  }
+
 }
@@ -16,18 +16,13 @@
 package at.or.reder.platformutils;
 
 import java.io.BufferedInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.Reader;
 import java.lang.ProcessBuilder.Redirect;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 import org.openide.util.Exceptions;
 import org.openide.util.NbBundle.Messages;
 
@@ -42,6 +37,9 @@ import org.openide.util.NbBundle.Messages;
   "Distribution_UNKNOWN=Unbekannt"})
 public enum Distribution {
   WINDOWS_MS(Bundle.Distribution_WINDOWS_MS()),
+  /**
+   * Red Hat Enterprise Linux, Fedora and CentOS, and distributions naming one of them in {@code ID_LIKE}.
+   */
   LINUX_REDHAT(Bundle.Distribution_LINUX_REDHAT()),
   LINUX_SUSE(Bundle.Distribution_LINUX_SUSE()),
   LINUX_RPI(Bundle.Distribution_LINUX_RPI()),
@@ -88,20 +86,8 @@ public enum Distribution {
               builder.append(buffer,
                              0,
                              read);
-              String desc = builder.toString().toLowerCase();
-              if (desc.contains("suse")) {
-                return Distribution.LINUX_SUSE;
-              } else if (desc.contains("raspian")) {
-                return Distribution.LINUX_RPI;
-              } else if (desc.contains("red") && desc.contains("hat")) {
-                return Distribution.LINUX_REDHAT;
-              } else if (desc.contains("debian")) {
-                return Distribution.LINUX_DEBIAN;
-              } else if (desc.contains("ubuntu")) {
-                return Distribution.LINUX_UBUNTU;
-              } else {
-                return Distribution.GENERIC_LINUX;
-              }
+              Distribution result = classify(builder.toString().strip().toLowerCase());
+              return result != null ? result : Distribution.GENERIC_LINUX;
             }
           }
         }
@@ -115,54 +101,41 @@ public enum Distribution {
     return null;
   }
 
-  private static Path findReleaseFile()
+  static Distribution classify(String id)
   {
-    Pattern pattern = Pattern.compile(".+-release");
-    Path etc = Paths.get("/etc");
-
-    try {
-      return Files.find(etc,
-                        1,
-                        (path, attr) -> {
-                          return !attr.isDirectory() && Files.isReadable(path) && pattern.matcher(
-                          path.getFileName().toString()).
-                          matches();
-                        }).findFirst().orElse(null);
-    } catch (IOException ex) {
-      Exceptions.printStackTrace(ex);
+    if (id.contains("suse")) {
+      return Distribution.LINUX_SUSE;
+    } else if (id.contains("raspbian") || id.contains("raspian")) {
+      return Distribution.LINUX_RPI;
+    } else if (id.equals("rhel") || id.equals("fedora") || id.equals("centos") || (id.contains("red") && id.contains(
+               "hat"))) {
+      return Distribution.LINUX_REDHAT;
+    } else if (id.contains("ubuntu")) {
+      return Distribution.LINUX_UBUNTU;
+    } else if (id.contains("debian")) {
+      return Distribution.LINUX_DEBIAN;
     }
     return null;
   }
 
-  private static Distribution testStarRelease()
+  static Distribution classify(OsRelease release)
   {
-    Path releaseFile = findReleaseFile();
-    if (releaseFile == null) {
-      return null;
+    // derivatives list their parents in ID_LIKE, closest first
+    Distribution result = classify(release.getId().toLowerCase());
+    for (Iterator<String> i = release.getIdLike().iterator(); result == null && i.hasNext();) {
+      result = classify(i.next().toLowerCase());
     }
-    try (LineNumberReader reader = new LineNumberReader(new FileReader(releaseFile.toFile()))) {
-      String line;
-      String desc = null;
-      while (desc == null && (line = reader.readLine()) != null) {
-        if (line.length() > 3 && line.startsWith("ID=")) {
-          desc = line.substring(3).toLowerCase();
-        }
-      }
-      if (desc != null) {
-        if (desc.contains("suse")) {
-          return Distribution.LINUX_SUSE;
-        } else if (desc.contains("raspian")) {
-          return Distribution.LINUX_RPI;
-        } else if (desc.contains("red") && desc.contains("hat")) {
-          return Distribution.LINUX_REDHAT;
-        } else if (desc.contains("debian")) {
-          return Distribution.LINUX_DEBIAN;
-        } else if (desc.contains("ubuntu")) {
-          return Distribution.LINUX_UBUNTU;
-        } else {
-          return Distribution.GENERIC_LINUX;
-        }
+    return result != null ? result : Distribution.GENERIC_LINUX;
+  }
+
+  private static Distribution testOsRelease()
+  {
+    try {
+      Optional<OsRelease> release = OsRelease.load();
+      if (release.isEmpty()) {
+        return null;
       }
+      return classify(release.get());
     } catch (IOException ex) {
       Exceptions.printStackTrace(ex);
     }
@@ -174,9 +147,9 @@ public enum Distribution {
     if (OsType.isCurrent(OsType.WINDOWS)) {
       return WINDOWS_MS;
     } else if (OsType.isCurrent(OsType.LINUX)) {
-      Distribution result = testLsbRelease();
+      Distribution result = testOsRelease();
       if (result == null) {
-        result = testStarRelease();
+        result = testLsbRelease();
       }
       if (result == null) {
         return Distribution.GENERIC_LINUX;
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+import at.or.reder.platformutils.util.ShellWord;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Operating system identification from {@code /etc/os-release}, or {@code /usr/lib/os-release} if the former does not
+ * exist. See {@code os-release(5)}.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class OsRelease {
+
+  private static final List<Path> LOCATIONS = List.of(Paths.get("/etc/os-release"),
+                                                      Paths.get("/usr/lib/os-release"));
+
+  /**
+   * Lower case identifier of the distribution, e.g. {@code ubuntu}, defaults to {@code linux}.
+   */
+  private final String id;
+  /**
+   * Identifiers of related distributions, closest first. Never {@code null}.
+   */
+  private final List<String> idLike;
+  /**
+   * Version, e.g. {@code 24.04}, {@code null} if not specified.
+   */
+  private final String versionId;
+  /**
+   * Name for display, defaults to {@code Linux}.
+   */
+  private final String prettyName;
+
+  /**
+   * Reads the first existing os-release file.
+   *
+   * @return the parsed file, empty if none exists
+   * @throws IOException if reading fails
+   */
+  public static Optional<OsRelease> load() throws IOException
+  {
+    return load(LOCATIONS);
+  }
+
+  static Optional<OsRelease> load(List<Path> locations) throws IOException
+  {
+    for (Path path : locations) {
+      try (BufferedReader reader = Files.newBufferedReader(path,
+                                                           StandardCharsets.UTF_8)) {
+        return Optional.of(parse(reader));
+      } catch (NoSuchFileException ex) {
+        // try next location
+      }
+    }
+    return Optional.empty();
+  }
+
+  public static OsRelease parse(Reader in) throws IOException
+  {
+    BufferedReader reader = in instanceof BufferedReader br ? br : new BufferedReader(in);
+    String id = "linux";
+    String idLike = "";
+    String versionId = null;
+    String prettyName = "Linux";
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.strip();
+      int equalPos = line.indexOf('=');
+      if (line.startsWith("#") || equalPos <= 0) {
+        continue;
+      }
+      String value = ShellWord.parse(line,
+                                     equalPos + 1);
+      switch (line.substring(0,
+                             equalPos)) {
+        case "ID" ->
+          id = value;
+        case "ID_LIKE" ->
+          idLike = value;
+        case "VERSION_ID" ->
+          versionId = value;
+        case "PRETTY_NAME" ->
+          prettyName = value;
+        default -> {
+        }
+      }
+    }
+    return new OsRelease(id,
+                         idLike.isBlank() ? List.of() : List.of(idLike.strip().split("\\s+")),
+                         versionId,
+                         prettyName);
+  }
+
+}
@@ -51,6 +51,33 @@ public interface PlatformFolders {
 
   Path getThumbnailFolder();
 
+  /**
+   * Registers a listener that is called after the user folders changed. The folders are watched for changes while at
+   * least one listener is registered. Implementations that cannot detect changes ignore the listener.
+   *
+   * @param listener the listener
+   */
+  default void addFoldersListener(PlatformFoldersListener listener)
+  {
+  }
+
+  /**
+   * Unregisters a listener. Watching stops with the last listener.
+   *
+   * @param listener the listener
+   */
+  default void removeFoldersListener(PlatformFoldersListener listener)
+  {
+  }
+
+  /**
+   * Reads the user folders again, for example after the application changed them or if changes cannot be watched.
+   * Listeners are notified if the folders changed.
+   */
+  default void reloadFolders()
+  {
+  }
+
 /*  public abstract Path findCommand(String command);
 
   public abstract String getHostName();
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+/**
+ * Notified when the user folders of a {@link PlatformFolders} change while the application is running. Called from
+ * the thread that detected the change.
+ */
+@FunctionalInterface
+public interface PlatformFoldersListener {
+
+  /**
+   * @param folders the folders, already returning the new values
+   */
+  void foldersChanged(PlatformFolders folders);
+
+}
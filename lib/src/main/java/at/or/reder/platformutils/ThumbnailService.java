@@ -15,15 +15,179 @@
  */
 package at.or.reder.platformutils;
 
+import at.or.reder.platformutils.thumbnails.CancellationToken;
+import at.or.reder.platformutils.thumbnails.DirectoryThumbnailPublisher;
+import at.or.reder.platformutils.thumbnails.ThumbnailBusyException;
 import at.or.reder.platformutils.thumbnails.ThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.ThumbnailMetaData;
+import at.or.reder.platformutils.thumbnails.ThumbnailResult;
 import at.or.reder.platformutils.thumbnails.ThumbnailSize;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
 
 public interface ThumbnailService {
 
+  /**
+   * Coordination of thumbnail generation between threads and processes sharing the thumbnail folder. Only processes
+   * using this library take part, other applications are not aware of the locks.
+   */
+  enum LockMode {
+    /**
+     * No coordination; concurrent generations of the same thumbnail race, the last one wins.
+     */
+    NONE,
+    /**
+     * Wait until a concurrent generation of the same thumbnail finishes and use its result.
+     */
+    WAIT,
+    /**
+     * Do not wait for a concurrent generation, throw {@link ThumbnailBusyException} instead.
+     */
+    SKIP;
+  }
+
+  /**
+   * The default implementation does not coordinate and always returns {@link LockMode#NONE}.
+   */
+  default LockMode getLockMode()
+  {
+    return LockMode.NONE;
+  }
+
+  /**
+   * The default implementation only supports {@link LockMode#NONE}.
+   *
+   * @throws UnsupportedOperationException if the mode is not supported
+   */
+  default void setLockMode(LockMode lockMode)
+  {
+    if (lockMode != LockMode.NONE) {
+      throw new UnsupportedOperationException("Lock mode " + lockMode + " not supported");
+    }
+  }
+
   Path getThumbnail(Path file,
                     ThumbnailSize thumbSize,
                     ThumbnailGenerator generator) throws IOException;
 
+  /**
+   * Get the thumbnail, but give up if generation takes longer than {@code timeout}.
+   *
+   * @throws java.io.InterruptedIOException if the timeout was exceeded
+   */
+  default Path getThumbnail(Path file,
+                            ThumbnailSize thumbSize,
+                            ThumbnailGenerator generator,
+                            Duration timeout) throws IOException
+  {
+    try (CancellationToken token = CancellationToken.withTimeout(timeout)) {
+      return getThumbnail(file,
+                          thumbSize,
+                          generator,
+                          token);
+    }
+  }
+
+  /**
+   * Get the thumbnail, generating it if necessary. Generation stops as soon as {@code token} is cancelled; no partial
+   * thumbnail is left in the cache. The default implementation only checks the token before it calls
+   * {@link #getThumbnail(Path, ThumbnailSize, ThumbnailGenerator)}, which cannot be interrupted.
+   *
+   * @throws java.io.InterruptedIOException if the token was cancelled
+   */
+  default Path getThumbnail(Path file,
+                            ThumbnailSize thumbSize,
+                            ThumbnailGenerator generator,
+                            CancellationToken token) throws IOException
+  {
+    token.throwIfCancelled();
+    return getThumbnail(file,
+                        thumbSize,
+                        generator);
+  }
+
+  /**
+   * Get an existing, up to date thumbnail. A missing thumbnail is never generated. The default implementation has no
+   * access to a cache and always returns an empty result.
+   *
+   * @param file the file
+   * @param thumbSize size of the thumbnail
+   * @return the thumbnail if it is in the cache and up to date
+   * @throws IOException on Error
+   */
+  default Optional<Path> getCachedThumbnail(Path file,
+                                            ThumbnailSize thumbSize) throws IOException
+  {
+    return Optional.empty();
+  }
+
+  /**
+   * Read the metadata of the cached thumbnails of many files, for example to show the dimensions of images in a file
+   * listing. Nothing is rendered or generated; only the PNG header chunks of existing thumbnails are read, in parallel.
+   *
+   * @param files the original files
+   * @param thumbSize the thumbnail size to look at, or {@code null} to take the first up to date thumbnail of any size
+   * @return metadata per requested file; files without up to date thumbnail are missing. The default implementation
+   * has no access to a cache and returns an empty map.
+   */
+  default Map<Path, ThumbnailMetaData> getCachedMetaData(Collection<Path> files,
+                                                         ThumbnailSize thumbSize)
+  {
+    return Map.of();
+  }
+
+  default Flow.Publisher<ThumbnailResult> getThumbnails(Path directory,
+                                                        ThumbnailSize thumbSize,
+                                                        ThumbnailGenerator generator)
+  {
+    return getThumbnails(directory,
+                         Files::isRegularFile,
+                         thumbSize,
+                         generator);
+  }
+
+  /**
+   * Get the thumbnails of all files in {@code directory} accepted by {@code filter}. The directory is listed lazily,
+   * cached thumbnails are emitted as soon as they are found and generated ones as they complete, so results arrive in
+   * no particular order. Listing and generation only proceed as far as the subscriber requests; cancelling the
+   * subscription aborts running generations. Errors of single files are reported as {@link ThumbnailResult}, an error
+   * listing the directory or an unexpected runtime exception terminates the stream with {@code onError}.
+   *
+   * @param directory the directory
+   * @param filter selects the files
+   * @param thumbSize size of the thumbnails
+   * @param generator generator for missing thumbnails
+   * @return a cold publisher; every subscription lists the directory again
+   * @see DirectoryThumbnailPublisher
+   */
+  default Flow.Publisher<ThumbnailResult> getThumbnails(Path directory,
+                                                        DirectoryStream.Filter<? super Path> filter,
+                                                        ThumbnailSize thumbSize,
+                                                        ThumbnailGenerator generator)
+  {
+    return new DirectoryThumbnailPublisher(this,
+                                           directory,
+                                           filter,
+                                           thumbSize,
+                                           generator,
+                                           Runtime.getRuntime().availableProcessors(),
+                                           Flow.defaultBufferSize(),
+                                           ConcurrentHashMap.newKeySet());
+  }
+
+  /**
+   * Cancel running {@link #getThumbnails(Path, DirectoryStream.Filter, ThumbnailSize, ThumbnailGenerator)}
+   * publications and release resources held by the service. The service must not be used afterwards.
+   */
+  default void shutdown()
+  {
+  }
 }
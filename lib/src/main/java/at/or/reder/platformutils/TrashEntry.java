@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One item in the trash.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class TrashEntry {
+
+  /**
+   * Name of the item inside the trash, unique per trash directory.
+   */
+  private final String trashName;
+  /**
+   * Where the item was before it was trashed.
+   */
+  private final Path originalPath;
+  /**
+   * When the item was trashed, {@code null} if unknown.
+   */
+  private final LocalDateTime deletionDate;
+  /**
+   * The item inside the trash.
+   */
+  private final Path trashedFile;
+  /**
+   * Size in bytes, for directories the sum of the contained files. {@code -1} if unknown.
+   */
+  private final long size;
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+/**
+ * Receives the progress of an asynchronous trash operation. Copying a directory to another file system runs on several
+ * worker threads; the listener may be called from any of them, but never concurrently, and the reported values never
+ * decrease. Intermediate values may be skipped, the final one is always reported. The listener should return quickly,
+ * the calling worker is blocked meanwhile.
+ */
+@FunctionalInterface
+public interface TrashProgressListener {
+
+  /**
+   * @param bytesDone bytes moved or copied so far, a directory moved by a rename adds none
+   * @param filesDone files processed so far
+   */
+  void progress(long bytesDone,
+                long filesDone);
+
+}
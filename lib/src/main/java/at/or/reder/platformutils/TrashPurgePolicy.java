@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the items {@link TrashService#purge(TrashPurgePolicy)} deletes permanently.
+ */
+@FunctionalInterface
+public interface TrashPurgePolicy {
+
+  /**
+   * Select the items to delete.
+   *
+   * @param entries all items in the trash; sizes are known if {@link #needsSizes()} returns {@code true}, otherwise
+   * directories missing in the size cache have size {@code -1}
+   * @return the items to delete
+   */
+  Collection<TrashEntry> select(List<TrashEntry> entries);
+
+  /**
+   * Whether {@link #select(java.util.List)} looks at the sizes. Computing the size of a directory walks the whole tree,
+   * so policies that do not need them should return {@code false}.
+   *
+   * @return {@code true} if the sizes of all items must be known
+   */
+  default boolean needsSizes()
+  {
+    return true;
+  }
+
+  /**
+   * Everything.
+   */
+  static TrashPurgePolicy all()
+  {
+    return new TrashPurgePolicy() {
+      @Override
+      public Collection<TrashEntry> select(List<TrashEntry> entries)
+      {
+        return entries;
+      }
+
+      @Override
+      public boolean needsSizes()
+      {
+        return false;
+      }
+
+    };
+  }
+
+  /**
+   * Items trashed more than {@code age} ago. Items with unknown deletion date are kept.
+   */
+  static TrashPurgePolicy olderThan(Duration age)
+  {
+    return new TrashPurgePolicy() {
+      @Override
+      public Collection<TrashEntry> select(List<TrashEntry> entries)
+      {
+        LocalDateTime limit = LocalDateTime.now().minus(age);
+        return entries.stream()
+                .filter(e -> e.getDeletionDate() != null && e.getDeletionDate().isBefore(limit))
+                .collect(Collectors.toList());
+      }
+
+      @Override
+      public boolean needsSizes()
+      {
+        return false;
+      }
+
+    };
+  }
+
+  /**
+   * The oldest items, until the remaining items take at most {@code maxBytes}. Items with unknown deletion date are
+   * considered the oldest.
+   */
+  static TrashPurgePolicy sizeQuota(long maxBytes)
+  {
+    return entries -> {
+      List<TrashEntry> sorted = new ArrayList<>(entries);
+      sorted.sort(Comparator.comparing(TrashEntry::getDeletionDate,
+                                       Comparator.nullsFirst(Comparator.naturalOrder())));
+      long total = 0;
+      for (TrashEntry e : sorted) {
+        total += Math.max(0,
+                          e.getSize());
+      }
+      List<TrashEntry> result = new ArrayList<>();
+      for (TrashEntry e : sorted) {
+        if (total <= maxBytes) {
+          break;
+        }
+        result.add(e);
+        total -= Math.max(0,
+                          e.getSize());
+      }
+      return result;
+    };
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Outcome of a batch trash operation, one entry per requested path in request order.
+ */
+public final class TrashReport {
+
+  private final Map<Path, TrashService.Outcome> outcomes;
+  private final Map<Path, IOException> errors;
+
+  public TrashReport(Map<Path, TrashService.Outcome> outcomes,
+                     Map<Path, IOException> errors)
+  {
+    this.outcomes = Collections.unmodifiableMap(new LinkedHashMap<>(outcomes));
+    this.errors = Map.copyOf(errors);
+  }
+
+  public Map<Path, TrashService.Outcome> getOutcomes()
+  {
+    return outcomes;
+  }
+
+  public TrashService.Outcome getOutcome(Path path)
+  {
+    return outcomes.get(path);
+  }
+
+  /**
+   * The exception causing {@link TrashService.Outcome#FAILED}.
+   */
+  public Optional<IOException> getError(Path path)
+  {
+    return Optional.ofNullable(errors.get(path));
+  }
+
+  public long count(TrashService.Outcome outcome)
+  {
+    return outcomes.values().stream().filter(o -> o == outcome).count();
+  }
+
+  public boolean isSuccess()
+  {
+    return count(TrashService.Outcome.SUCCESS) == outcomes.size();
+  }
+
+}
@@ -17,7 +17,17 @@ package at.or.reder.platformutils;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public interface TrashService {
 
@@ -27,12 +37,176 @@ public interface TrashService {
     CANCEL;
   }
 
+  enum Outcome {
+    SUCCESS,
+    NOT_FOUND,
+    SYMBOLIC_LINK,
+    NOT_PERMITTED,
+    FAILED,
+    /**
+     * The item has been copied to a trash on another file system, but the original could not be deleted afterwards. The
+     * item is in the trash and also still at its original location.
+     */
+    SOURCE_NOT_DELETED;
+  }
+
+  /**
+   * Move a file to the trash.
+   *
+   * @param path the file
+   * @return {@code true} on {@link Outcome#SUCCESS}
+   * @throws IOException on Error
+   */
   boolean moveToTrash(Path path) throws IOException;
 
+  /**
+   * Move many files to the trash. Failures of single files do not stop the batch. The default implementation calls
+   * {@link #moveToTrash(java.nio.file.Path)} for each file and reports {@link Outcome#FAILED} if it returns
+   * {@code false}.
+   *
+   * @param paths the files
+   * @return outcome per path
+   */
+  default TrashReport moveToTrash(Collection<Path> paths)
+  {
+    Map<Path, Outcome> outcomes = new LinkedHashMap<>();
+    Map<Path, IOException> errors = new HashMap<>();
+    for (Path path : paths) {
+      try {
+        outcomes.put(path,
+                     moveToTrash(path) ? Outcome.SUCCESS : Outcome.FAILED);
+      } catch (IOException ex) {
+        outcomes.put(path,
+                     Outcome.FAILED);
+        errors.put(path,
+                   ex);
+      }
+    }
+    return new TrashReport(outcomes,
+                           errors);
+  }
+
+  default CompletableFuture<Boolean> moveToTrashAsync(Path path)
+  {
+    return moveToTrashAsync(path,
+                            null);
+  }
+
+  /**
+   * Move a file to the trash without blocking the caller. Cancelling the future before the file has been moved rolls
+   * the operation back, the file stays where it is. The default implementation calls
+   * {@link #moveToTrash(java.nio.file.Path)} on a virtual thread and reports no progress; cancelling only has an effect
+   * before the move has started.
+   *
+   * @param path the file
+   * @param listener receives the progress, may be {@code null}
+   * @return completes with the result of {@link #moveToTrash(java.nio.file.Path)}
+   */
+  default CompletableFuture<Boolean> moveToTrashAsync(Path path,
+                                                      TrashProgressListener listener)
+  {
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    Thread.ofVirtual().name("trash-async").start(() -> {
+      if (result.isDone()) {
+        return;
+      }
+      try {
+        result.complete(moveToTrash(path));
+      } catch (IOException | RuntimeException ex) {
+        result.completeExceptionally(ex);
+      }
+    });
+    return result;
+  }
+
   default boolean restoreFromTrash(Path path) throws IOException
   {
     return restoreFromTrash(path, (exitsting, toRestore) -> CollisionAction.CANCEL);
   }
 
   boolean restoreFromTrash(Path path, BiFunction<Path, Path, CollisionAction> collisionResolver) throws IOException;
+
+  /**
+   * Restore one item, for example found by {@link #findInTrash(java.nio.file.Path, java.time.LocalDateTime,
+   * java.time.LocalDateTime)}. There is no default, the entry has to be checked against the trash directories of the
+   * platform before anything is moved.
+   *
+   * @param entry the item
+   * @param collisionResolver decides if the original location is taken
+   * @return {@code true} if the item has been restored
+   * @throws IOException on Error
+   */
+  boolean restoreFromTrash(TrashEntry entry,
+                           BiFunction<Path, Path, CollisionAction> collisionResolver) throws IOException;
+
+  /**
+   * Find items by original location and deletion date, without reading every info file. Sizes are not determined.
+   * The default implementation filters {@link #listTrash()}.
+   *
+   * @param pathPrefix original path or one of its ancestors, {@code null} for any
+   * @param from earliest deletion date, inclusive, {@code null} for no lower bound
+   * @param to latest deletion date, exclusive, {@code null} for no upper bound
+   * @return the items sorted by original path
+   * @throws IOException on Error
+   */
+  default List<TrashEntry> findInTrash(Path pathPrefix,
+                                       LocalDateTime from,
+                                       LocalDateTime to) throws IOException
+  {
+    try (Stream<TrashEntry> entries = listTrash()) {
+      return entries.filter(e -> pathPrefix == null || e.getOriginalPath().startsWith(pathPrefix))
+              .filter(e -> from == null || (e.getDeletionDate() != null && !e.getDeletionDate().isBefore(from)))
+              .filter(e -> to == null || (e.getDeletionDate() != null && e.getDeletionDate().isBefore(to)))
+              .sorted(Comparator.comparing(TrashEntry::getOriginalPath))
+              .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * List the items in all trash directories. The stream is lazy, the first entries are available before the trash is
+   * read completely. The sizes of directories are taken from the size cache of the trash, {@code -1} if not cached. The
+   * stream must be closed. There is no default, reading the trash depends on the platform.
+   *
+   * @return the items
+   */
+  Stream<TrashEntry> listTrash();
+
+  /**
+   * Delete items permanently. There is no default, removing an item also removes its metadata, which depends on the
+   * platform.
+   *
+   * @param policy selects the items to delete
+   * @return outcome per deleted item, keyed by {@link TrashEntry#getTrashedFile()}
+   */
+  TrashReport purge(TrashPurgePolicy policy);
+
+  /**
+   * Total size of all items in the trash in bytes. The first call reads the sizes from the trash, later calls return a
+   * total kept current by the operations of this service. If other programs changed the trash meanwhile, the sizes are
+   * read again. The default implementation sums the sizes reported by {@link #listTrash()} on every call, items of
+   * unknown size are not counted.
+   *
+   * @return the size in bytes
+   */
+  default long getTrashSize()
+  {
+    try (Stream<TrashEntry> entries = listTrash()) {
+      return entries.mapToLong(TrashEntry::getSize)
+              .filter(size -> size > 0)
+              .sum();
+    }
+  }
+
+  default TrashReport emptyTrash()
+  {
+    return purge(TrashPurgePolicy.all());
+  }
+
+  /**
+   * Release threads and file system watches held by the service. Running operations are finished first. The service
+   * must not be used afterwards.
+   */
+  default void shutdown()
+  {
+  }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Copies a file or directory tree to another file system. Regular files are copied with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, which lets the kernel copy
+ * ({@code copy_file_range} or {@code sendfile}), and are synced to disk. Every entry of a directory is copied by its
+ * own forked task. Permissions and times are preserved, symbolic links and special files are copied as they are. A
+ * file whose size changed while it was copied fails the copy. Failures are thrown as {@link UncheckedIOException}.
+ */
+final class CopyTreeTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+  /**
+   * bytes per transfer, cancellation is checked in between.
+   */
+  private static final long CHUNK_SIZE = 8L * 1024 * 1024;
+
+  private final transient Path source;
+  private final transient Path target;
+  private final transient PosixFileAttributes attr;
+  private final transient TrashProgress progress;
+
+  CopyTreeTask(Path source,
+               Path target,
+               PosixFileAttributes attr,
+               TrashProgress progress)
+  {
+    this.source = source;
+    this.target = target;
+    this.attr = attr;
+    this.progress = progress;
+  }
+
+  static PosixFileAttributes readAttributes(Path path) throws IOException
+  {
+    return Files.readAttributes(path,
+                                PosixFileAttributes.class,
+                                LinkOption.NOFOLLOW_LINKS);
+  }
+
+  @Override
+  protected void compute()
+  {
+    progress.checkCancelled();
+    try {
+      if (attr.isDirectory()) {
+        copyDirectory();
+      } else if (attr.isRegularFile()) {
+        copyFile();
+      } else {
+        Files.copy(source,
+                   target,
+                   StandardCopyOption.COPY_ATTRIBUTES,
+                   LinkOption.NOFOLLOW_LINKS);
+        progress.fileDone();
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void copyDirectory() throws IOException
+  {
+    // writable for us until the content is complete
+    Files.createDirectory(target,
+                          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    List<CopyTreeTask> children = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+      for (Path child : stream) {
+        children.add(new CopyTreeTask(child,
+                                      target.resolve(child.getFileName().toString()),
+                                      readAttributes(child),
+                                      progress));
+      }
+    }
+    awaitAll(children);
+    copyAttributes();
+    sync(target);
+  }
+
+  /**
+   * Run the children and wait until all of them have finished, also if one fails.
+   * {@link #invokeAll(java.util.Collection)} may return on the first failure while other children are still copying,
+   * the rollback of the caller would then race with them.
+   */
+  private static void awaitAll(List<CopyTreeTask> children)
+  {
+    for (CopyTreeTask child : children) {
+      child.fork();
+    }
+    Throwable failure = null;
+    for (CopyTreeTask child : children) {
+      child.quietlyJoin();
+      if (failure == null && child.isCompletedAbnormally()) {
+        failure = child.getException();
+      }
+    }
+    if (failure instanceof RuntimeException rex) {
+      throw rex;
+    }
+    if (failure instanceof Error error) {
+      throw error;
+    }
+  }
+
+  private void copyFile() throws IOException
+  {
+    try (FileChannel in = FileChannel.open(source,
+                                           StandardOpenOption.READ)) {
+      try (FileChannel out = FileChannel.open(target,
+                                              StandardOpenOption.WRITE,
+                                              StandardOpenOption.CREATE_NEW)) {
+        long size = in.size();
+        long pos = 0;
+        while (pos < size) {
+          progress.checkCancelled();
+          long count = in.transferTo(pos,
+                                     Math.min(CHUNK_SIZE,
+                                              size - pos),
+                                     out);
+          if (count <= 0) {
+            // truncated while copying
+            break;
+          }
+          pos += count;
+          progress.bytesDone(count);
+          TrashStatistics.INSTANCE.bytesCopied.add(count);
+        }
+        if (pos != size || in.size() != size) {
+          // the source is deleted after the copy, so an incomplete copy must not succeed
+          throw new IOException(source.toString() + " changed while copying");
+        }
+        out.force(true);
+      }
+    }
+    copyAttributes();
+    progress.fileDone();
+  }
+
+  private void copyAttributes() throws IOException
+  {
+    PosixFileAttributeView view = Files.getFileAttributeView(target,
+                                                             PosixFileAttributeView.class,
+                                                             LinkOption.NOFOLLOW_LINKS);
+    view.setPermissions(attr.permissions());
+    view.setTimes(attr.lastModifiedTime(),
+                  attr.lastAccessTime(),
+                  null);
+  }
+
+  /**
+   * fsync a directory, so the names of its entries are durable. Not every file system supports it.
+   */
+  static void sync(Path dir)
+  {
+    try (FileChannel channel = FileChannel.open(dir,
+                                                StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException ex) {
+      // best effort
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+/**
+ * Moves files into a trash on another file system, which {@link java.nio.file.Files#move} would do with a single
+ * threaded copy. The copy runs in a bounded pool and is synced to disk before the source is deleted, so a crash never
+ * loses the only copy. A failed or cancelled copy is removed again.
+ */
+@Log
+final class CrossDeviceMover {
+
+  private final ForkJoinPool pool;
+
+  CrossDeviceMover(ForkJoinPool pool)
+  {
+    this.pool = pool;
+  }
+
+  /**
+   * Copy {@code source} to {@code target}. After this returns the copy is complete and durable.
+   *
+   * @param source the file or directory
+   * @param target the new path, must not exist
+   * @param progress progress and cancellation
+   * @throws IOException on Error, {@code target} has been removed
+   * @throws CancellationException if cancelled, {@code target} has been removed
+   */
+  void copy(Path source,
+            Path target,
+            TrashProgress progress) throws IOException
+  {
+    try {
+      pool.invoke(new CopyTreeTask(source,
+                                   target,
+                                   CopyTreeTask.readAttributes(source),
+                                   progress));
+      CopyTreeTask.sync(target.getParent());
+    } catch (IOException | RuntimeException ex) {
+      rollback(target);
+      if (ex instanceof UncheckedIOException uex) {
+        throw uex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private void rollback(Path target)
+  {
+    try {
+      pool.invoke(new DeleteTreeTask(target));
+    } catch (RuntimeException ex) {
+      log.log(Level.WARNING,
+              "Cannot remove incomplete copy " + target.toString(),
+              ex);
+    }
+  }
+
+  /**
+   * Delete the source after the copy has been committed.
+   *
+   * @param source the file or directory
+   * @throws IOException on Error
+   */
+  void deleteSource(Path source) throws IOException
+  {
+    try {
+      pool.invoke(new DeleteTreeTask(source));
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Deletes a file or directory tree. Subdirectories are deleted by forked subtasks, symbolic links are deleted, never
+ * followed. Files vanishing in between are ignored. Failures are thrown as {@link UncheckedIOException}.
+ */
+final class DeleteTreeTask extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient Path path;
+
+  DeleteTreeTask(Path path)
+  {
+    this.path = path;
+  }
+
+  @Override
+  protected void compute()
+  {
+    try {
+      final BasicFileAttributes attr;
+      try {
+        attr = Files.readAttributes(path,
+                                    BasicFileAttributes.class,
+                                    LinkOption.NOFOLLOW_LINKS);
+      } catch (NoSuchFileException ex) {
+        return;
+      }
+      if (attr.isDirectory()) {
+        deleteChildren();
+      }
+      Files.deleteIfExists(path);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private void deleteChildren() throws IOException
+  {
+    List<DeleteTreeTask> subDirs = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+      for (Path child : stream) {
+        if (Files.isDirectory(child,
+                              LinkOption.NOFOLLOW_LINKS)) {
+          subDirs.add(new DeleteTreeTask(child));
+        } else {
+          Files.deleteIfExists(child);
+        }
+      }
+    }
+    invokeAll(subDirs);
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sums the sizes of the regular files in a directory tree. Subdirectories are walked by forked subtasks, symbolic links
+ * are not followed. Failures are thrown as {@link UncheckedIOException}.
+ */
+final class DirectorySizeTask extends RecursiveTask<Long> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient Path dir;
+
+  DirectorySizeTask(Path dir)
+  {
+    this.dir = dir;
+  }
+
+  @Override
+  protected Long compute()
+  {
+    long result = 0;
+    List<DirectorySizeTask> subDirs = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path child : stream) {
+        final BasicFileAttributes attr;
+        try {
+          attr = Files.readAttributes(child,
+                                      BasicFileAttributes.class,
+                                      LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException ex) {
+          continue;
+        }
+        if (attr.isDirectory()) {
+          subDirs.add(new DirectorySizeTask(child));
+        } else if (attr.isRegularFile()) {
+          result += attr.size();
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    for (DirectorySizeTask task : invokeAll(subDirs)) {
+      result += task.join();
+    }
+    return result;
+  }
+
+}
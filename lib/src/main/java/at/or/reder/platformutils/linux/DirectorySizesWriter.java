@@ -0,0 +1,324 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+
+/**
+ * The only writer of {@code directorysizes} files in this process. Lines from all threads are queued and written in
+ * batches by one flush task, with one file lock per file and batch. The flush waits for file locks of other processes,
+ * so it runs on a thread of its own rather than blocking a worker of a shared pool. The JVM cannot hold overlapping
+ * locks on a file, so every change of a {@code directorysizes} file must go through here.
+ */
+@Log
+final class DirectorySizesWriter {
+
+  @RequiredArgsConstructor
+  private static final class PendingLine {
+
+    private final Path file;
+    private final String line;
+  }
+
+  private static final Object NO_FILE_KEY = new Object();
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+    Thread result = new Thread(r,
+                               "directorysizes-writer");
+    result.setDaemon(true);
+    return result;
+  });
+  private final ConcurrentLinkedQueue<PendingLine> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  /**
+   * guards all file access and {@link #writer}.
+   */
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final TrashInfoWriter writer = new TrashInfoWriter();
+
+  /**
+   * Stop the writer thread after writing all queued lines. Lines queued afterwards are written by the caller.
+   *
+   * @param timeout how long to wait for the writer thread
+   * @param unit unit of {@code timeout}
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void close(long timeout,
+             TimeUnit unit) throws InterruptedException
+  {
+    executor.shutdown();
+    if (!executor.awaitTermination(timeout,
+                                   unit)) {
+      log.log(Level.WARNING,
+              "directorysizes writer still running after {0} {1}",
+              new Object[]{timeout, unit});
+    }
+    flushQuietly();
+  }
+
+  /**
+   * Queue a line for appending.
+   *
+   * @param file the {@code directorysizes} file
+   * @param line the line including line separator
+   */
+  void append(Path file,
+              String line)
+  {
+    pending.add(new PendingLine(file,
+                                line));
+    if (flushScheduled.compareAndSet(false,
+                                     true)) {
+      try {
+        executor.execute(this::flushQuietly);
+      } catch (RejectedExecutionException ex) {
+        // closed
+        flushQuietly();
+      }
+    }
+  }
+
+  private void flushQuietly()
+  {
+    try {
+      flush();
+    } catch (IOException ex) {
+      // only the size cache is incomplete
+      log.log(Level.WARNING,
+              "Cannot update directorysizes",
+              ex);
+    }
+  }
+
+  /**
+   * Write all queued lines.
+   *
+   * @throws IOException on Error
+   */
+  void flush() throws IOException
+  {
+    writeLock.lock();
+    try {
+      // lines queued from now on schedule the next flush
+      flushScheduled.set(false);
+      Map<Path, List<String>> lines = new LinkedHashMap<>();
+      PendingLine p;
+      while ((p = pending.poll()) != null) {
+        lines.computeIfAbsent(p.file,
+                              k -> new ArrayList<>()).add(p.line);
+      }
+      for (Map.Entry<Path, List<String>> e : lines.entrySet()) {
+        FileLock lock = openLocked(e.getKey(),
+                                   e.getValue().size(),
+                                   StandardOpenOption.CREATE,
+                                   StandardOpenOption.APPEND,
+                                   StandardOpenOption.WRITE);
+        try (FileChannel channel = lock.channel()) {
+          writer.writeLines(channel,
+                            e.getValue());
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Open and lock {@code file}. {@link #compact(TrashDirectory)} replaces the file while it holds the lock on the old
+   * one, so a lock that turns out to be on a replaced file is dropped and the new file is opened. The channel is still
+   * open when the keys are compared, so its inode cannot have been reused.
+   *
+   * @return the lock, closing its channel releases it
+   */
+  private static FileLock openLocked(Path file,
+                                     int lines,
+                                     OpenOption... options) throws IOException
+  {
+    while (true) {
+      Object key = getFileKey(file);
+      FileChannel channel = FileChannel.open(file,
+                                             options);
+      try {
+        FileLock lock = lock(channel,
+                             file,
+                             lines);
+        if (key != null && key.equals(getFileKey(file))) {
+          return lock;
+        }
+      } catch (IOException | RuntimeException ex) {
+        channel.close();
+        throw ex;
+      }
+      channel.close();
+    }
+  }
+
+  /**
+   * @return the file key, {@code null} if {@code file} does not exist
+   */
+  private static Object getFileKey(Path file) throws IOException
+  {
+    try {
+      Object key = Files.readAttributes(file,
+                                        BasicFileAttributes.class).fileKey();
+      return key != null ? key : NO_FILE_KEY;
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Lock a {@code directorysizes} file, other processes may hold the lock.
+   */
+  private static FileLock lock(FileChannel channel,
+                               Path file,
+                               int lines) throws IOException
+  {
+    TrashEvents.DirectorySizesLock event = new TrashEvents.DirectorySizesLock();
+    event.begin();
+    long start = System.nanoTime();
+    FileLock result = channel.lock();
+    TrashStatistics.INSTANCE.directorySizesLockWaitNanos.add(System.nanoTime() - start);
+    if (event.shouldCommit()) {
+      event.file = file.toString();
+      event.lines = lines;
+      event.commit();
+    }
+    return result;
+  }
+
+  /**
+   * Rewrite the {@code directorysizes} file of {@code trash} without stale lines: lines of items no longer in the
+   * trash, lines whose modification time does not match the info file, and all but the last line of an item. The new
+   * content is written to a temporary file that replaces the old one, so a crash leaves the old or the new file.
+   *
+   * @param trash the trash directory
+   * @throws IOException on Error
+   */
+  void compact(TrashDirectory trash) throws IOException
+  {
+    writeLock.lock();
+    try {
+      flush();
+      Path file = trash.getDirectorySizesFile();
+      final FileLock lock;
+      try {
+        lock = openLocked(file,
+                          0,
+                          StandardOpenOption.READ,
+                          StandardOpenOption.WRITE);
+      } catch (NoSuchFileException ex) {
+        return;
+      }
+      // writers of other processes wait for the lock and then find the replaced file
+      try (FileChannel channel = lock.channel()) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        buffer.flip();
+        // last line per item wins
+        Map<String, String> valid = new LinkedHashMap<>();
+        for (String line : StandardCharsets.UTF_8.decode(buffer).toString().split("\n")) {
+          String[] parts = line.split(" ",
+                                      3);
+          if (parts.length == 3) {
+            String trashName = TrashPaths.decode(parts[2]);
+            valid.remove(trashName);
+            if (isValid(trash,
+                        trashName,
+                        parts[1])) {
+              valid.put(trashName,
+                        line + "\n");
+            }
+          }
+        }
+        replace(file,
+                valid.values());
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void replace(Path file,
+                       Collection<String> lines) throws IOException
+  {
+    Path tmp = file.resolveSibling(file.getFileName().toString() + "." + ProcessHandle.current().pid() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmp,
+                                                  StandardOpenOption.CREATE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                                  StandardOpenOption.WRITE)) {
+        writer.writeLines(channel,
+                          lines);
+        channel.force(true);
+      }
+      Files.move(tmp,
+                 file,
+                 StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(tmp);
+      throw ex;
+    }
+    CopyTreeTask.sync(file.getParent());
+  }
+
+  private static boolean isValid(TrashDirectory trash,
+                                 String trashName,
+                                 String mtime)
+  {
+    try {
+      long infoMTime = Files.getLastModifiedTime(trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX))
+              .toMillis();
+      return Long.parseLong(mtime) == infoMTime && Files.isDirectory(trash.getFilesDir().resolve(trashName),
+                                                                     LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException | NumberFormatException ex) {
+      return false;
+    } catch (IOException ex) {
+      // keep what cannot be checked
+      return true;
+    }
+  }
+
+}
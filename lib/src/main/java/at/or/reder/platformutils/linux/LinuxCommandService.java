@@ -17,32 +17,209 @@ package at.or.reder.platformutils.linux;
 
 import at.or.reder.platformutils.CommandService;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
 
+/**
+ * Looks up commands in {@code $PATH}. Results, including misses, are cached until the modification time of one of the
+ * search directories changes; the directories are checked at most once per {@link #REVALIDATE_NANOS}. Making a file
+ * executable does not change the modification time of its directory, so misses also expire after
+ * {@link #MISS_TTL_NANOS}.
+ */
 class LinuxCommandService implements CommandService {
 
+  private static final long REVALIDATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MISS_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * A cached lookup.
+   */
+  @RequiredArgsConstructor
+  private static final class CachedLookup {
+
+    /**
+     * the executable, {@code null} for a miss.
+     */
+    private final Path path;
+    private final long time;
+
+    boolean isValid(long now)
+    {
+      return path != null || now - time < MISS_TTL_NANOS;
+    }
+
+  }
+
+  private final List<Path> searchPath;
+  // replaced as a whole on invalidation, so a lookup racing with it cannot store a stale entry in the new map
+  private volatile ConcurrentHashMap<String, CachedLookup> cache = new ConcurrentHashMap<>();
+  private volatile long[] dirStamps;
+  private volatile long lastValidation;
+
+  LinuxCommandService()
+  {
+    this(System.getenv("PATH"));
+  }
+
+  LinuxCommandService(String path)
+  {
+    Set<Path> dirs = new LinkedHashSet<>();
+    if (path != null) {
+      for (String p : path.split(File.pathSeparator)) {
+        // an empty entry would mean the working directory, which is not searched on purpose
+        if (!p.isEmpty()) {
+          dirs.add(Paths.get(p).toAbsolutePath().normalize());
+        }
+      }
+    }
+    searchPath = List.copyOf(dirs);
+  }
+
+  private long[] readStamps()
+  {
+    long[] result = new long[searchPath.size()];
+    for (int i = 0; i < result.length; ++i) {
+      try {
+        result[i] = Files.getLastModifiedTime(searchPath.get(i)).to(TimeUnit.NANOSECONDS);
+      } catch (IOException ex) {
+        result[i] = Long.MIN_VALUE;
+      }
+    }
+    return result;
+  }
+
+  private Map<String, CachedLookup> validCache()
+  {
+    long now = System.nanoTime();
+    if (dirStamps == null || now - lastValidation >= REVALIDATE_NANOS) {
+      lastValidation = now;
+      long[] current = readStamps();
+      if (!Arrays.equals(current,
+                         dirStamps)) {
+        cache = new ConcurrentHashMap<>();
+        dirStamps = current;
+      }
+    }
+    return cache;
+  }
+
+  private static boolean isCommand(Path file)
+  {
+    return Files.isRegularFile(file) && Files.isExecutable(file);
+  }
+
+  private Path search(String command)
+  {
+    for (Path dir : searchPath) {
+      Path candidate = dir.resolve(command);
+      if (isCommand(candidate)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Optional<Path> resolveCommand(String command)
+  {
+    if (command.indexOf('/') >= 0) {
+      // explicit path, not searched
+      Path file = Paths.get(command).toAbsolutePath();
+      return isCommand(file) ? Optional.of(file) : Optional.empty();
+    }
+    Map<String, CachedLookup> current = validCache();
+    long now = System.nanoTime();
+    CachedLookup lookup = current.get(command);
+    if (lookup == null || !lookup.isValid(now)) {
+      lookup = new CachedLookup(search(command),
+                                now);
+      current.put(command,
+                  lookup);
+    }
+    return Optional.ofNullable(lookup.path);
+  }
+
   @Override
   public Optional<ProcessBuilder> findCommand(String command)
   {
-    Path pathToCommand = null;
-    String path = System.getenv("PATH");
-    if (path != null) {
-      String[] paths = path.split(File.pathSeparator);
-      for (String p : paths) {
-        Path result = Paths.get(p,
-                                command);
-        if (Files.isExecutable(result)) {
-          pathToCommand = result;
+    return resolveCommand(command).map(p -> new ProcessBuilder(p.toString()));
+  }
+
+  /**
+   * Resolves all commands in a single pass over the search path, each directory is visited once.
+   *
+   * @return the commands found, in the iteration order of {@code commands}
+   */
+  @Override
+  public Map<String, Path> findCommands(Set<String> commands)
+  {
+    Map<String, CachedLookup> current = validCache();
+    long now = System.nanoTime();
+    Map<String, Path> found = new HashMap<>();
+    List<String> pending = new ArrayList<>();
+    for (String command : commands) {
+      if (command.indexOf('/') >= 0) {
+        resolveCommand(command).ifPresent(p -> found.put(command,
+                                                         p));
+        continue;
+      }
+      CachedLookup cached = current.get(command);
+      if (cached == null || !cached.isValid(now)) {
+        pending.add(command);
+      } else if (cached.path != null) {
+        found.put(command,
+                  cached.path);
+      }
+    }
+    for (Path dir : searchPath) {
+      if (pending.isEmpty()) {
+        break;
+      }
+      if (!Files.isDirectory(dir)) {
+        continue;
+      }
+      for (Iterator<String> i = pending.iterator(); i.hasNext();) {
+        String command = i.next();
+        Path candidate = dir.resolve(command);
+        if (isCommand(candidate)) {
+          found.put(command,
+                    candidate);
+          current.put(command,
+                      new CachedLookup(candidate,
+                                       now));
+          i.remove();
         }
       }
     }
-    if (pathToCommand != null) {
-      return Optional.of(new ProcessBuilder(command));
+    for (String command : pending) {
+      current.put(command,
+                  new CachedLookup(null,
+                                   now));
+    }
+    Map<String, Path> result = new LinkedHashMap<>();
+    for (String command : commands) {
+      Path path = found.get(command);
+      if (path != null) {
+        result.put(command,
+                   path);
+      }
     }
-    return Optional.empty();
+    return result;
   }
 
 }
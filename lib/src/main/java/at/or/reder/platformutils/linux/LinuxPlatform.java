@@ -18,15 +18,25 @@ package at.or.reder.platformutils.linux;
 import at.or.reder.platformutils.Distribution;
 import at.or.reder.platformutils.Platform;
 import at.or.reder.platformutils.util.LazyInitialized;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Optional;
-import java.util.Scanner;
 import lombok.Getter;
 import org.openide.util.Lookup;
 import org.openide.util.lookup.Lookups;
 
 public class LinuxPlatform implements Platform {
- 
+
+  private static final Path KERNEL_HOSTNAME = Paths.get("/proc/sys/kernel/hostname");
+  private static final Path ETC_HOSTNAME = Paths.get("/etc/hostname");
+  private static final Duration HOSTNAME_TTL = Duration.ofSeconds(5);
+
   private static final class InstanceHolder {
 
     private static final LinuxPlatform INSTANCE = new LinuxPlatform();
@@ -40,6 +50,9 @@ public class LinuxPlatform implements Platform {
   @Getter
   private final Lookup lookup;
   private final LazyInitialized<Distribution> distribution = new LazyInitialized<>(Distribution::detectDistribution);
+  // the UTS name can be changed at runtime, reading procfs again once in a while is cheap
+  private final LazyInitialized<String> hostName = new LazyInitialized<>(LinuxPlatform::loadHostName,
+                                                                         HOSTNAME_TTL);
 
   public LinuxPlatform()
   {
@@ -56,38 +69,52 @@ public class LinuxPlatform implements Platform {
     return distribution.get();
   }
 
-  private String execReadToString(String... execCommand) throws IOException
+  private static String readFirstLine(Path file)
   {
-    try (Scanner s = new Scanner(Runtime.getRuntime().exec(execCommand).getInputStream()).useDelimiter("\\A")) {
-      return s.hasNext() ? s.next() : "";
+    try (BufferedReader reader = Files.newBufferedReader(file,
+                                                         StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      return line != null ? line.strip() : null;
+    } catch (IOException ex) {
+      return null;
     }
   }
 
-  @Override
-  public Optional<String> getHostName()
+  private static String loadHostName()
   {
-    String result;
-    result = System.getenv("HOSTNAME");
-    if (result == null || result.isEmpty() || result.trim().isEmpty()) {
-      try {
-        result = execReadToString("hostname");
-      } catch (IOException ex) {
-        // ignore exception and try another solution
-      }
+    return loadHostName(KERNEL_HOSTNAME,
+                        ETC_HOSTNAME);
+  }
 
+  /**
+   * The UTS name from procfs, then the configured name, then the resolver and finally {@code $HOSTNAME}.
+   *
+   * @return the host name, {@code null} if none of them is known
+   */
+  static String loadHostName(Path kernelHostName,
+                             Path etcHostName)
+  {
+    String result = readFirstLine(kernelHostName);
+    if (result == null || result.isEmpty()) {
+      result = readFirstLine(etcHostName);
     }
-    if (result == null || result.isEmpty() || result.trim().isEmpty()) {
+    if (result == null || result.isEmpty()) {
       try {
-        result = execReadToString("cat", "/etc/hostname");
+        result = InetAddress.getLocalHost().getHostName();
       } catch (IOException ex) {
         // ignore exception and try another solution
       }
     }
-    if (result == null || result.isEmpty() || result.trim().isEmpty()) {
-      return Optional.empty();
-    } else {
-      return Optional.of(result);
+    if (result == null || result.isBlank()) {
+      result = System.getenv("HOSTNAME");
     }
+    return result == null || result.isBlank() ? null : result.strip();
+  }
+
+  @Override
+  public Optional<String> getHostName()
+  {
+    return hostName.getOptional();
   }
 
 }
@@ -16,26 +16,32 @@
 package at.or.reder.platformutils.linux;
 
 import at.or.reder.platformutils.PlatformFolders;
+import at.or.reder.platformutils.PlatformFoldersListener;
 import at.or.reder.platformutils.util.LazyInitialized;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
 
+@Log
 class LinuxPlatformFolders implements PlatformFolders {
 
-  private final LazyInitialized<Path> publicShare = new LazyInitialized(() -> loadPathFromUserDir("XDG_PUBLICSHARE_DIR"));
   private final LazyInitialized<Path> home = new LazyInitialized(() -> Paths.get(System.getProperty("user.home")));
   private final LazyInitialized<Path> recyclebin = new LazyInitialized(this::createRecycleBinPath);
-  private final LazyInitialized<Path> downloads = new LazyInitialized(() -> loadPathFromUserDir("XDG_DOWNLOAD_DIR"));
-  private final LazyInitialized<Path> desktop = new LazyInitialized(() -> loadPathFromUserDir("XDG_DESKTOP_DIR"));
-  private final LazyInitialized<Path> documents = new LazyInitialized(() -> loadPathFromUserDir("XDG_DOCUMENTS_DIR"));
-  private final LazyInitialized<Path> pictures = new LazyInitialized(() -> loadPathFromUserDir("XDG_PICTURES_DIR"));
-  private final LazyInitialized<Path> videos = new LazyInitialized(() -> loadPathFromUserDir("XDG_VIDEOS_DIR"));
-  private final LazyInitialized<Path> music = new LazyInitialized(() -> loadPathFromUserDir("XDG_MUSIC_DIR"));
+  private final UserDirsSnapshot userDirs = new UserDirsSnapshot(Paths.get(System.getProperty("user.home")),
+                                                                getConfigHome().resolve(UserDirs.USER_DIRS),
+                                                                UserDirs.DEFAULTS,
+                                                                this::fireFoldersChanged);
+  private final List<PlatformFoldersListener> listeners = new CopyOnWriteArrayList<>();
+  /**
+   * serializes starting and stopping the watcher with the first and last listener.
+   */
+  private final ReentrantLock listenerLock = new ReentrantLock();
   private final LazyInitialized<Path> cacheDir = new LazyInitialized(this::getCacheRoot);
   private final LazyInitialized<Path> thumbnailDir = new LazyInitialized(this::loadThumbnailDir);
 
@@ -117,61 +123,9 @@ class LinuxPlatformFolders implements PlatformFolders {
                      "Trash");
   }
 
-  private Path loadPathFromUserDir(String folderId)
+  private Path getUserDir(String folderId)
   {
-    String strHome = home.get().toString().trim();
-    Path path = Paths.get(getConfigHome().toString(),
-                          "user-dirs.dirs");
-    try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(Files.newInputStream(path)))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        line = line.trim();
-        if (line.startsWith(folderId)) {
-          int equalPos = line.indexOf('=');
-          if (equalPos > 0) {
-            String tmp = line.substring(equalPos + 1);
-            tmp = tmp.replaceAll("\"",
-                                 "");
-            tmp = tmp.replaceAll("\\$HOME",
-                                 strHome);
-            return Paths.get(tmp);
-          }
-        }
-      }
-    } catch (IOException ex) {
-
-    }
-    return loadPathFromUserDirDefaults(folderId,
-                                       strHome);
-  }
-
-  private Path loadPathFromUserDirDefaults(String folderId,
-                                           String strHome)
-  {
-    Path path = Paths.get(File.separator + "etc",
-                          "xdg",
-                          "user-dirs.defaults");
-    String transformed = folderId.replaceAll("(XDG_)|(_DIR)",
-                                             "");
-    try (LineNumberReader reader = new LineNumberReader(new InputStreamReader(Files.newInputStream(path)))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        line = line.trim();
-        if (line.startsWith(transformed)) {
-          int equalPos = line.indexOf('=');
-          if (equalPos > 0) {
-            String tmp = line.substring(equalPos + 1);
-            tmp = tmp.replaceAll("\"",
-                                 "");
-            return Paths.get(strHome,
-                             tmp);
-          }
-        }
-      }
-    } catch (IOException ex) {
-
-    }
-    return null;
+    return userDirs.get().get(folderId);
   }
 
   @Override
@@ -189,73 +143,119 @@ class LinuxPlatformFolders implements PlatformFolders {
   @Override
   public Path getDownloadsFolder()
   {
-    return downloads.get();
+    return getUserDir("XDG_DOWNLOAD_DIR");
   }
 
   @Override
   public Path getDesktopFolder()
   {
-    return desktop.get();
+    return getUserDir("XDG_DESKTOP_DIR");
   }
 
   @Override
   public Path getDokumentsFolder()
   {
-    return documents.get();
+    return getUserDir("XDG_DOCUMENTS_DIR");
   }
 
   @Override
   public Path getPicturesFolder()
   {
-    return pictures.get();
+    return getUserDir("XDG_PICTURES_DIR");
   }
 
   @Override
   public Path getVideosFolder()
   {
-    return videos.get();
+    return getUserDir("XDG_VIDEOS_DIR");
   }
 
   @Override
   public Path getMusicFolder()
   {
-    return music.get();
+    return getUserDir("XDG_MUSIC_DIR");
   }
 
   @Override
   public Path getPublicDownloadsFolder()
   {
-    return publicShare.get();
+    return getUserDir("XDG_PUBLICSHARE_DIR");
   }
 
   @Override
   public Path getPublicDesktopFolder()
   {
-    return publicShare.get();
+    return getUserDir("XDG_PUBLICSHARE_DIR");
   }
 
   @Override
   public Path getPublicDokumentsFolder()
   {
-    return publicShare.get();
+    return getUserDir("XDG_PUBLICSHARE_DIR");
   }
 
   @Override
   public Path getPublicPicturesFolder()
   {
-    return publicShare.get();
+    return getUserDir("XDG_PUBLICSHARE_DIR");
   }
 
   @Override
   public Path getPublicVideosFolder()
   {
-    return publicShare.get();
+    return getUserDir("XDG_PUBLICSHARE_DIR");
   }
 
   @Override
   public Path getPublicMusicFolder()
   {
-    return publicShare.get();
+    return getUserDir("XDG_PUBLICSHARE_DIR");
+  }
+
+  @Override
+  public void addFoldersListener(PlatformFoldersListener listener)
+  {
+    listenerLock.lock();
+    try {
+      listeners.add(listener);
+      userDirs.startWatching();
+    } finally {
+      listenerLock.unlock();
+    }
+  }
+
+  @Override
+  public void removeFoldersListener(PlatformFoldersListener listener)
+  {
+    listenerLock.lock();
+    try {
+      if (listeners.remove(listener) && listeners.isEmpty()) {
+        userDirs.stopWatching();
+      }
+    } finally {
+      listenerLock.unlock();
+    }
+  }
+
+  @Override
+  public void reloadFolders()
+  {
+    if (userDirs.reload()) {
+      fireFoldersChanged();
+    }
+  }
+
+  private void fireFoldersChanged()
+  {
+    for (PlatformFoldersListener l : listeners) {
+      try {
+        l.foldersChanged(this);
+      } catch (RuntimeException ex) {
+        log.log(Level.WARNING,
+                "PlatformFoldersListener failed",
+                ex);
+      }
+    }
   }
 
   @Override
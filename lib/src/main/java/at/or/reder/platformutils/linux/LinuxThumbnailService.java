@@ -17,47 +17,89 @@ package at.or.reder.platformutils.linux;
 
 import at.or.reder.platformutils.PlatformFolders;
 import at.or.reder.platformutils.ThumbnailService;
+import at.or.reder.platformutils.thumbnails.CancellationToken;
+import at.or.reder.platformutils.thumbnails.DirectoryThumbnailPublisher;
 import at.or.reder.platformutils.thumbnails.KDEThumbnailMetaData;
+import at.or.reder.platformutils.thumbnails.ThumbnailBusyException;
 import at.or.reder.platformutils.thumbnails.ThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.ThumbnailMetaData;
+import at.or.reder.platformutils.thumbnails.ThumbnailResult;
 import at.or.reder.platformutils.thumbnails.ThumbnailSize;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.PosixFilePermission;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
 import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.FileImageOutputStream;
-import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.java.Log;
 
 @RequiredArgsConstructor
 @Log
 class LinuxThumbnailService implements ThumbnailService {
 
+  private static final String LOCK_FOLDER = ".locks";
+  private static final int IO_PARALLELISM = Math.max(4,
+                                                     2 * Runtime.getRuntime().availableProcessors());
+
   private final PlatformFolders folders;
+  private final ThumbnailLocks locks = new ThumbnailLocks();
+  private final Set<CancellationToken> publications = ConcurrentHashMap.newKeySet();
+  @Getter
+  @Setter
+  private volatile LockMode lockMode = LockMode.NONE;
+
+  @Override
+  public Path getThumbnail(Path file,
+                           ThumbnailSize thumbSize,
+                           ThumbnailGenerator generator) throws IOException
+  {
+    return getThumbnail(file,
+                        thumbSize,
+                        generator,
+                        CancellationToken.create());
+  }
 
   @Override
-  public Path getThumbnail(Path fileIn, ThumbnailSize thumbSize, ThumbnailGenerator generator) throws IOException
+  public Path getThumbnail(Path fileIn,
+                           ThumbnailSize thumbSize,
+                           ThumbnailGenerator generator,
+                           CancellationToken token) throws IOException
   {
     final Path file = fileIn.toRealPath().toAbsolutePath();
     if (thumbSize == null) {
@@ -75,35 +117,53 @@ class LinuxThumbnailService implements ThumbnailService {
     Files.createDirectories(thumbDir);
     Path thumbFilePath = Paths.get(thumbDir.toString(),
                                    thumbFileName);
-    KDEThumbnailMetaData meta = null;
     final FileTime fTime = Files.getLastModifiedTime(file);
-    if (Files.isReadable(thumbFilePath)) {
-      try (ImageInputStream iis = new FileImageInputStream(thumbFilePath.toFile())) {
-        Iterator<ImageReader> iter = ImageIO.getImageReaders(iis);
-        if (iter.hasNext()) {
-          ImageReader reader = iter.next();
-          try {
-            reader.setInput(iis);
-            meta = KDEThumbnailMetaData.fromMeta(reader.getImageMetadata(0));
-          } finally {
-            reader.dispose();
-          }
-        } else { // kein lesbares format damit auch kein PNG
-          Files.delete(thumbFilePath);
-        }
-      }
+    if (readValidMetaData(thumbFilePath,
+                          fTime,
+                          true) != null) {
+      return thumbFilePath;
     }
-    if (meta != null) {
-      if (meta.getMTime() != fTime.toMillis() / 1000) {
-        meta = null;
-      }
+    token.throwIfCancelled();
+    final LockMode mode = lockMode;
+    if (mode == LockMode.NONE) {
+      return generateThumbnail(file,
+                               thumbSize,
+                               generator,
+                               token,
+                               thumbFilePath,
+                               fTime);
     }
-    if (meta != null) {
-      return thumbFilePath;
+    try (ThumbnailLocks.Lock lock = locks.lock(Paths.get(folders.getThumbnailFolder().toString(),
+                                                         LOCK_FOLDER,
+                                                         thumbSize.getSubfolder(),
+                                                         thumbFileName + ".lock"),
+                                               mode == LockMode.WAIT,
+                                               token)) {
+      if (lock == null) {
+        throw new ThumbnailBusyException(file.toString() + ": thumbnail is generated by someone else");
+      }
+      // the thumbnail may have been finished while we were waiting
+      if (readValidMetaData(thumbFilePath,
+                            fTime,
+                            true) != null) {
+        return thumbFilePath;
+      }
+      return generateThumbnail(file,
+                               thumbSize,
+                               generator,
+                               token,
+                               thumbFilePath,
+                               fTime);
     }
-    Path tmpFile = Files.createTempFile(thumbDir,
-                                        "tmpThumb",
-                                        ".png");
+  }
+
+  private Path generateThumbnail(Path file,
+                                 ThumbnailSize thumbSize,
+                                 ThumbnailGenerator generator,
+                                 CancellationToken token,
+                                 Path thumbFilePath,
+                                 FileTime fTime) throws IOException
+  {
     Dimension dim = generator.getDimension(file);
     final int size = thumbSize.getDim();
     if (dim != null) {
@@ -121,6 +181,11 @@ class LinuxThumbnailService implements ThumbnailService {
                                           dim.height,
                                           BufferedImage.TYPE_4BYTE_ABGR);
     final String contentType = generator.getContentType(file);
+    token.throwIfCancelled();
+    // created as late as possible, the finally block below is responsible for removing it
+    Path tmpFile = Files.createTempFile(thumbFilePath.getParent(),
+                                        "tmpThumb",
+                                        ".png");
     final ImageWriter writer = getPNGImageWriter();
     try {
       try (ImageOutputStream ios = new FileImageOutputStream(tmpFile.toFile())) {
@@ -132,14 +197,16 @@ class LinuxThumbnailService implements ThumbnailService {
         ImageTypeSpecifier typeSpecifier = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_4BYTE_ABGR);
         IIOMetadata imeta = writer.getDefaultImageMetadata(typeSpecifier,
                                                            writeParam);
-        meta = new KDEThumbnailMetaData();
+        KDEThumbnailMetaData meta = new KDEThumbnailMetaData();
         meta.setMTime(fTime.toMillis() / 1000);
         meta.setMime(contentType);
         meta.setSize(Files.size(file));
         meta.setUri(file.toUri());
         img = generator.paintThumbnail(file,
                                        img,
-                                       meta);
+                                       meta,
+                                       token);
+        token.throwIfCancelled();
         meta.toMeta(imeta);
         writer.write(imeta,
                      new IIOImage(img,
@@ -162,7 +229,129 @@ class LinuxThumbnailService implements ThumbnailService {
     return thumbFilePath;
   }
 
-  private String createThumbFileName(Path file) throws IOException
+  @Override
+  public Optional<Path> getCachedThumbnail(Path fileIn,
+                                           ThumbnailSize thumbSize) throws IOException
+  {
+    final Path file = fileIn.toRealPath().toAbsolutePath();
+    if (thumbSize == null) {
+      thumbSize = ThumbnailSize.LARGE;
+    }
+    Path thumbFilePath = Paths.get(folders.getThumbnailFolder().toString(),
+                                   thumbSize.getSubfolder(),
+                                   createThumbFileName(file));
+    if (readValidMetaData(thumbFilePath,
+                          Files.getLastModifiedTime(file),
+                          false) != null) {
+      return Optional.of(thumbFilePath);
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public Flow.Publisher<ThumbnailResult> getThumbnails(Path directory,
+                                                       DirectoryStream.Filter<? super Path> filter,
+                                                       ThumbnailSize thumbSize,
+                                                       ThumbnailGenerator generator)
+  {
+    return new DirectoryThumbnailPublisher(this,
+                                           directory,
+                                           filter,
+                                           thumbSize,
+                                           generator,
+                                           Runtime.getRuntime().availableProcessors(),
+                                           Flow.defaultBufferSize(),
+                                           publications);
+  }
+
+  @Override
+  public void shutdown()
+  {
+    // the publishers close their streams once the workers observed the cancellation
+    publications.forEach(CancellationToken::cancel);
+  }
+
+  @Override
+  public Map<Path, ThumbnailMetaData> getCachedMetaData(Collection<Path> files,
+                                                       ThumbnailSize thumbSize)
+  {
+    final List<ThumbnailSize> sizes = thumbSize != null ? List.of(thumbSize) : List.of(ThumbnailSize.values());
+    final Map<Path, ThumbnailMetaData> result = new ConcurrentHashMap<>();
+    // blocking file reads, so virtual threads instead of the common pool
+    final Semaphore permits = new Semaphore(IO_PARALLELISM);
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Path file : files) {
+        permits.acquireUninterruptibly();
+        executor.execute(() -> {
+          try {
+            ThumbnailMetaData meta = readCachedMetaData(file,
+                                                        sizes);
+            if (meta != null) {
+              result.put(file,
+                         meta);
+            }
+          } catch (IOException ex) {
+            // no usable thumbnail
+          } finally {
+            permits.release();
+          }
+        });
+      }
+    }
+    return result;
+  }
+
+  private ThumbnailMetaData readCachedMetaData(Path fileIn,
+                                               List<ThumbnailSize> sizes) throws IOException
+  {
+    final Path file = fileIn.toRealPath();
+    final FileTime fTime = Files.getLastModifiedTime(file);
+    final String thumbFileName = createThumbFileName(file);
+    final String thumbFolder = folders.getThumbnailFolder().toString();
+    for (ThumbnailSize size : sizes) {
+      KDEThumbnailMetaData meta = readValidMetaData(Paths.get(thumbFolder,
+                                                              size.getSubfolder(),
+                                                              thumbFileName),
+                                                    fTime,
+                                                    false);
+      if (meta != null) {
+        return meta;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Read the metadata of an existing thumbnail.
+   *
+   * @param deleteInvalid remove a file that is not a PNG file; only done by callers about to regenerate it, queries
+   * leave the shared cache alone
+   * @return the metadata, or {@code null} if there is no thumbnail or it is outdated
+   */
+  private KDEThumbnailMetaData readValidMetaData(Path thumbFilePath,
+                                                 FileTime fTime,
+                                                 boolean deleteInvalid) throws IOException
+  {
+    KDEThumbnailMetaData meta;
+    try (FileChannel channel = FileChannel.open(thumbFilePath,
+                                                StandardOpenOption.READ)) {
+      meta = KDEThumbnailMetaData.fromPng(channel);
+    } catch (NoSuchFileException | AccessDeniedException ex) {
+      return null;
+    }
+    if (meta == null && deleteInvalid) { // kein PNG
+      // another reader may have removed it already
+      Files.deleteIfExists(thumbFilePath);
+    }
+    if (meta != null) {
+      if (meta.getMTime() != fTime.toMillis() / 1000) {
+        meta = null;
+      }
+    }
+    return meta;
+  }
+
+  String createThumbFileName(Path file) throws IOException
   {
     try {
       MessageDigest digest = MessageDigest.getInstance("MD5");
@@ -16,34 +16,113 @@
 package at.or.reder.platformutils.linux;
 
 import at.or.reder.platformutils.PlatformFolders;
+import at.or.reder.platformutils.TrashEntry;
+import at.or.reder.platformutils.TrashProgressListener;
+import at.or.reder.platformutils.TrashPurgePolicy;
+import at.or.reder.platformutils.TrashReport;
 import at.or.reder.platformutils.TrashService;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.URLEncoder;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.concurrent.atomic.LongAdder;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
-import lombok.RequiredArgsConstructor;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.java.Log;
 
-@RequiredArgsConstructor
+@Log
 class LinuxTrashService implements TrashService {
 
-  private final PlatformFolders folders;
-  private static final DateTimeFormatter TRASH_TS_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+  /**
+   * walking and deleting trees is bound by I/O latency rather than CPU.
+   */
+  private static final int IO_PARALLELISM = Math.max(4,
+                                                     2 * Runtime.getRuntime().availableProcessors());
+  private static final String INDEX_FOLDER = "platformutils/trash";
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+  private final TrashDirectories trashDirectories;
+  private final Path cacheFolder;
+  /**
+   * runs purges and the deferred directory size computation, the workers are daemon threads.
+   */
+  private final ForkJoinPool ioPool = new ForkJoinPool(IO_PARALLELISM);
+  private final DirectorySizesWriter directorySizesWriter = new DirectorySizesWriter();
+  private final TrashSizeAccounting sizeAccounting = new TrashSizeAccounting();
+  private final CrossDeviceMover crossDeviceMover = new CrossDeviceMover(ioPool);
+  /**
+   * index per trash root, built on first restore.
+   */
+  private final ConcurrentHashMap<Path, TrashIndex> indexes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Path, TrashNameAllocator> allocators = new ConcurrentHashMap<>();
+
+  LinuxTrashService(PlatformFolders folders)
+  {
+    this(folders,
+         new TrashDirectories(folders));
+  }
+
+  LinuxTrashService(PlatformFolders folders,
+                    TrashDirectories trashDirectories)
+  {
+    this.trashDirectories = trashDirectories;
+    this.cacheFolder = folders.getCacheFolder();
+  }
+
+  /**
+   * State shared by the files of one trash operation, per directory lookups are done once.
+   */
+  private static final class Batch {
+
+    private final TrashInfoWriter writer = new TrashInfoWriter();
+    /**
+     * real path per parent directory, empty if the parent is not searchable.
+     */
+    private final Map<Path, Optional<Path>> realParents = new HashMap<>();
+    private final Map<Path, TrashDirectory> trashes = new HashMap<>();
+    private final TrashProgress progress;
+
+    private Batch(TrashProgress progress)
+    {
+      this.progress = progress;
+    }
+
+    private Batch()
+    {
+      this(TrashProgress.none());
+    }
+
+  }
 
   /*
    * https://specifications.freedesktop.org/trash-spec/latest/
@@ -51,143 +130,782 @@ class LinuxTrashService implements TrashService {
   @Override
   public boolean moveToTrash(Path file) throws IOException
   {
-    if (!Files.exists(file)) {
+    Batch batch = new Batch();
+    return moveToTrash(file,
+                       batch) == Outcome.SUCCESS;
+  }
+
+  @Override
+  public TrashReport moveToTrash(Collection<Path> paths)
+  {
+    Batch batch = new Batch();
+    Map<Path, Outcome> outcomes = new LinkedHashMap<>();
+    Map<Path, IOException> errors = new HashMap<>();
+    for (Path file : paths) {
+      if (outcomes.containsKey(file)) {
+        // duplicate, the first outcome counts
+        continue;
+      }
+      try {
+        outcomes.put(file,
+                     moveToTrash(file,
+                                 batch));
+      } catch (IOException ex) {
+        outcomes.put(file,
+                     Outcome.FAILED);
+        errors.put(file,
+                   ex);
+      }
+    }
+    return new TrashReport(outcomes,
+                           errors);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> moveToTrashAsync(Path file,
+                                                     TrashProgressListener listener)
+  {
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    Batch batch = new Batch(new TrashProgress(listener,
+                                              result::isCancelled));
+    Thread.ofVirtual().name("trash").start(() -> {
+      try {
+        result.complete(moveToTrash(file,
+                                    batch) == Outcome.SUCCESS);
+      } catch (CancellationException ex) {
+        // rolled back, the future is already cancelled
+      } catch (IOException | RuntimeException ex) {
+        result.completeExceptionally(ex);
+      }
+    });
+    return result;
+  }
+
+  private Optional<Path> getRealParent(Path parent,
+                                       Batch batch) throws IOException
+  {
+    Optional<Path> result = batch.realParents.get(parent);
+    if (result == null) {
+      if (Files.isExecutable(parent)) {
+        result = Optional.of(parent.toRealPath());
+      } else {
+        result = Optional.empty();
+      }
+      batch.realParents.put(parent,
+                            result);
+    }
+    return result;
+  }
+
+  private TrashDirectory getTrash(Path realParent,
+                                  Path normalized,
+                                  Batch batch) throws IOException
+  {
+    TrashDirectory result = batch.trashes.get(realParent);
+    if (result == null) {
+      result = trashDirectories.findTrash(normalized);
+      batch.trashes.put(realParent,
+                        result);
+    }
+    return result;
+  }
+
+  private Outcome moveToTrash(Path file,
+                              Batch batch) throws IOException
+  {
+    TrashEvents.Operation event = new TrashEvents.Operation();
+    event.begin();
+    Outcome result = Outcome.FAILED;
+    boolean cancelled = false;
+    try {
+      result = doMoveToTrash(file,
+                             batch);
+      return result;
+    } catch (CancellationException ex) {
+      cancelled = true;
+      throw ex;
+    } finally {
+      if (result == Outcome.SUCCESS || result == Outcome.SOURCE_NOT_DELETED) {
+        TrashStatistics.INSTANCE.trashed.increment();
+      } else {
+        TrashStatistics.INSTANCE.failed.increment();
+      }
+      if (event.shouldCommit()) {
+        event.path = file.toString();
+        event.outcome = cancelled ? TrashEvents.CANCELLED : result.name();
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Commit the validation phase. Only its own result is recorded, the final outcome is on the enclosing
+   * {@link TrashEvents.Operation}.
+   *
+   * @param rejection the outcome the file was rejected with, {@code null} if it may be trashed
+   * @return {@code rejection}
+   */
+  private static Outcome validated(TrashEvents.Validate event,
+                                   Path file,
+                                   Outcome rejection)
+  {
+    if (event.shouldCommit()) {
+      event.path = file.toString();
+      event.result = rejection != null ? rejection.name() : TrashEvents.VALID;
+      event.commit();
+    }
+    return rejection;
+  }
+
+  private Outcome doMoveToTrash(Path file,
+                                Batch batch) throws IOException
+  {
+    batch.progress.checkCancelled();
+    TrashEvents.Validate validation = new TrashEvents.Validate();
+    validation.begin();
+    final BasicFileAttributes attr;
+    try {
+      attr = Files.readAttributes(file,
+                                  BasicFileAttributes.class,
+                                  LinkOption.NOFOLLOW_LINKS);
+    } catch (NoSuchFileException ex) {
+      return validated(validation,
+                       file,
+                       Outcome.NOT_FOUND);
+    }
+    if (attr.isSymbolicLink()) {
+      return validated(validation,
+                       file,
+                       Outcome.SYMBOLIC_LINK);
+    }
+    final Path parent = file.toAbsolutePath().getParent();
+    if (parent == null || !Files.isWritable(file)) {
+      return validated(validation,
+                       file,
+                       Outcome.NOT_PERMITTED);
+    }
+    final Optional<Path> realParent = getRealParent(parent,
+                                                    batch);
+    if (realParent.isEmpty()) {
+      return validated(validation,
+                       file,
+                       Outcome.NOT_PERMITTED);
+    }
+    // file itself is no symbolic link, so resolving the parent is enough
+    final Path normalized = realParent.get().resolve(file.getFileName());
+    TrashDirectory candidate = getTrash(realParent.get(),
+                                        normalized,
+                                        batch);
+    validated(validation,
+              file,
+              null);
+    TrashContext allocated;
+    try {
+      allocated = getAllocator(candidate).allocate(normalized.getFileName().toString());
+    } catch (NoSuchFileException ex) {
+      // the trash directory was removed since it was verified, check and create it again
+      trashDirectories.invalidate(candidate);
+      batch.trashes.remove(realParent.get());
+      candidate = getTrash(realParent.get(),
+                           normalized,
+                           batch);
+      allocated = getAllocator(candidate).allocate(normalized.getFileName().toString());
+    }
+    final TrashDirectory trash = candidate;
+    try (TrashContext op = allocated) {
+      // the info file has no fraction of seconds
+      final LocalDateTime deletionDate = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+      TrashEvents.InfoWrite infoWrite = new TrashEvents.InfoWrite();
+      infoWrite.begin();
+      batch.writer.writeTrashInfo(op.getInfoLock().channel(),
+                                  trash.toInfoPath(normalized),
+                                  deletionDate);
+      if (infoWrite.shouldCommit()) {
+        infoWrite.infoFile = op.getInfoFile().toString();
+        infoWrite.commit();
+      }
+      // closing op deletes the info file, so cancelling is possible until the file is in the trash
+      batch.progress.checkCancelled();
+      final Path moved = op.getNewDataFile();
+      TrashEvents.Move move = new TrashEvents.Move();
+      move.begin();
+      final boolean renamed = rename(normalized,
+                                     moved);
+      if (renamed) {
+        TrashStatistics.INSTANCE.renamed.increment();
+      } else {
+        // no usable trash on the device of the file
+        crossDeviceMover.copy(normalized,
+                              moved,
+                              batch.progress);
+        // the info file must be durable as well before the source is deleted
+        op.getInfoLock().channel().force(true);
+        CopyTreeTask.sync(trash.getInfoDir());
+        TrashStatistics.INSTANCE.copied.increment();
+      }
+      if (move.shouldCommit()) {
+        move.path = normalized.toString();
+        move.copied = !renamed;
+        move.size = attr.isDirectory() ? -1 : attr.size();
+        move.commit();
+      }
+      op.setSuccess(Files.exists(moved,
+                                 LinkOption.NOFOLLOW_LINKS));
+      if (op.isSuccess()) {
+        // directories are accounted when their size is known
+        sizeAccounting.set(moved,
+                           attr.isDirectory() ? 0 : attr.size());
+        if (attr.isDirectory()) {
+          // the caller only waits for the rename
+          ioPool.execute(() -> updateDirectorySize(trash,
+                                                   moved,
+                                                   op.getInfoFile()));
+        }
+        getIndex(trash).added(new TrashEntry(moved.getFileName().toString(),
+                                             normalized,
+                                             deletionDate,
+                                             moved,
+                                             attr.isDirectory() ? -1 : attr.size()));
+        if (renamed) {
+          if (!attr.isDirectory()) {
+            batch.progress.bytesDone(attr.size());
+          }
+          batch.progress.fileDone();
+        } else {
+          // copy and info file are durable, the item stays in the trash even if this fails
+          try {
+            crossDeviceMover.deleteSource(normalized);
+          } catch (IOException | RuntimeException ex) {
+            log.log(Level.WARNING,
+                    "Trashed " + normalized.toString() + " but cannot delete it",
+                    ex);
+            return Outcome.SOURCE_NOT_DELETED;
+          }
+        }
+      }
+      return op.isSuccess() ? Outcome.SUCCESS : Outcome.FAILED;
+    }
+  }
+
+  /**
+   * Rename within a file system.
+   *
+   * @return {@code false} if {@code target} is on another file system
+   */
+  private static boolean rename(Path source,
+                                Path target) throws IOException
+  {
+    // unlike a plain move, an atomic move replaces an existing target
+    if (Files.exists(target,
+                     LinkOption.NOFOLLOW_LINKS)) {
+      throw new FileAlreadyExistsException(target.toString());
+    }
+    try {
+      Files.move(source,
+                 target,
+                 StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    } catch (AtomicMoveNotSupportedException ex) {
       return false;
     }
-    if (!Files.isWritable(file)) {
+  }
+
+  /**
+   * Wait for running purges and directory size computations, write the queued {@code directorysizes} lines, then
+   * persist and close the indexes.
+   */
+  @Override
+  public void shutdown()
+  {
+    ioPool.shutdown();
+    try {
+      if (!ioPool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS,
+                                   TimeUnit.SECONDS)) {
+        log.log(Level.WARNING,
+                "Trash operations still running after {0} seconds",
+                SHUTDOWN_TIMEOUT_SECONDS);
+      }
+      directorySizesWriter.close(SHUTDOWN_TIMEOUT_SECONDS,
+                                 TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    indexes.values().forEach(TrashIndex::close);
+    indexes.clear();
+  }
+
+  private TrashNameAllocator getAllocator(TrashDirectory trash)
+  {
+    return allocators.computeIfAbsent(trash.getRoot(),
+                                      k -> new TrashNameAllocator(trash));
+  }
+
+  private TrashIndex getIndex(TrashDirectory trash)
+  {
+    return indexes.computeIfAbsent(trash.getRoot(),
+                                   k -> new TrashIndex(trash,
+                                                       getIndexCacheFile(trash),
+                                                       sizeAccounting::invalidate));
+  }
+
+  private Path getIndexCacheFile(TrashDirectory trash)
+  {
+    if (cacheFolder == null) {
+      return null;
+    }
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      String name = HexFormat.of().formatHex(digest.digest(trash.getRoot().toString().getBytes(StandardCharsets.UTF_8)));
+      return cacheFolder.resolve(INDEX_FOLDER).resolve(name + ".idx");
+    } catch (NoSuchAlgorithmException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * The trash of the device the original location is on, and the home trash, which is used if that device has no
+   * usable trash.
+   */
+  private List<TrashDirectory> getCandidateTrashes(Path original) throws IOException
+  {
+    List<TrashDirectory> result = new ArrayList<>(2);
+    Path existing = original.getParent();
+    while (existing != null && !Files.isDirectory(existing)) {
+      existing = existing.getParent();
+    }
+    if (existing != null) {
+      result.add(trashDirectories.findTrash(existing.toRealPath()));
+    }
+    TrashDirectory home = trashDirectories.getHomeTrash();
+    if (result.isEmpty() || !result.get(0).getRoot().equals(home.getRoot())) {
+      result.add(home);
+    }
+    return result;
+  }
+
+  /**
+   * Resolve symbolic links in the parent, like {@link #moveToTrash(java.nio.file.Path)} does.
+   */
+  private static Path normalizeOriginal(Path path) throws IOException
+  {
+    Path absolute = path.toAbsolutePath().normalize();
+    Path parent = absolute.getParent();
+    if (parent != null && Files.isDirectory(parent)) {
+      return parent.toRealPath().resolve(absolute.getFileName());
+    }
+    return absolute;
+  }
+
+  /**
+   * Restore the most recently trashed item that was located at {@code path}. On a collision {@code OVERWRITE} moves the
+   * existing file to the trash, {@code RENAME} restores next to it with a {@code _n} suffix.
+   */
+  @Override
+  public boolean restoreFromTrash(Path path,
+                                  BiFunction<Path, Path, CollisionAction> collisionResolver) throws IOException
+  {
+    Path original = normalizeOriginal(path);
+    for (TrashDirectory trash : getCandidateTrashes(original)) {
+      TrashIndex index = getIndex(trash);
+      Optional<TrashEntry> entry = index.findLatest(original);
+      if (entry.isPresent()) {
+        return restoreFromTrash(entry.get(),
+                                collisionResolver);
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public List<TrashEntry> findInTrash(Path pathPrefix,
+                                      LocalDateTime from,
+                                      LocalDateTime to) throws IOException
+  {
+    Path prefix = pathPrefix != null ? normalizeOriginal(pathPrefix) : null;
+    List<TrashEntry> result = new ArrayList<>();
+    for (TrashDirectory trash : trashDirectories.findExistingTrashes()) {
+      result.addAll(getIndex(trash).query(prefix,
+                                          from,
+                                          to));
+    }
+    result.sort(Comparator.comparing((TrashEntry e) -> e.getOriginalPath().toString())
+            .thenComparing(TrashEntry::getDeletionDate,
+                           Comparator.nullsFirst(Comparator.naturalOrder())));
+    return result;
+  }
+
+  /**
+   * Restore one item. The entry must denote an item in {@code files/} of one of the trash directories, it may come from
+   * the caller and is checked first. The original location is read from the info file of the item, the one in
+   * {@code entry} is not used.
+   *
+   * @throws IllegalArgumentException if the entry is not in a trash directory
+   */
+  @Override
+  public boolean restoreFromTrash(TrashEntry entry,
+                                  BiFunction<Path, Path, CollisionAction> collisionResolver) throws IOException
+  {
+    TrashDirectory trash = getOwningTrash(entry);
+    Path source = trash.getFilesDir().resolve(entry.getTrashName());
+    Path infoFile = trash.getInfoDir().resolve(entry.getTrashName() + TrashInfoReader.INFO_SUFFIX);
+    TrashIndex index = indexes.get(trash.getRoot());
+    if (!Files.exists(source,
+                      LinkOption.NOFOLLOW_LINKS)) {
+      // orphaned info file
+      Files.deleteIfExists(infoFile);
+      if (index != null) {
+        index.removed(entry.getTrashName());
+      }
       return false;
     }
-    if (!Files.isExecutable(file.getParent())) {
+    final TrashEntry stored;
+    try {
+      stored = new TrashInfoReader().read(trash,
+                                          infoFile);
+    } catch (NoSuchFileException ex) {
+      // restored or purged by someone else
       return false;
     }
-    final BasicFileAttributes attr = Files.readAttributes(file,
-                                                          BasicFileAttributes.class,
-                                                          LinkOption.NOFOLLOW_LINKS);
-    if (attr.isSymbolicLink()) {
+    if (stored == null) {
+      log.log(Level.WARNING,
+              "{0} has no valid trash info, not restored",
+              source);
       return false;
     }
-    final Path normalized = file.toRealPath();
-    final String strRecycleBin = folders.getTrashFolder().toString();
-    final Path files = Paths.get(strRecycleBin,
-                                 "files");
-    final Path info = Paths.get(strRecycleBin,
-                                "info");
-    try (TrashContext op = findTrashFileName(normalized.getFileName().toString(),
-                                             info,
-                                             files)) {
-      createTrashInfoFile(normalized,
-                          op);
-      if (attr.isDirectory()) {
-        updateDirectoriesSize(file,
-                              op);
+    final boolean directory = Files.isDirectory(source,
+                                                LinkOption.NOFOLLOW_LINKS);
+    Path target = stored.getOriginalPath();
+    Files.createDirectories(target.getParent());
+    try {
+      reserve(target,
+              directory);
+    } catch (FileAlreadyExistsException ex) {
+      CollisionAction action = collisionResolver.apply(target,
+                                                       source);
+      if (action == CollisionAction.OVERWRITE) {
+        if (!moveToTrash(target)) {
+          return false;
+        }
+        // fails if yet another file took the name meanwhile
+        reserve(target,
+                directory);
+      } else if (action == CollisionAction.RENAME) {
+        target = reserveFreeName(target,
+                                 directory);
+      } else {
+        return false;
       }
-      Path moved = Files.move(normalized,
-                              op.getNewDataFile());
-      op.setSuccess(Files.exists(moved));
-      return op.isSuccess();
     }
+    try {
+      // replaces the placeholder
+      Files.move(source,
+                 target,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException ex) {
+      // a plain move cannot move non empty directories across file systems
+      Files.delete(target);
+      crossDeviceMover.copy(source,
+                            target,
+                            TrashProgress.none());
+      crossDeviceMover.deleteSource(source);
+    } catch (IOException ex) {
+      Files.deleteIfExists(target);
+      throw ex;
+    }
+    Files.deleteIfExists(infoFile);
+    if (index != null) {
+      index.removed(entry.getTrashName());
+    }
+    sizeAccounting.remove(source);
+    TrashStatistics.INSTANCE.restored.increment();
+    return true;
   }
 
-  @Override
-  public boolean restoreFromTrash(Path path, BiFunction<Path, Path, CollisionAction> collisionResolver) throws IOException
+  /**
+   * The trash directory whose {@code files/} contains {@code entry}.
+   */
+  private TrashDirectory getOwningTrash(TrashEntry entry)
+  {
+    String trashName = entry.getTrashName();
+    Path trashedFile = entry.getTrashedFile();
+    if (trashName == null || trashedFile == null) {
+      throw new IllegalArgumentException("Incomplete trash entry");
+    }
+    Path file = trashedFile.toAbsolutePath().normalize();
+    Path fileName = file.getFileName();
+    if (fileName == null || !fileName.toString().equals(trashName) || file.getParent() == null) {
+      throw new IllegalArgumentException("Invalid trash entry " + trashedFile.toString());
+    }
+    for (TrashDirectory trash : trashDirectories.findExistingTrashes()) {
+      if (trash.getFilesDir().equals(file.getParent())) {
+        return trash;
+      }
+    }
+    throw new IllegalArgumentException(trashedFile.toString() + " is not in a trash directory");
+  }
+
+  /**
+   * Take {@code target} by creating an empty file, or an empty directory if a directory is restored, which the
+   * following rename replaces. The creation is atomic, so a name taken by another process meanwhile is never
+   * overwritten.
+   *
+   * @throws FileAlreadyExistsException if the name is taken
+   */
+  private static void reserve(Path target,
+                              boolean directory) throws IOException
   {
-    throw new UnsupportedOperationException("Not supported yet.");
+    if (directory) {
+      Files.createDirectory(target);
+    } else {
+      Files.createFile(target);
+    }
   }
 
-  private long calculateDirectorySize(Path dir) throws IOException
+  /**
+   * Reserve a free {@code name_n} next to {@code target}. Like {@link TrashNameAllocator}, the numbering continues
+   * after the highest suffix in use instead of probing from {@code _1}, and the reservation decides between concurrent
+   * restores.
+   */
+  private static Path reserveFreeName(Path target,
+                                      boolean directory) throws IOException
   {
-    final LongAdder adder = new LongAdder();
-    Files.walkFileTree(dir,
-                       new SimpleFileVisitor<Path>() {
-                 @Override
-                 public FileVisitResult visitFile(Path file,
-                                                  BasicFileAttributes attrs) throws IOException
-                 {
-                   if (attrs.isRegularFile()) {
-                     adder.add(attrs.size());
-                   }
-                   return FileVisitResult.CONTINUE;
-                 }
+    String prefix = target.getFileName().toString() + "_";
+    long counter = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(target.getParent())) {
+      for (Path sibling : stream) {
+        String name = sibling.getFileName().toString();
+        if (name.startsWith(prefix)) {
+          counter = Math.max(counter,
+                             TrashNameAllocator.parseSuffix(name,
+                                                            prefix.length()));
+        }
+      }
+    }
+    for (;;) {
+      Path candidate = target.resolveSibling(prefix + (++counter));
+      try {
+        reserve(candidate,
+                directory);
+        return candidate;
+      } catch (FileAlreadyExistsException ex) {
+        // taken since the directory was listed
+      }
+    }
+  }
 
-               });
-    return adder.longValue();
+  @Override
+  public Stream<TrashEntry> listTrash()
+  {
+    return TrashListing.stream(trashDirectories.findExistingTrashes());
   }
 
-  private void updateDirectoriesSize(Path oldFile,
-                                     TrashContext op) throws IOException
+  @Override
+  public long getTrashSize()
   {
-    final long dirSize = calculateDirectorySize(oldFile);
-    StringBuilder builder = new StringBuilder();
-    builder.append(Long.toString(dirSize));
-    builder.append(" ");
-    FileTime fTime = Files.getLastModifiedTime(op.getInfoFile());
-    builder.append(Long.toString(fTime.toMillis()));
-    builder.append(" ");
-    String tmp = URLEncoder.encode(oldFile.getFileName().toString(),
-                                   StandardCharsets.UTF_8.name());
-    builder.append(tmp);
-    builder.append(System.getProperty("line.separator"));
-    ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
-    try (FileChannel channel = FileChannel.open(Paths.get(folders.getTrashFolder().toString(),
-                                                          "directorysizes"),
-                                                StandardOpenOption.CREATE,
-                                                StandardOpenOption.APPEND,
-                                                StandardOpenOption.WRITE); FileLock lock = channel.lock()) {
-      channel.write(buffer);
+    // the indexes watch info/ and invalidate the total if other programs changed the trash
+    List<TrashIndex> synced = new ArrayList<>();
+    for (TrashDirectory trash : trashDirectories.findExistingTrashes()) {
+      try {
+        TrashIndex index = getIndex(trash);
+        index.sync();
+        synced.add(index);
+      } catch (IOException ex) {
+        log.log(Level.FINE,
+                "Cannot read " + trash.getInfoDir().toString(),
+                ex);
+      }
     }
+    return sizeAccounting.getTotal(() -> loadSizes(synced));
   }
 
-  private void createTrashInfoFile(Path fileToDelete,
-                                   TrashContext trashContext) throws IOException
+  /**
+   * The entries of the synced indexes with their sizes. The indexes have parsed the info files already, so the items
+   * are only {@code stat}ed, and only directories missing in {@code directorysizes} are walked.
+   */
+  private Stream<TrashEntry> loadSizes(List<TrashIndex> synced)
   {
-    Path info = trashContext.getInfoFile();
-    try (PrintWriter writer = new PrintWriter(Files.newOutputStream(info,
-                                                                    StandardOpenOption.WRITE))) {
-      writer.println("[Trash Info]");
-      writer.print("Path=");
-      String tmp = URLEncoder.encode(fileToDelete.toString(),
-                                     StandardCharsets.UTF_8.name());
-      tmp = tmp.replaceAll("\\+","%20");
-      writer.println(tmp);
-      writer.print("DeletionDate=");
-      synchronized (TRASH_TS_FORMAT) {
-        tmp = TRASH_TS_FORMAT.format(LocalDateTime.now());
+    List<TrashEntry> entries = new ArrayList<>();
+    Map<Path, Map<String, TrashInfoReader.DirectorySize>> directorySizes = new HashMap<>();
+    for (TrashIndex index : synced) {
+      TrashDirectory trash = index.getTrash();
+      try {
+        List<TrashEntry> indexed = index.query(null,
+                                               null,
+                                               null);
+        directorySizes.put(trash.getRoot(),
+                           TrashInfoReader.readDirectorySizes(trash));
+        entries.addAll(indexed);
+      } catch (IOException ex) {
+        log.log(Level.FINE,
+                "Cannot read " + trash.getInfoDir().toString(),
+                ex);
       }
-      writer.println(tmp);
     }
+    return entries.stream()
+            .map(e -> withCachedSize(e,
+                                     directorySizes.get(e.getTrashedFile().getParent().getParent())))
+            .filter(Objects::nonNull)
+            .map(this::withSize);
   }
 
-  private FileLock testCreateFile(Path path)
+  /**
+   * @return the entry with the size of a file or a cached directory size, {@code null} if the item left the trash
+   */
+  private static TrashEntry withCachedSize(TrashEntry entry,
+                                           Map<String, TrashInfoReader.DirectorySize> directorySizes)
   {
+    Path infoFile = entry.getTrashedFile().getParent().resolveSibling(TrashDirectory.INFO)
+            .resolve(entry.getTrashName() + TrashInfoReader.INFO_SUFFIX);
     try {
-      FileChannel channel = FileChannel.open(path,
-                                             StandardOpenOption.WRITE,
-                                             StandardOpenOption.CREATE_NEW);
-      return channel.lock();
+      return new TrashEntry(entry.getTrashName(),
+                            entry.getOriginalPath(),
+                            entry.getDeletionDate(),
+                            entry.getTrashedFile(),
+                            TrashInfoReader.readSize(entry.getTrashedFile(),
+                                                     infoFile,
+                                                     directorySizes));
+    } catch (NoSuchFileException ex) {
+      return null;
     } catch (IOException ex) {
+      return entry;
+    }
+  }
+
+  /**
+   * Fill in the size of directories missing in {@code directorysizes}.
+   */
+  private TrashEntry withSize(TrashEntry entry)
+  {
+    if (entry.getSize() >= 0) {
+      return entry;
+    }
+    try {
+      return new TrashEntry(entry.getTrashName(),
+                            entry.getOriginalPath(),
+                            entry.getDeletionDate(),
+                            entry.getTrashedFile(),
+                            ioPool.invoke(new DirectorySizeTask(entry.getTrashedFile())));
+    } catch (UncheckedIOException ex) {
+      return entry;
+    }
+  }
+
+  @Override
+  public TrashReport purge(TrashPurgePolicy policy)
+  {
+    final List<TrashEntry> entries;
+    try (Stream<TrashEntry> stream = listTrash()) {
+      Stream<TrashEntry> parsed = stream.parallel();
+      if (policy.needsSizes()) {
+        // otherwise every tree would be walked twice, to measure and to delete it
+        parsed = parsed.map(this::withSize);
+      }
+      entries = parsed.collect(Collectors.toList());
+    }
+    Map<Path, Outcome> outcomes = new LinkedHashMap<>();
+    Map<Path, IOException> errors = new HashMap<>();
+    // trash directories with purged items, only the paths are needed
+    Map<Path, TrashDirectory> purged = new HashMap<>();
+    Map<TrashEntry, ForkJoinTask<Void>> tasks = new LinkedHashMap<>();
+    for (TrashEntry entry : policy.select(entries)) {
+      tasks.put(entry,
+                ioPool.submit(new DeleteTreeTask(entry.getTrashedFile())));
     }
-    return null;
+    for (Map.Entry<TrashEntry, ForkJoinTask<Void>> e : tasks.entrySet()) {
+      Path trashedFile = e.getKey().getTrashedFile();
+      try {
+        e.getValue().get();
+        purgeInfo(e.getKey());
+        sizeAccounting.remove(trashedFile);
+        TrashStatistics.INSTANCE.purged.increment();
+        purged.computeIfAbsent(trashedFile.getParent().getParent(),
+                               root -> new TrashDirectory(root,
+                                                          null));
+        outcomes.put(trashedFile,
+                     Outcome.SUCCESS);
+      } catch (ExecutionException ex) {
+        outcomes.put(trashedFile,
+                     Outcome.FAILED);
+        errors.put(trashedFile,
+                   toIOException(ex.getCause()));
+      } catch (IOException ex) {
+        outcomes.put(trashedFile,
+                     Outcome.FAILED);
+        errors.put(trashedFile,
+                   ex);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        outcomes.put(trashedFile,
+                     Outcome.FAILED);
+      }
+    }
+    for (TrashDirectory trash : purged.values()) {
+      try {
+        directorySizesWriter.compact(trash);
+      } catch (IOException ex) {
+        log.log(Level.WARNING,
+                "Cannot update directorysizes",
+                ex);
+      }
+    }
+    return new TrashReport(outcomes,
+                           errors);
   }
 
-  private TrashContext findTrashFileName(String name,
-                                         Path infoDir,
-                                         Path filesDir) throws IOException
+  private static IOException toIOException(Throwable th)
   {
-    String strInfoDir = infoDir.toString();
-    String strNewName = name;
-    Path newName = Paths.get(strInfoDir,
-                             strNewName + ".trashinfo");
-    long ctr = 1;
-    FileLock lock = null;
-    while ((lock = testCreateFile(newName)) == null) {
-      strNewName = name + "_" + ctr;
-      newName = Paths.get(strInfoDir,
-                          strNewName + ".trashinfo");
-      ++ctr;
+    if (th instanceof UncheckedIOException uex) {
+      return uex.getCause();
+    }
+    if (th instanceof IOException ioex) {
+      return ioex;
     }
-    return new TrashContext(Paths.get(filesDir.toString(),
-                                      strNewName),
-                            lock,
-                            newName);
+    return new IOException(th);
   }
+
+  private void purgeInfo(TrashEntry entry) throws IOException
+  {
+    Path root = entry.getTrashedFile().getParent().getParent();
+    Files.deleteIfExists(root.resolve(TrashDirectory.INFO)
+            .resolve(entry.getTrashName() + TrashInfoReader.INFO_SUFFIX));
+    TrashIndex index = indexes.get(root);
+    if (index != null) {
+      index.removed(entry.getTrashName());
+    }
+  }
+
+  /**
+   * Compute the size of a trashed directory and append it to {@code directorysizes}. Runs in {@link #ioPool} after the
+   * directory has been moved, a missing line only means that readers have to compute the size themselves.
+   */
+  private void updateDirectorySize(TrashDirectory trash,
+                                   Path trashedDir,
+                                   Path infoFile)
+  {
+    try {
+      TrashEvents.DirectorySize event = new TrashEvents.DirectorySize();
+      event.begin();
+      long size = new DirectorySizeTask(trashedDir).invoke();
+      TrashStatistics.INSTANCE.directorySizeWalks.increment();
+      if (event.shouldCommit()) {
+        event.directory = trashedDir.toString();
+        event.size = size;
+        event.commit();
+      }
+      sizeAccounting.update(trashedDir,
+                            size);
+      FileTime fTime = Files.getLastModifiedTime(infoFile);
+      String line = TrashInfoWriter.directorySizeLine(size,
+                                                      fTime.toMillis(),
+                                                      trashedDir.getFileName().toString());
+      directorySizesWriter.append(trash.getDirectorySizesFile(),
+                                  line);
+    } catch (IOException | UncheckedIOException ex) {
+      // restored or purged in between
+      log.log(Level.FINE,
+              "Cannot determine size of " + trashedDir.toString(),
+              ex);
+    }
+  }
+
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.thumbnails.CancellationToken;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per thumbnail locks shared between threads and processes. A {@link FileLock} is held by the whole JVM and
+ * {@code FileChannel.lock} throws if the JVM already holds an overlapping lock, so threads of this process are
+ * serialized by an in-process lock first and only the winner takes the file lock.
+ * <p>
+ * Lock files are deleted on release, so the cache does not collect one file per thumbnail. While still holding the
+ * lock, the holder unlinks the file and then writes a marker byte into it. A process that was waiting on the unlinked
+ * file gets the lock on a non-empty file, drops it and retries with a freshly created one. Since a file is marked only
+ * after it is unlinked, a marked file can never block the name. A holder dying between the two steps can at worst let
+ * one waiter generate the same thumbnail concurrently, which the atomic rename of the result tolerates.
+ */
+final class ThumbnailLocks {
+
+  private static final long POLL_MILLIS = 50;
+  private static final byte[] STALE_MARKER = {'x'};
+
+  private static final class Entry {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private int users;
+  }
+
+  /**
+   * A held thumbnail lock.
+   */
+  final class Lock implements AutoCloseable {
+
+    private final Path lockFile;
+    private final Entry entry;
+    private final FileLock fileLock;
+
+    private Lock(Path lockFile,
+                 Entry entry,
+                 FileLock fileLock)
+    {
+      this.lockFile = lockFile;
+      this.entry = entry;
+      this.fileLock = fileLock;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      try (FileChannel channel = fileLock.channel()) {
+        try {
+          Files.deleteIfExists(lockFile);
+          channel.write(ByteBuffer.wrap(STALE_MARKER),
+                        0);
+        } finally {
+          fileLock.release();
+        }
+      } finally {
+        entry.lock.unlock();
+        releaseEntry(lockFile);
+      }
+    }
+
+  }
+
+  private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+  private Entry acquireEntry(Path lockFile)
+  {
+    return entries.compute(lockFile,
+                           (k, v) -> {
+                             Entry result = v != null ? v : new Entry();
+                             ++result.users;
+                             return result;
+                           });
+  }
+
+  private void releaseEntry(Path lockFile)
+  {
+    entries.computeIfPresent(lockFile,
+                             (k, v) -> --v.users == 0 ? null : v);
+  }
+
+  private static void sleep(CancellationToken token) throws InterruptedIOException
+  {
+    try {
+      Thread.sleep(POLL_MILLIS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    token.throwIfCancelled();
+  }
+
+  /**
+   * Lock {@code lockFile}.
+   *
+   * @param lockFile the lock file, created if necessary
+   * @param wait if {@code true} wait until the lock is free, otherwise give up immediately
+   * @param token stops waiting
+   * @return the lock or {@code null} if {@code wait} is {@code false} and the lock is held by someone else
+   * @throws InterruptedIOException if {@code token} is cancelled while waiting
+   * @throws IOException on Error
+   */
+  Lock lock(Path lockFile,
+            boolean wait,
+            CancellationToken token) throws IOException
+  {
+    Entry entry = acquireEntry(lockFile);
+    boolean success = false;
+    try {
+      try {
+        while (!entry.lock.tryLock(POLL_MILLIS,
+                                   TimeUnit.MILLISECONDS)) {
+          if (!wait) {
+            return null;
+          }
+          token.throwIfCancelled();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("waiting for thumbnail lock interrupted");
+      }
+      try {
+        Files.createDirectories(lockFile.getParent());
+        for (;;) {
+          FileChannel channel = FileChannel.open(lockFile,
+                                                 StandardOpenOption.CREATE,
+                                                 StandardOpenOption.WRITE);
+          try {
+            FileLock fileLock;
+            while ((fileLock = channel.tryLock()) == null) {
+              if (!wait) {
+                return null;
+              }
+              sleep(token);
+            }
+            if (channel.size() > 0) {
+              // the previous holder deleted the file while we were waiting on it
+              fileLock.release();
+              continue;
+            }
+            success = true;
+            return new Lock(lockFile,
+                            entry,
+                            fileLock);
+          } finally {
+            if (!success) {
+              channel.close();
+            }
+          }
+        }
+      } finally {
+        if (!success) {
+          entry.lock.unlock();
+        }
+      }
+    } finally {
+      if (!success) {
+        releaseEntry(lockFile);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.PlatformFolders;
+import at.or.reder.platformutils.util.LazyInitialized;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+
+/**
+ * Finds the trash directory for a file following the freedesktop trash specification: the home trash for files on the
+ * same device, otherwise {@code $topdir/.Trash/$uid} or {@code $topdir/.Trash-$uid} of the mount containing the file,
+ * so that trashing is always a rename. The result is cached per device, and each trash directory is checked only once
+ * until {@link #invalidate(TrashDirectory)} is called.
+ */
+@Log
+final class TrashDirectories {
+
+  private static final String ATTR_DEV = "unix:dev";
+  private static final int STICKY_BIT = 01000;
+  private static final Path MOUNTS = Paths.get("/proc/self/mounts");
+
+  private final PlatformFolders folders;
+  private final Path mounts;
+  private final LazyInitialized<Integer> uid = new LazyInitialized<>(TrashDirectories::loadUid);
+  private final ConcurrentHashMap<Object, TrashDirectory> byDevice = new ConcurrentHashMap<>();
+  // root of each trash directory whose structure was created or checked, mapped to its device
+  private final ConcurrentHashMap<Path, Object> verified = new ConcurrentHashMap<>();
+  // admin trash directories already reported as unusable
+  private final Set<Path> rejectedAdminTrashes = ConcurrentHashMap.newKeySet();
+  private volatile MountTrashes mountTrashes;
+
+  /**
+   * The trash directories found on the mount points of one mount table.
+   */
+  @RequiredArgsConstructor
+  private static final class MountTrashes {
+
+    private final String mountTable;
+    private final List<TrashDirectory> trashes;
+  }
+
+  TrashDirectories(PlatformFolders folders)
+  {
+    this(folders,
+         MOUNTS);
+  }
+
+  /**
+   * @param mounts the mount table, in the format of {@code /proc/self/mounts}
+   */
+  TrashDirectories(PlatformFolders folders,
+                   Path mounts)
+  {
+    this.folders = folders;
+    this.mounts = mounts;
+  }
+
+  private static Integer loadUid()
+  {
+    try {
+      return (Integer) Files.getAttribute(Paths.get("/proc/self"),
+                                          "unix:uid");
+    } catch (IOException | UnsupportedOperationException ex) {
+      try {
+        return (Integer) Files.getAttribute(Paths.get(System.getProperty("user.home")),
+                                            "unix:uid");
+      } catch (IOException | UnsupportedOperationException ex2) {
+        log.log(Level.WARNING,
+                "Cannot determine uid",
+                ex2);
+        return null;
+      }
+    }
+  }
+
+  private static Object getDevice(Path path) throws IOException
+  {
+    return Files.getAttribute(path,
+                              ATTR_DEV,
+                              LinkOption.NOFOLLOW_LINKS);
+  }
+
+  TrashDirectory getHomeTrash()
+  {
+    return new TrashDirectory(folders.getTrashFolder(),
+                              null);
+  }
+
+  /**
+   * Get the trash directory to move {@code file} into. The directory is created if necessary.
+   *
+   * @param file an absolute, normalized path
+   * @return the trash directory
+   * @throws IOException on Error
+   */
+  TrashDirectory findTrash(Path file) throws IOException
+  {
+    TrashDirectory home = getHomeTrash();
+    Object homeDevice = verify(home);
+    Object device = getDevice(file);
+    if (device.equals(homeDevice)) {
+      return home;
+    }
+    TrashDirectory result = byDevice.get(device);
+    if (result == null) {
+      result = createTopDirTrash(file,
+                                 device);
+      if (result == null) {
+        // no usable trash on that device, Files.move will copy to the home trash
+        result = home;
+      }
+      byDevice.putIfAbsent(device,
+                           result);
+    }
+    verify(result);
+    return result;
+  }
+
+  /**
+   * Creates the structure of {@code trash} the first time it is used, later calls only look up the cached device.
+   *
+   * @return the device of the trash directory
+   */
+  private Object verify(TrashDirectory trash) throws IOException
+  {
+    Object device = verified.get(trash.getRoot());
+    if (device == null) {
+      trash.ensureExists();
+      device = getDevice(trash.getRoot());
+      verified.put(trash.getRoot(),
+                   device);
+    }
+    return device;
+  }
+
+  /**
+   * Forget that {@code trash} was verified, e.g. because it was removed behind our back. The next
+   * {@link #findTrash(java.nio.file.Path)} checks and creates it again.
+   */
+  void invalidate(TrashDirectory trash)
+  {
+    verified.remove(trash.getRoot());
+    byDevice.values().removeIf(t -> t.getRoot().equals(trash.getRoot()));
+  }
+
+  /**
+   * All trash directories that exist: the home trash and the trash directories of the mounted file systems. Nothing is
+   * created. The mount points are only searched again when the mount table changed, trash directories created by
+   * other programs on an unchanged mount are found after a remount or a restart.
+   *
+   * @return the trash directories, home trash first
+   */
+  List<TrashDirectory> findExistingTrashes()
+  {
+    Map<Path, TrashDirectory> result = new LinkedHashMap<>();
+    TrashDirectory home = getHomeTrash();
+    if (Files.isDirectory(home.getInfoDir())) {
+      result.put(home.getRoot(),
+                 home);
+    }
+    Integer myUid = uid.get();
+    if (myUid == null) {
+      return new ArrayList<>(result.values());
+    }
+    List<TrashDirectory> candidates = new ArrayList<>(getMountTrashes(myUid));
+    // created by this process after the mount points were searched
+    candidates.addAll(byDevice.values());
+    for (TrashDirectory trash : candidates) {
+      if (!result.containsKey(trash.getRoot()) && Files.isDirectory(trash.getInfoDir(),
+                                                                     LinkOption.NOFOLLOW_LINKS)) {
+        result.put(trash.getRoot(),
+                   trash);
+      }
+    }
+    return new ArrayList<>(result.values());
+  }
+
+  private List<TrashDirectory> getMountTrashes(int myUid)
+  {
+    String mountTable = readMountTable();
+    MountTrashes cached = mountTrashes;
+    if (cached == null || !cached.mountTable.equals(mountTable)) {
+      cached = new MountTrashes(mountTable,
+                                findMountTrashes(mountTable,
+                                                 myUid));
+      mountTrashes = cached;
+    }
+    return cached.trashes;
+  }
+
+  List<TrashDirectory> findMountTrashes(String mountTable,
+                                        int myUid)
+  {
+    List<TrashDirectory> result = new ArrayList<>();
+    for (Path topDir : parseMountPoints(mountTable)) {
+      Path adminTrash = topDir.resolve(".Trash");
+      List<TrashDirectory> candidates = new ArrayList<>(2);
+      if (isValidAdminTrash(adminTrash)) {
+        candidates.add(new TrashDirectory(adminTrash.resolve(Integer.toString(myUid)),
+                                          topDir));
+      }
+      candidates.add(new TrashDirectory(topDir.resolve(".Trash-" + myUid),
+                                        topDir));
+      for (TrashDirectory trash : candidates) {
+        if (Files.isDirectory(trash.getInfoDir(),
+                              LinkOption.NOFOLLOW_LINKS)) {
+          result.add(trash);
+        }
+      }
+    }
+    return List.copyOf(result);
+  }
+
+  private String readMountTable()
+  {
+    try {
+      return Files.readString(mounts);
+    } catch (IOException ex) {
+      log.log(Level.FINE,
+              "Cannot read mount points",
+              ex);
+      return "";
+    }
+  }
+
+  static List<Path> parseMountPoints(String mountTable)
+  {
+    List<Path> result = new ArrayList<>();
+    for (String line : mountTable.split("\n")) {
+      String[] parts = line.split(" ");
+      if (parts.length > 1) {
+        result.add(Paths.get(unescapeMountPoint(parts[1])));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Blanks, tabs, newlines and backslashes are written as octal escapes in {@code /proc/self/mounts}.
+   */
+  private static String unescapeMountPoint(String mountPoint)
+  {
+    if (mountPoint.indexOf('\\') < 0) {
+      return mountPoint;
+    }
+    StringBuilder builder = new StringBuilder(mountPoint.length());
+    int i = 0;
+    while (i < mountPoint.length()) {
+      char c = mountPoint.charAt(i);
+      if (c == '\\' && i + 3 < mountPoint.length() && isOctal(mountPoint,
+                                                               i + 1)) {
+        builder.append((char) Integer.parseInt(mountPoint.substring(i + 1,
+                                                                    i + 4),
+                                               8));
+        i += 4;
+      } else {
+        builder.append(c);
+        ++i;
+      }
+    }
+    return builder.toString();
+  }
+
+  private static boolean isOctal(String str,
+                                 int offset)
+  {
+    for (int i = offset; i < offset + 3; ++i) {
+      char c = str.charAt(i);
+      if (c < '0' || c > '7') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Path findTopDir(Path file,
+                                 Object device) throws IOException
+  {
+    Path current = file;
+    Path parent = current.getParent();
+    while (parent != null && device.equals(getDevice(parent))) {
+      current = parent;
+      parent = current.getParent();
+    }
+    return current;
+  }
+
+  private TrashDirectory createTopDirTrash(Path file,
+                                           Object device)
+  {
+    Integer myUid = uid.get();
+    if (myUid == null) {
+      return null;
+    }
+    try {
+      Path topDir = findTopDir(file,
+                               device);
+      Path adminTrash = topDir.resolve(".Trash");
+      if (isValidAdminTrash(adminTrash)) {
+        TrashDirectory result = new TrashDirectory(adminTrash.resolve(myUid.toString()),
+                                                   topDir);
+        if (tryCreate(result)) {
+          return result;
+        }
+      }
+      TrashDirectory result = new TrashDirectory(topDir.resolve(".Trash-" + myUid),
+                                                 topDir);
+      if (tryCreate(result)) {
+        return result;
+      }
+    } catch (IOException ex) {
+      log.log(Level.FINE,
+              "Cannot determine trash for " + file.toString(),
+              ex);
+    }
+    return null;
+  }
+
+  /**
+   * {@code $topdir/.Trash} may only be used if it is a real directory with the sticky bit set. An unusable one is
+   * reported once.
+   */
+  boolean isValidAdminTrash(Path adminTrash)
+  {
+    if (!Files.isDirectory(adminTrash,
+                           LinkOption.NOFOLLOW_LINKS)) {
+      return false;
+    }
+    try {
+      int mode = (Integer) Files.getAttribute(adminTrash,
+                                              "unix:mode",
+                                              LinkOption.NOFOLLOW_LINKS);
+      if ((mode & STICKY_BIT) == 0) {
+        if (rejectedAdminTrashes.add(adminTrash)) {
+          log.log(Level.WARNING,
+                  "{0} has no sticky bit set and is not used",
+                  adminTrash);
+        }
+        return false;
+      }
+      return true;
+    } catch (IOException | UnsupportedOperationException ex) {
+      return false;
+    }
+  }
+
+  private static boolean tryCreate(TrashDirectory trash)
+  {
+    try {
+      if (!Files.isDirectory(trash.getRoot(),
+                             LinkOption.NOFOLLOW_LINKS)) {
+        Files.createDirectory(trash.getRoot(),
+                              PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      }
+      trash.ensureExists();
+      return Files.isWritable(trash.getInfoDir()) && Files.isWritable(trash.getFilesDir());
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+}
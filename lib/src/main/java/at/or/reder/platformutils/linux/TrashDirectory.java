@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import lombok.Getter;
+
+/**
+ * One trash directory: the home trash or the trash of a mounted file system.
+ */
+@Getter
+final class TrashDirectory {
+
+  static final String FILES = "files";
+  static final String INFO = "info";
+  static final String DIRECTORY_SIZES = "directorysizes";
+  /**
+   * The trash directory itself, containing {@code files}, {@code info} and {@code directorysizes}.
+   */
+  private final Path root;
+  /**
+   * The top directory of the mount this trash belongs to, {@code null} for the home trash.
+   */
+  private final Path topDir;
+  private final Path filesDir;
+  private final Path infoDir;
+  private final Path directorySizesFile;
+
+  TrashDirectory(Path root,
+                 Path topDir)
+  {
+    this.root = root;
+    this.topDir = topDir;
+    this.filesDir = root.resolve(FILES);
+    this.infoDir = root.resolve(INFO);
+    this.directorySizesFile = root.resolve(DIRECTORY_SIZES);
+  }
+
+  boolean isHomeTrash()
+  {
+    return topDir == null;
+  }
+
+  /**
+   * Create the directory structure, readable by the owner only.
+   */
+  void ensureExists() throws IOException
+  {
+    if (!Files.isDirectory(root)) {
+      Files.createDirectories(root,
+                              PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    }
+    Files.createDirectories(filesDir);
+    Files.createDirectories(infoDir);
+  }
+
+  /**
+   * The value of {@code Path=} for {@code original} before escaping. Trash directories of a mount store paths relative
+   * to the top directory, so the entries stay valid if the device is mounted elsewhere.
+   */
+  String toInfoPath(Path original)
+  {
+    if (topDir != null && original.startsWith(topDir)) {
+      return topDir.relativize(original).toString();
+    }
+    return original.toString();
+  }
+
+  /**
+   * Resolve the unescaped value of {@code Path=} to an absolute path.
+   */
+  Path resolveInfoPath(String infoPath)
+  {
+    Path tmp = Path.of(infoPath);
+    if (tmp.isAbsolute() || topDir == null) {
+      return tmp;
+    }
+    return topDir.resolve(tmp);
+  }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder events of the phases of {@link LinuxTrashService}. Fields are only filled if
+ * {@link Event#shouldCommit()}, so a disabled event costs a few field accesses.
+ */
+final class TrashEvents {
+
+  private static final String CATEGORY = "Platform Utils";
+  private static final String SUBCATEGORY = "Trash";
+
+  private TrashEvents()
+  {
+  }
+
+  /**
+   * Result of {@link Validate} for a file that may be trashed.
+   */
+  static final String VALID = "VALID";
+  /**
+   * Outcome of an {@link Operation} that was cancelled.
+   */
+  static final String CANCELLED = "CANCELLED";
+
+  @Name("at.or.reder.platformutils.Trash")
+  @Label("Trash")
+  @Description("One file moved to the trash, encloses the events of its phases")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class Operation extends Event {
+
+    @Label("Path")
+    String path;
+    @Label("Outcome")
+    @Description("Final outcome of the operation, or CANCELLED")
+    String outcome;
+  }
+
+  @Name("at.or.reder.platformutils.TrashValidate")
+  @Label("Trash Validate")
+  @Description("Checks of the file and lookup of the trash directory")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class Validate extends Event {
+
+    @Label("Path")
+    String path;
+    @Label("Result")
+    @Description("VALID, or the outcome the file was rejected with")
+    String result;
+  }
+
+  @Name("at.or.reder.platformutils.TrashAllocateName")
+  @Label("Trash Allocate Name")
+  @Description("Creation of the info file under a unique name")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class AllocateName extends Event {
+
+    @Label("Trash Name")
+    String trashName;
+    @Label("Probes")
+    @Description("Names tried until one was free")
+    int probes;
+  }
+
+  @Name("at.or.reder.platformutils.TrashInfoWrite")
+  @Label("Trash Info Write")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class InfoWrite extends Event {
+
+    @Label("Info File")
+    String infoFile;
+  }
+
+  @Name("at.or.reder.platformutils.TrashMove")
+  @Label("Trash Move")
+  @Description("Rename or copy of the item into the trash")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class Move extends Event {
+
+    @Label("Path")
+    String path;
+    @Label("Copied")
+    @Description("Copied to another file system instead of renamed")
+    boolean copied;
+    @Label("Size")
+    @DataAmount
+    long size;
+  }
+
+  @Name("at.or.reder.platformutils.TrashDirectorySize")
+  @Label("Trash Directory Size")
+  @Description("Walk of a trashed directory to compute its size")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class DirectorySize extends Event {
+
+    @Label("Directory")
+    String directory;
+    @Label("Size")
+    @DataAmount
+    long size;
+  }
+
+  @Name("at.or.reder.platformutils.TrashDirectorySizesLock")
+  @Label("Trash Directorysizes Lock")
+  @Description("Wait for the file lock on directorysizes")
+  @Category({CATEGORY, SUBCATEGORY})
+  static final class DirectorySizesLock extends Event {
+
+    @Label("File")
+    String file;
+    @Label("Lines")
+    int lines;
+  }
+
+}
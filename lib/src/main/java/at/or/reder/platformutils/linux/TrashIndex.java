@@ -0,0 +1,536 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+/**
+ * In memory index of one trash directory, sorted by original path and by deletion date, so items below a directory or
+ * trashed in a period are range scans. The index is built on first use from {@code info/} and then kept current by the
+ * writes of the trash service and by a {@link WatchService} on {@code info/}, whose events are drained on every access,
+ * so no thread is needed. Events that do not match a change of the trash service, i.e. changes by other programs, are
+ * reported to a callback.
+ * <p>
+ * The index is persisted by {@link #close()}, not on the read path, so queries never write. On load only info files
+ * whose modification time differs from the persisted one are parsed, the others cost one {@code stat}.
+ */
+@Log
+final class TrashIndex {
+
+  @Getter
+  private final TrashDirectory trash;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, TrashEntry> byName = new HashMap<>();
+  private final TreeMap<String, List<TrashEntry>> byOriginal = new TreeMap<>();
+  private final TreeMap<LocalDateTime, List<TrashEntry>> byDate = new TreeMap<>();
+  /**
+   * modification time of the info file per trash name, missing for entries added by this process.
+   */
+  private final Map<String, Long> infoMTimes = new HashMap<>();
+  private final TrashInfoReader reader = new TrashInfoReader();
+  /**
+   * where the index is persisted, {@code null} for none.
+   */
+  private final Path cacheFile;
+  /**
+   * called when another program changed the trash.
+   */
+  private final Runnable externalChange;
+  private WatchService watchService;
+  private boolean loaded;
+  private boolean dirty;
+
+  TrashIndex(TrashDirectory trash,
+             Path cacheFile,
+             Runnable externalChange)
+  {
+    this.trash = trash;
+    this.cacheFile = cacheFile;
+    this.externalChange = externalChange;
+  }
+
+  private void startWatching()
+  {
+    try {
+      watchService = trash.getInfoDir().getFileSystem().newWatchService();
+      trash.getInfoDir().register(watchService,
+                                  StandardWatchEventKinds.ENTRY_CREATE,
+                                  StandardWatchEventKinds.ENTRY_MODIFY,
+                                  StandardWatchEventKinds.ENTRY_DELETE);
+    } catch (IOException | UnsupportedOperationException ex) {
+      log.log(Level.FINE,
+              "Cannot watch " + trash.getInfoDir().toString(),
+              ex);
+      closeWatchService();
+    }
+  }
+
+  private void closeWatchService()
+  {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException ex) {
+      }
+      watchService = null;
+    }
+  }
+
+  private void load() throws IOException
+  {
+    byName.clear();
+    byOriginal.clear();
+    byDate.clear();
+    infoMTimes.clear();
+    if (watchService == null) {
+      // register before reading, changes during the scan are seen as events
+      startWatching();
+    }
+    Map<String, TrashEntry> cached = new HashMap<>();
+    Map<String, Long> cachedMTimes = new HashMap<>();
+    readCache(cached,
+              cachedMTimes);
+    dirty = false;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(trash.getInfoDir(),
+                                                                 "*" + TrashInfoReader.INFO_SUFFIX)) {
+      for (Path infoFile : stream) {
+        String trashName = TrashInfoReader.getTrashName(infoFile);
+        Long cachedMTime = cachedMTimes.remove(trashName);
+        if (cachedMTime != null && cachedMTime == getMTime(infoFile)) {
+          put(cached.get(trashName),
+              cachedMTime);
+        } else {
+          readEntry(infoFile);
+          dirty = true;
+        }
+      }
+    }
+    // entries left in the trash meanwhile
+    dirty |= !cachedMTimes.isEmpty();
+    loaded = true;
+  }
+
+  private static long getMTime(Path infoFile)
+  {
+    try {
+      return Files.getLastModifiedTime(infoFile).toMillis();
+    } catch (IOException ex) {
+      return -1;
+    }
+  }
+
+  private void readEntry(Path infoFile)
+  {
+    try {
+      long mtime = Files.getLastModifiedTime(infoFile).toMillis();
+      TrashEntry entry = reader.read(trash,
+                                     infoFile);
+      if (entry != null) {
+        put(entry,
+            mtime);
+      }
+    } catch (IOException ex) {
+      // deleted in between or not readable, skip
+      log.log(Level.FINEST,
+              "Cannot read " + infoFile.toString(),
+              ex);
+    }
+  }
+
+  private void put(TrashEntry entry,
+                   Long infoMTime)
+  {
+    remove(entry.getTrashName());
+    byName.put(entry.getTrashName(),
+               entry);
+    if (infoMTime != null) {
+      infoMTimes.put(entry.getTrashName(),
+                     infoMTime);
+    }
+    byOriginal.computeIfAbsent(entry.getOriginalPath().toString(),
+                               k -> new ArrayList<>(1)).add(entry);
+    if (entry.getDeletionDate() != null) {
+      byDate.computeIfAbsent(entry.getDeletionDate(),
+                             k -> new ArrayList<>(1)).add(entry);
+    }
+    dirty = true;
+  }
+
+  private static <K> void removeFrom(Map<K, List<TrashEntry>> map,
+                                     K key,
+                                     TrashEntry entry)
+  {
+    List<TrashEntry> list = map.get(key);
+    if (list != null) {
+      list.remove(entry);
+      if (list.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+  private void remove(String trashName)
+  {
+    TrashEntry old = byName.remove(trashName);
+    if (old != null) {
+      infoMTimes.remove(trashName);
+      removeFrom(byOriginal,
+                 old.getOriginalPath().toString(),
+                 old);
+      if (old.getDeletionDate() != null) {
+        removeFrom(byDate,
+                   old.getDeletionDate(),
+                   old);
+      }
+      dirty = true;
+    }
+  }
+
+  private void processEvents() throws IOException
+  {
+    if (!loaded) {
+      load();
+      return;
+    }
+    if (watchService == null) {
+      return;
+    }
+    boolean external = false;
+    try {
+      WatchKey key;
+      while ((key = watchService.poll()) != null) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            loaded = false;
+            continue;
+          }
+          Path infoFile = trash.getInfoDir().resolve((Path) event.context());
+          String trashName = TrashInfoReader.getTrashName(infoFile);
+          if (trashName == null) {
+            continue;
+          }
+          // the service updates the index itself, so only changes of other programs are news
+          if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            external |= byName.containsKey(trashName);
+            remove(trashName);
+          } else {
+            external |= !byName.containsKey(trashName);
+            readEntry(infoFile);
+          }
+        }
+        if (!key.reset()) {
+          // info directory is gone
+          closeWatchService();
+          loaded = false;
+        }
+      }
+    } catch (ClosedWatchServiceException ex) {
+      watchService = null;
+      loaded = false;
+    }
+    if (!loaded) {
+      external = true;
+      load();
+    }
+    if (external) {
+      externalChange.run();
+    }
+  }
+
+  /**
+   * Apply the pending changes of {@code info/}, which reports changes of other programs.
+   *
+   * @throws IOException on Error
+   */
+  void sync() throws IOException
+  {
+    lock.lock();
+    try {
+      processEvents();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Find the most recently trashed item originally located at {@code originalPath}.
+   *
+   * @param originalPath absolute, normalized path
+   * @return the entry
+   * @throws IOException on Error
+   */
+  Optional<TrashEntry> findLatest(Path originalPath) throws IOException
+  {
+    lock.lock();
+    try {
+      processEvents();
+      List<TrashEntry> list = byOriginal.get(originalPath.toString());
+      if (list == null) {
+        return Optional.empty();
+      }
+      TrashEntry result = null;
+      for (TrashEntry e : list) {
+        if (result == null || isNewer(e,
+                                      result)) {
+          result = e;
+        }
+      }
+      return Optional.ofNullable(result);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static boolean isNewer(TrashEntry a,
+                                 TrashEntry b)
+  {
+    LocalDateTime da = a.getDeletionDate();
+    LocalDateTime db = b.getDeletionDate();
+    if (da == null) {
+      return false;
+    }
+    // on a tie the entry added later wins
+    return db == null || !da.isBefore(db);
+  }
+
+  /**
+   * Record an item trashed by this process. Ignored until the index is loaded, the scan will pick it up.
+   */
+  void added(TrashEntry entry)
+  {
+    lock.lock();
+    try {
+      if (loaded) {
+        put(entry,
+            null);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Record an item that left the trash.
+   */
+  void removed(String trashName)
+  {
+    lock.lock();
+    try {
+      remove(trashName);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Persist the index and stop watching {@code info/}. A later access loads the index again.
+   */
+  void close()
+  {
+    lock.lock();
+    try {
+      save();
+      closeWatchService();
+      loaded = false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Find items by original location and deletion date.
+   *
+   * @param pathPrefix original path or one of its ancestors, {@code null} for any
+   * @param from earliest deletion date, inclusive, {@code null} for no lower bound
+   * @param to latest deletion date, exclusive, {@code null} for no upper bound
+   * @return the items, items with unknown deletion date only if there are no date bounds
+   * @throws IOException on Error
+   */
+  List<TrashEntry> query(Path pathPrefix,
+                         LocalDateTime from,
+                         LocalDateTime to) throws IOException
+  {
+    lock.lock();
+    try {
+      processEvents();
+      List<TrashEntry> result = new ArrayList<>();
+      if (pathPrefix != null) {
+        String prefix = pathPrefix.toString();
+        List<TrashEntry> exact = byOriginal.get(prefix);
+        if (exact != null) {
+          result.addAll(exact);
+        }
+        // '0' follows '/', so this is everything below prefix
+        String dirPrefix = prefix.endsWith("/") ? prefix : prefix + "/";
+        addAll(byOriginal.subMap(dirPrefix,
+                                 true,
+                                 dirPrefix.substring(0,
+                                                     dirPrefix.length() - 1) + "0",
+                                 false).values(),
+               result);
+        if (from != null || to != null) {
+          result.removeIf(e -> !isInRange(e.getDeletionDate(),
+                                          from,
+                                          to));
+        }
+      } else if (from != null || to != null) {
+        NavigableMap<LocalDateTime, List<TrashEntry>> range = byDate;
+        if (from != null) {
+          range = range.tailMap(from,
+                                true);
+        }
+        if (to != null) {
+          range = range.headMap(to,
+                                false);
+        }
+        addAll(range.values(),
+               result);
+      } else {
+        result.addAll(byName.values());
+      }
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void addAll(Collection<List<TrashEntry>> lists,
+                             List<TrashEntry> result)
+  {
+    for (List<TrashEntry> list : lists) {
+      result.addAll(list);
+    }
+  }
+
+  private static boolean isInRange(LocalDateTime date,
+                                   LocalDateTime from,
+                                   LocalDateTime to)
+  {
+    return date != null && (from == null || !date.isBefore(from)) && (to == null || date.isBefore(to));
+  }
+
+  /**
+   * Read the persisted index. Each line holds the modification time of the info file, the trash name, the original
+   * path and the deletion date, names and path escaped like in {@code .trashinfo} files.
+   */
+  private void readCache(Map<String, TrashEntry> entries,
+                         Map<String, Long> mtimes)
+  {
+    if (cacheFile == null) {
+      return;
+    }
+    try {
+      List<String> lines = Files.readAllLines(cacheFile,
+                                              StandardCharsets.US_ASCII);
+      if (lines.isEmpty() || !lines.get(0).equals(cacheHeader())) {
+        return;
+      }
+      for (String line : lines.subList(1,
+                                       lines.size())) {
+        String[] parts = line.split(" ");
+        if (parts.length == 4) {
+          String trashName = TrashPaths.decode(parts[1]);
+          LocalDateTime date = "-".equals(parts[3]) ? null : LocalDateTime.parse(parts[3],
+                                                                                  TrashInfoWriter.TRASH_TS_FORMAT);
+          entries.put(trashName,
+                      new TrashEntry(trashName,
+                                     Path.of(TrashPaths.decode(parts[2])),
+                                     date,
+                                     trash.getFilesDir().resolve(trashName),
+                                     -1));
+          mtimes.put(trashName,
+                     Long.valueOf(parts[0]));
+        }
+      }
+    } catch (NoSuchFileException ex) {
+      // first use
+    } catch (IOException | RuntimeException ex) {
+      log.log(Level.FINE,
+              "Ignoring broken trash index " + cacheFile.toString(),
+              ex);
+      entries.clear();
+      mtimes.clear();
+    }
+  }
+
+  private String cacheHeader()
+  {
+    return "trashindex 1 " + TrashPaths.encode(trash.getRoot().toString());
+  }
+
+  /**
+   * Persist the index if it changed. Written to a temporary file first, so readers see the old or the new index.
+   */
+  private void save()
+  {
+    if (cacheFile == null || !dirty) {
+      return;
+    }
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path tmp = cacheFile.resolveSibling(cacheFile.getFileName().toString() + ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tmp,
+                                                           StandardCharsets.US_ASCII)) {
+        writer.write(cacheHeader());
+        writer.write('\n');
+        for (TrashEntry e : byName.values()) {
+          Long mtime = infoMTimes.computeIfAbsent(e.getTrashName(),
+                                                  k -> getMTime(trash.getInfoDir().resolve(k + TrashInfoReader.INFO_SUFFIX)));
+          String date = e.getDeletionDate() != null ? TrashInfoWriter.TRASH_TS_FORMAT.format(e.getDeletionDate()) : "-";
+          writer.write(mtime + " " + TrashPaths.encode(e.getTrashName()) + " "
+                       + TrashPaths.encode(e.getOriginalPath().toString()) + " " + date);
+          writer.write('\n');
+        }
+      }
+      Files.move(tmp,
+                 cacheFile,
+                 StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+      dirty = false;
+    } catch (IOException ex) {
+      log.log(Level.FINE,
+              "Cannot write trash index " + cacheFile.toString(),
+              ex);
+    }
+  }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Parses {@code .trashinfo} files. An instance holds a small read buffer and must not be shared between threads.
+ */
+final class TrashInfoReader {
+
+  static final String INFO_SUFFIX = ".trashinfo";
+  private static final int BUFFER_SIZE = 4096;
+
+  /**
+   * One line of {@code directorysizes}.
+   */
+  @RequiredArgsConstructor
+  static final class DirectorySize {
+
+    private final long size;
+    /**
+     * modification time of the info file when the size was determined, in milliseconds.
+     */
+    private final long infoMTime;
+  }
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+  static String getTrashName(Path infoFile)
+  {
+    String fileName = infoFile.getFileName().toString();
+    if (fileName.length() > INFO_SUFFIX.length() && fileName.endsWith(INFO_SUFFIX)) {
+      return fileName.substring(0,
+                                fileName.length() - INFO_SUFFIX.length());
+    }
+    return null;
+  }
+
+  private String readContent(Path infoFile) throws IOException
+  {
+    buffer.clear();
+    try (FileChannel channel = FileChannel.open(infoFile,
+                                                StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          buffer.flip();
+          return StandardCharsets.UTF_8.decode(buffer).toString();
+        }
+      }
+    }
+    // very long path, does not fit into the buffer
+    return Files.readString(infoFile);
+  }
+
+  /**
+   * Read the {@code directorysizes} cache of a trash.
+   *
+   * @return size per trash name, empty if there is no cache
+   * @throws IOException on Error
+   */
+  static Map<String, DirectorySize> readDirectorySizes(TrashDirectory trash) throws IOException
+  {
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(trash.getDirectorySizesFile());
+    } catch (NoSuchFileException ex) {
+      return Map.of();
+    }
+    Map<String, DirectorySize> result = new HashMap<>();
+    for (String line : lines) {
+      String[] parts = line.split(" ",
+                                  3);
+      if (parts.length == 3) {
+        try {
+          // later lines win
+          result.put(TrashPaths.decode(parts[2]),
+                     new DirectorySize(Long.parseLong(parts[0]),
+                                       Long.parseLong(parts[1])));
+        } catch (NumberFormatException ex) {
+          // malformed line
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Read one info file without determining the size of the item.
+   *
+   * @param trash the trash directory containing {@code infoFile}
+   * @param infoFile the info file
+   * @return the entry or {@code null} if the file is no valid trash info
+   * @throws IOException on Error
+   */
+  TrashEntry read(TrashDirectory trash,
+                  Path infoFile) throws IOException
+  {
+    return read(trash,
+                infoFile,
+                null);
+  }
+
+  /**
+   * Read one info file. Sizes of directories are taken from {@code directorySizes}, they are never walked. A line is
+   * only used if it was written for this info file, a line of an earlier item of the same name is ignored.
+   *
+   * @param trash the trash directory containing {@code infoFile}
+   * @param infoFile the info file
+   * @param directorySizes the {@code directorysizes} cache, or {@code null} to skip the size
+   * @return the entry or {@code null} if the file is no valid trash info or the item is missing in {@code files/}
+   * @throws IOException on Error
+   */
+  TrashEntry read(TrashDirectory trash,
+                  Path infoFile,
+                  Map<String, DirectorySize> directorySizes) throws IOException
+  {
+    String trashName = getTrashName(infoFile);
+    if (trashName == null) {
+      return null;
+    }
+    String content = readContent(infoFile);
+    boolean inGroup = false;
+    String path = null;
+    LocalDateTime deletionDate = null;
+    for (String line : content.split("\n")) {
+      line = line.trim();
+      if (line.startsWith("[")) {
+        inGroup = "[Trash Info]".equals(line);
+      } else if (inGroup && path == null && line.startsWith("Path=")) {
+        path = TrashPaths.decode(line.substring(5));
+      } else if (inGroup && deletionDate == null && line.startsWith("DeletionDate=")) {
+        try {
+          deletionDate = LocalDateTime.parse(line.substring(13),
+                                             TrashInfoWriter.TRASH_TS_FORMAT);
+        } catch (DateTimeParseException ex) {
+          // unknown deletion date
+        }
+      }
+    }
+    if (path == null || path.isEmpty()) {
+      return null;
+    }
+    Path trashedFile = trash.getFilesDir().resolve(trashName);
+    long size = -1;
+    if (directorySizes != null) {
+      try {
+        size = readSize(trashedFile,
+                        infoFile,
+                        directorySizes);
+      } catch (NoSuchFileException ex) {
+        return null;
+      }
+    }
+    return new TrashEntry(trashName,
+                          trash.resolveInfoPath(path),
+                          deletionDate,
+                          trashedFile,
+                          size);
+  }
+
+  /**
+   * Determine the size of a trashed item without parsing its info file: the size of a file, or the size of a directory
+   * taken from {@code directorySizes}.
+   *
+   * @param trashedFile the item in {@code files/}
+   * @param infoFile the info file of the item
+   * @param directorySizes the {@code directorysizes} cache
+   * @return the size, {@code -1} if it is a directory missing in the cache
+   * @throws NoSuchFileException if the item is missing in {@code files/}
+   * @throws IOException on Error
+   */
+  static long readSize(Path trashedFile,
+                       Path infoFile,
+                       Map<String, DirectorySize> directorySizes) throws IOException
+  {
+    BasicFileAttributes attr = Files.readAttributes(trashedFile,
+                                                    BasicFileAttributes.class,
+                                                    LinkOption.NOFOLLOW_LINKS);
+    if (!attr.isDirectory()) {
+      return attr.size();
+    }
+    DirectorySize cached = directorySizes.get(trashedFile.getFileName().toString());
+    if (cached != null && cached.infoMTime == getMTime(infoFile)) {
+      return cached.size;
+    }
+    return -1;
+  }
+
+  private static long getMTime(Path infoFile) throws IOException
+  {
+    return Files.getLastModifiedTime(infoFile).toMillis();
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes {@code .trashinfo} and {@code directorysizes} lines through a reused buffer. Both formats are pure ASCII,
+ * because paths are percent-encoded, so characters are put into the buffer without a charset encoder.
+ */
+final class TrashInfoWriter {
+
+  static final DateTimeFormatter TRASH_TS_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+  private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+  private void put(String ascii)
+  {
+    if (buffer.remaining() < ascii.length()) {
+      ByteBuffer tmp = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+                                                    buffer.position() + ascii.length()));
+      buffer.flip();
+      tmp.put(buffer);
+      buffer = tmp;
+    }
+    for (int i = 0; i < ascii.length(); ++i) {
+      buffer.put((byte) ascii.charAt(i));
+    }
+  }
+
+  private void flush(FileChannel channel) throws IOException
+  {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Write the content of a {@code .trashinfo} file.
+   *
+   * @param channel channel of the empty info file
+   * @param infoPath unescaped value of {@code Path=}
+   * @param deletionDate deletion date
+   */
+  void writeTrashInfo(FileChannel channel,
+                      String infoPath,
+                      LocalDateTime deletionDate) throws IOException
+  {
+    buffer.clear();
+    put("[Trash Info]\nPath=");
+    put(TrashPaths.encode(infoPath));
+    put("\nDeletionDate=");
+    put(TRASH_TS_FORMAT.format(deletionDate));
+    put("\n");
+    flush(channel);
+  }
+
+  /**
+   * Format one {@code directorysizes} line.
+   *
+   * @param size size of the directory in bytes
+   * @param infoMTime modification time of the info file in milliseconds
+   * @param trashName name of the directory in {@code files}
+   * @return the line including line separator
+   */
+  static String directorySizeLine(long size,
+                                  long infoMTime,
+                                  String trashName)
+  {
+    return size + " " + infoMTime + " " + TrashPaths.encode(trashName) + "\n";
+  }
+
+  /**
+   * Append lines to an open {@code directorysizes} file.
+   */
+  void writeLines(FileChannel channel,
+                  Iterable<String> lines) throws IOException
+  {
+    buffer.clear();
+    for (String line : lines) {
+      put(line);
+    }
+    flush(channel);
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.java.Log;
+
+/**
+ * Lazy listing of the {@code info/} directories of several trashes. Only one directory is open at a time. The names
+ * come from one iterator, the {@code .trashinfo} files are parsed in the map stage, so a parallel stream parses them in
+ * parallel, each thread with its own small buffer.
+ */
+@Log
+final class TrashListing implements Iterator<TrashListing.InfoFile> {
+
+  private static final ThreadLocal<TrashInfoReader> READERS = ThreadLocal.withInitial(TrashInfoReader::new);
+
+  @RequiredArgsConstructor
+  static final class InfoFile {
+
+    private final TrashDirectory trash;
+    private final Map<String, TrashInfoReader.DirectorySize> directorySizes;
+    private final Path file;
+  }
+
+  private final Iterator<TrashDirectory> trashes;
+  private TrashDirectory currentTrash;
+  private Map<String, TrashInfoReader.DirectorySize> currentSizes;
+  private DirectoryStream<Path> currentStream;
+  private Iterator<Path> currentIterator;
+  private InfoFile next;
+
+  private TrashListing(List<TrashDirectory> trashes)
+  {
+    this.trashes = trashes.iterator();
+  }
+
+  /**
+   * Stream the entries of {@code trashes}. The stream must be closed to release the open directory.
+   */
+  static Stream<TrashEntry> stream(List<TrashDirectory> trashes)
+  {
+    TrashListing listing = new TrashListing(trashes);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listing,
+                                                                    Spliterator.NONNULL | Spliterator.DISTINCT),
+                                false)
+            .onClose(listing::closeCurrent)
+            .map(TrashListing::read)
+            .filter(Objects::nonNull);
+  }
+
+  private static TrashEntry read(InfoFile infoFile)
+  {
+    try {
+      return READERS.get().read(infoFile.trash,
+                                infoFile.file,
+                                infoFile.directorySizes);
+    } catch (IOException ex) {
+      // removed from the trash in between
+      log.log(Level.FINEST,
+              "Cannot read " + infoFile.file.toString(),
+              ex);
+      return null;
+    }
+  }
+
+  private void closeCurrent()
+  {
+    if (currentStream != null) {
+      try {
+        currentStream.close();
+      } catch (IOException ex) {
+      }
+      currentStream = null;
+      currentIterator = null;
+    }
+  }
+
+  private void openNext()
+  {
+    currentTrash = trashes.next();
+    try {
+      currentSizes = TrashInfoReader.readDirectorySizes(currentTrash);
+      currentStream = Files.newDirectoryStream(currentTrash.getInfoDir(),
+                                               "*" + TrashInfoReader.INFO_SUFFIX);
+      currentIterator = currentStream.iterator();
+    } catch (IOException ex) {
+      log.log(Level.FINE,
+              "Cannot list " + currentTrash.getInfoDir().toString(),
+              ex);
+    }
+  }
+
+  @Override
+  public boolean hasNext()
+  {
+    while (next == null) {
+      if (currentIterator != null && currentIterator.hasNext()) {
+        next = new InfoFile(currentTrash,
+                            currentSizes,
+                            currentIterator.next());
+      } else {
+        closeCurrent();
+        if (!trashes.hasNext()) {
+          return false;
+        }
+        openNext();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public InfoFile next()
+  {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    InfoFile result = next;
+    next = null;
+    return result;
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Allocates unique names in one trash directory. A name is taken by creating its info file with {@code CREATE_NEW},
+ * which is atomic across processes. On a collision the next {@code name_n} is taken from a counter per name instead
+ * of probing from {@code _1}. The counters are seeded from {@code info/} on the first collision, so trashing files
+ * with unique names never scans the directory.
+ */
+final class TrashNameAllocator {
+
+  private final TrashDirectory trash;
+  /**
+   * last used suffix per name.
+   */
+  private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+  private final ReentrantLock seedLock = new ReentrantLock();
+  private volatile boolean seeded;
+
+  TrashNameAllocator(TrashDirectory trash)
+  {
+    this.trash = trash;
+  }
+
+  /**
+   * Take a new name for {@code name}.
+   *
+   * @param name file name of the item to trash
+   * @return context holding the created and locked info file
+   * @throws IOException on Error
+   */
+  TrashContext allocate(String name) throws IOException
+  {
+    TrashEvents.AllocateName event = new TrashEvents.AllocateName();
+    event.begin();
+    int probes = 1;
+    TrashContext result = tryCreate(name);
+    if (result == null) {
+      AtomicLong counter = getCounter(name);
+      while (result == null) {
+        // another process may have taken the name, CREATE_NEW decides
+        result = tryCreate(name + "_" + counter.incrementAndGet());
+        ++probes;
+      }
+    }
+    TrashStatistics.INSTANCE.nameProbes.add(probes);
+    if (event.shouldCommit()) {
+      event.trashName = result.getNewDataFile().getFileName().toString();
+      event.probes = probes;
+      event.commit();
+    }
+    return result;
+  }
+
+  private TrashContext tryCreate(String trashName) throws IOException
+  {
+    Path infoFile = trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX);
+    final FileChannel channel;
+    try {
+      channel = FileChannel.open(infoFile,
+                                 StandardOpenOption.WRITE,
+                                 StandardOpenOption.CREATE_NEW);
+    } catch (FileAlreadyExistsException ex) {
+      return null;
+    }
+    try {
+      FileLock lock = channel.lock();
+      return new TrashContext(trash.getFilesDir().resolve(trashName),
+                              lock,
+                              infoFile);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      Files.deleteIfExists(infoFile);
+      throw ex;
+    }
+  }
+
+  private AtomicLong getCounter(String name) throws IOException
+  {
+    if (!seeded) {
+      seed();
+    }
+    return counters.computeIfAbsent(name,
+                                    k -> new AtomicLong());
+  }
+
+  private void seed() throws IOException
+  {
+    seedLock.lock();
+    try {
+      if (seeded) {
+        return;
+      }
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(trash.getInfoDir(),
+                                                                   "*_*" + TrashInfoReader.INFO_SUFFIX)) {
+        for (Path infoFile : stream) {
+          String trashName = TrashInfoReader.getTrashName(infoFile);
+          int pos = trashName.lastIndexOf('_');
+          long suffix = parseSuffix(trashName,
+                                    pos + 1);
+          if (pos > 0 && suffix > 0) {
+            counters.computeIfAbsent(trashName.substring(0,
+                                                         pos),
+                                     k -> new AtomicLong()).accumulateAndGet(suffix,
+                                                                             Math::max);
+          }
+        }
+      }
+      seeded = true;
+    } finally {
+      seedLock.unlock();
+    }
+  }
+
+  /**
+   * @return the decimal number starting at {@code offset}, {@code -1} if there is none or it has leading zeros
+   */
+  static long parseSuffix(String trashName,
+                          int offset)
+  {
+    int len = trashName.length() - offset;
+    if (len < 1 || len > 18 || trashName.charAt(offset) == '0') {
+      return -1;
+    }
+    long result = 0;
+    for (int i = offset; i < trashName.length(); ++i) {
+      char c = trashName.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escaping of paths in {@code .trashinfo} and {@code directorysizes} files. The trash specification demands RFC 2396
+ * escaping with {@code /} left as is; {@link java.net.URLEncoder} does form encoding instead, which escapes {@code /}
+ * and turns blanks into {@code +}.
+ */
+final class TrashPaths {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private TrashPaths()
+  {
+  }
+
+  private static boolean isUnreserved(int b)
+  {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '-' || b == '_'
+           || b == '.' || b == '~' || b == '/';
+  }
+
+  static String encode(String path)
+  {
+    byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+    StringBuilder builder = new StringBuilder(bytes.length + 16);
+    for (byte b : bytes) {
+      int c = b & 0xff;
+      if (isUnreserved(c)) {
+        builder.append((char) c);
+      } else {
+        builder.append('%');
+        builder.append(HEX[c >> 4]);
+        builder.append(HEX[c & 0xf]);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Decode {@code %XX} sequences. Unlike {@link java.net.URLDecoder} a {@code +} is kept, and malformed sequences are
+   * taken literally.
+   */
+  static String decode(String encoded)
+  {
+    if (encoded.indexOf('%') < 0) {
+      return encoded;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(encoded.length());
+    int i = 0;
+    while (i < encoded.length()) {
+      int c = encoded.codePointAt(i);
+      int hi = c == '%' && i + 2 < encoded.length() ? Character.digit(encoded.charAt(i + 1),
+                                                                       16) : -1;
+      int lo = hi >= 0 ? Character.digit(encoded.charAt(i + 2),
+                                         16) : -1;
+      if (lo >= 0) {
+        out.write(hi << 4 | lo);
+        i += 3;
+      } else {
+        out.writeBytes(new String(Character.toChars(c)).getBytes(StandardCharsets.UTF_8));
+        i += Character.charCount(c);
+      }
+    }
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.TrashProgressListener;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Progress and cancellation of one trash operation. The counters may be updated from several threads, the listener is
+ * called by one of them at a time. A thread that finds the listener busy does not wait, the busy thread reports its
+ * update afterwards, so the counters are reported in increasing order and the last value is never lost.
+ */
+final class TrashProgress {
+
+  private final TrashProgressListener listener;
+  private final BooleanSupplier cancelled;
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong files = new AtomicLong();
+  private final ReentrantLock reportLock = new ReentrantLock();
+  /**
+   * set by every update, cleared when the listener is called.
+   */
+  private final AtomicBoolean reportPending = new AtomicBoolean();
+
+  TrashProgress(TrashProgressListener listener,
+                BooleanSupplier cancelled)
+  {
+    this.listener = listener;
+    this.cancelled = cancelled;
+  }
+
+  /**
+   * Progress that is never cancelled and reported nowhere.
+   */
+  static TrashProgress none()
+  {
+    return new TrashProgress(null,
+                             () -> false);
+  }
+
+  /**
+   * Throw if the operation was cancelled. Only called before the commit point of an operation, everything done so far
+   * is rolled back by the caller.
+   *
+   * @throws CancellationException if cancelled
+   */
+  void checkCancelled()
+  {
+    if (cancelled.getAsBoolean()) {
+      throw new CancellationException();
+    }
+  }
+
+  void bytesDone(long count)
+  {
+    bytes.addAndGet(count);
+    report();
+  }
+
+  void fileDone()
+  {
+    files.incrementAndGet();
+    report();
+  }
+
+  private void report()
+  {
+    if (listener == null) {
+      return;
+    }
+    reportPending.set(true);
+    // a failed tryLock is covered by the holder, which checks reportPending after unlocking
+    while (reportPending.get() && reportLock.tryLock()) {
+      try {
+        reportPending.set(false);
+        listener.progress(bytes.get(),
+                          files.get());
+      } finally {
+        reportLock.unlock();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Running total of the sizes of all trashed items. The sizes are loaded once, then every trash, restore and purge of the
+ * service adjusts the total, so queries take constant time. Sizes are kept per item, so removing an item subtracts
+ * exactly what was added. Changes by other programs cannot be accounted, they {@link #invalidate() invalidate} the total
+ * and the next query loads it again.
+ */
+final class TrashSizeAccounting {
+
+  private final ConcurrentHashMap<Path, Long> sizes = new ConcurrentHashMap<>();
+  private final AtomicLong total = new AtomicLong();
+  private final ReentrantLock loadLock = new ReentrantLock();
+  private volatile boolean loaded;
+
+  /**
+   * Set the size of a trashed item.
+   */
+  void set(Path trashedFile,
+           long size)
+  {
+    Long old = sizes.put(trashedFile,
+                         size);
+    total.addAndGet(old != null ? size - old : size);
+  }
+
+  /**
+   * Update the size of an item still in the trash, used when the size of a directory has been computed.
+   */
+  void update(Path trashedFile,
+              long size)
+  {
+    Long old = sizes.replace(trashedFile,
+                             size);
+    if (old != null) {
+      total.addAndGet(size - old);
+    }
+  }
+
+  /**
+   * An item left the trash.
+   */
+  void remove(Path trashedFile)
+  {
+    Long old = sizes.remove(trashedFile);
+    if (old != null) {
+      total.addAndGet(-old);
+    }
+  }
+
+  /**
+   * Drop the sizes, the next {@link #getTotal(java.util.function.Supplier)} loads them again.
+   */
+  void invalidate()
+  {
+    loadLock.lock();
+    try {
+      loaded = false;
+      sizes.clear();
+      total.set(0);
+    } finally {
+      loadLock.unlock();
+    }
+  }
+
+  /**
+   * Get the total, loading the sizes on first use.
+   *
+   * @param loader all entries with known sizes, consumed in parallel
+   * @return the total size in bytes
+   */
+  long getTotal(Supplier<Stream<TrashEntry>> loader)
+  {
+    if (!loaded) {
+      load(loader);
+    }
+    return total.get();
+  }
+
+  private void load(Supplier<Stream<TrashEntry>> loader)
+  {
+    loadLock.lock();
+    try {
+      if (loaded) {
+        return;
+      }
+      try (Stream<TrashEntry> stream = loader.get()) {
+        stream.parallel().forEach(e -> {
+          // items updated in between are already accounted
+          long size = Math.max(0,
+                               e.getSize());
+          if (sizes.putIfAbsent(e.getTrashedFile(),
+                                size) == null) {
+            total.addAndGet(size);
+          }
+        });
+      }
+      loaded = true;
+    } finally {
+      loadLock.unlock();
+    }
+  }
+
+}
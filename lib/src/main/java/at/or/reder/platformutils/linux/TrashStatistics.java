@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import lombok.extern.java.Log;
+
+/**
+ * Aggregated counters shared by all trash services, exposed via JMX. {@link LongAdder} keeps concurrent updates cheap.
+ */
+@Log
+final class TrashStatistics implements TrashStatisticsMXBean {
+
+  static final TrashStatistics INSTANCE = new TrashStatistics();
+
+  final LongAdder trashed = new LongAdder();
+  final LongAdder failed = new LongAdder();
+  final LongAdder renamed = new LongAdder();
+  final LongAdder copied = new LongAdder();
+  final LongAdder bytesCopied = new LongAdder();
+  final LongAdder nameProbes = new LongAdder();
+  final LongAdder directorySizeWalks = new LongAdder();
+  final LongAdder directorySizesLockWaitNanos = new LongAdder();
+  final LongAdder restored = new LongAdder();
+  final LongAdder purged = new LongAdder();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                                                               new ObjectName("at.or.reder.platformutils:type=Trash"));
+    } catch (JMException | SecurityException ex) {
+      log.log(Level.FINE,
+              "Cannot register trash statistics",
+              ex);
+    }
+  }
+
+  private TrashStatistics()
+  {
+  }
+
+  @Override
+  public long getTrashed()
+  {
+    return trashed.sum();
+  }
+
+  @Override
+  public long getFailed()
+  {
+    return failed.sum();
+  }
+
+  @Override
+  public long getRenamed()
+  {
+    return renamed.sum();
+  }
+
+  @Override
+  public long getCopied()
+  {
+    return copied.sum();
+  }
+
+  @Override
+  public long getBytesCopied()
+  {
+    return bytesCopied.sum();
+  }
+
+  @Override
+  public long getNameProbes()
+  {
+    return nameProbes.sum();
+  }
+
+  @Override
+  public long getDirectorySizeWalks()
+  {
+    return directorySizeWalks.sum();
+  }
+
+  @Override
+  public long getDirectorySizesLockWaitNanos()
+  {
+    return directorySizesLockWaitNanos.sum();
+  }
+
+  @Override
+  public long getRestored()
+  {
+    return restored.sum();
+  }
+
+  @Override
+  public long getPurged()
+  {
+    return purged.sum();
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.util.ShellWord;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+/**
+ * Parses {@code user-dirs.dirs} and {@code user-dirs.defaults} in a single pass each into an immutable map keyed by the
+ * XDG name (e.g. {@code XDG_DOWNLOAD_DIR}). Values are shell-quoted strings where {@code $HOME} and {@code ${HOME}}
+ * are expanded; relative paths are resolved against the home directory.
+ */
+@Log
+final class UserDirs {
+
+  static final Path DEFAULTS = Paths.get("/etc/xdg/user-dirs.defaults");
+  static final String USER_DIRS = "user-dirs.dirs";
+
+  private UserDirs()
+  {
+  }
+
+  /**
+   * Loads the user folders, entries of {@code userDirs} taking precedence over {@code defaults}.
+   *
+   * @param home the user home
+   * @param userDirs path of {@code user-dirs.dirs}
+   * @param defaults path of {@code user-dirs.defaults}
+   * @return an immutable map from XDG key to absolute path
+   */
+  static Map<String, Path> load(Path home,
+                                Path userDirs,
+                                Path defaults)
+  {
+    Map<String, Path> result = new HashMap<>();
+    parse(defaults,
+          home,
+          true,
+          result);
+    parse(userDirs,
+          home,
+          false,
+          result);
+    return Collections.unmodifiableMap(result);
+  }
+
+  private static void parse(Path file,
+                            Path home,
+                            boolean defaultsFormat,
+                            Map<String, Path> result)
+  {
+    try (BufferedReader reader = Files.newBufferedReader(file,
+                                                         StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.strip();
+        if (line.isEmpty() || line.charAt(0) == '#') {
+          continue;
+        }
+        int equalPos = line.indexOf('=');
+        if (equalPos <= 0) {
+          continue;
+        }
+        String key = line.substring(0,
+                                    equalPos).strip();
+        if (defaultsFormat) {
+          key = "XDG_" + key + "_DIR";
+        }
+        String value = ShellWord.parse(line,
+                                       equalPos + 1,
+                                       name -> "HOME".equals(name) ? home.toString() : null);
+        if (!value.isEmpty()) {
+          result.put(key,
+                     home.resolve(value));
+        }
+      }
+    } catch (NoSuchFileException ex) {
+      // optional file
+    } catch (IOException ex) {
+      log.log(Level.FINE,
+              "Cannot read " + file,
+              ex);
+    }
+  }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import lombok.extern.java.Log;
+
+/**
+ * Holds the current {@link UserDirs} map and replaces it when {@code user-dirs.dirs} or {@code user-dirs.defaults}
+ * change. Readers only perform a volatile read, only reloads take a lock. Between {@link #startWatching()} and
+ * {@link #stopWatching()} a virtual thread waits for file system events, reparses and swaps in the new map; otherwise
+ * the map is loaded once and only replaced by {@link #reload()}.
+ */
+@Log
+final class UserDirsSnapshot {
+
+  private final Path home;
+  private final Path userDirsFile;
+  private final Path defaultsFile;
+  private final Runnable onChange;
+  private final AtomicReference<Map<String, Path>> current = new AtomicReference<>();
+  private final ReentrantLock watchLock = new ReentrantLock();
+  /**
+   * serializes {@link #reload()}, so a parse of older content never replaces a newer one.
+   */
+  private final ReentrantLock reloadLock = new ReentrantLock();
+  /**
+   * the running watcher, {@code null} if not watching. Guarded by {@link #watchLock}.
+   */
+  private WatchService watchService;
+
+  UserDirsSnapshot(Path home,
+                   Path userDirsFile,
+                   Path defaultsFile,
+                   Runnable onChange)
+  {
+    this.home = home;
+    this.userDirsFile = userDirsFile;
+    this.defaultsFile = defaultsFile;
+    this.onChange = onChange;
+  }
+
+  Map<String, Path> get()
+  {
+    Map<String, Path> result = current.get();
+    if (result == null) {
+      result = UserDirs.load(home,
+                             userDirsFile,
+                             defaultsFile);
+      if (!current.compareAndSet(null,
+                                 result)) {
+        result = current.get();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Parses the files again and publishes the result. Concurrent reloads run one after the other, the last one to
+   * finish has read the files last.
+   *
+   * @return {@code true} if the folders differ from the previous snapshot
+   */
+  boolean reload()
+  {
+    reloadLock.lock();
+    try {
+      Map<String, Path> loaded = UserDirs.load(home,
+                                               userDirsFile,
+                                               defaultsFile);
+      Map<String, Path> old = current.getAndSet(loaded);
+      return old != null && !old.equals(loaded);
+    } finally {
+      reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Start watching the files, if not watching yet. Changes found are published and reported to the change callback.
+   */
+  void startWatching()
+  {
+    watchLock.lock();
+    try {
+      if (watchService != null) {
+        return;
+      }
+      WatchService service;
+      try {
+        service = FileSystems.getDefault().newWatchService();
+      } catch (IOException | UnsupportedOperationException ex) {
+        log.log(Level.FINE,
+                "Cannot watch user dirs",
+                ex);
+        return;
+      }
+      Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+      // the files are usually replaced by a rename, so the parent directories are watched
+      register(service,
+               userDirsFile.getParent(),
+               watchedDirs);
+      register(service,
+               defaultsFile.getParent(),
+               watchedDirs);
+      if (watchedDirs.isEmpty()) {
+        closeQuietly(service);
+        return;
+      }
+      watchService = service;
+      Thread.ofVirtual().name("user-dirs-watcher").start(() -> watch(service,
+                                                                     watchedDirs));
+    } finally {
+      watchLock.unlock();
+    }
+    // changes made while nobody was watching
+    if (reload()) {
+      fireChanged();
+    }
+  }
+
+  /**
+   * Stop watching the files, the watcher thread ends.
+   */
+  void stopWatching()
+  {
+    watchLock.lock();
+    try {
+      if (watchService != null) {
+        closeQuietly(watchService);
+        watchService = null;
+      }
+    } finally {
+      watchLock.unlock();
+    }
+  }
+
+  private void register(WatchService service,
+                        Path dir,
+                        Map<WatchKey, Path> watchedDirs)
+  {
+    if (dir == null || !Files.isDirectory(dir) || watchedDirs.containsValue(dir)) {
+      return;
+    }
+    try {
+      watchedDirs.put(dir.register(service,
+                                   StandardWatchEventKinds.ENTRY_CREATE,
+                                   StandardWatchEventKinds.ENTRY_MODIFY,
+                                   StandardWatchEventKinds.ENTRY_DELETE),
+                      dir);
+    } catch (IOException ex) {
+      log.log(Level.FINE,
+              "Cannot watch " + dir,
+              ex);
+    }
+  }
+
+  private void watch(WatchService service,
+                     Map<WatchKey, Path> watchedDirs)
+  {
+    try {
+      while (!watchedDirs.isEmpty()) {
+        WatchKey key = service.take();
+        Path dir = watchedDirs.get(key);
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            relevant = true;
+          } else if (dir != null) {
+            Path changed = dir.resolve((Path) event.context());
+            relevant |= changed.equals(userDirsFile) || changed.equals(defaultsFile);
+          }
+        }
+        if (!key.reset()) {
+          watchedDirs.remove(key);
+        }
+        if (relevant && reload()) {
+          fireChanged();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException ex) {
+      // stopped
+    } finally {
+      closeQuietly(service);
+      watchLock.lock();
+      try {
+        if (watchService == service) {
+          // all watched directories are gone
+          watchService = null;
+        }
+      } finally {
+        watchLock.unlock();
+      }
+    }
+  }
+
+  private void fireChanged()
+  {
+    try {
+      onChange.run();
+    } catch (RuntimeException ex) {
+      log.log(Level.WARNING,
+              "User dirs listener failed",
+              ex);
+    }
+  }
+
+  private static void closeQuietly(WatchService watchService)
+  {
+    try {
+      watchService.close();
+    } catch (IOException ex) {
+      // ignore
+    }
+  }
+
+}
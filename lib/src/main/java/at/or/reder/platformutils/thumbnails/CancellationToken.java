@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cooperative cancellation of a thumbnail generation. A token is cancelled either explicitly by {@link #cancel()}, by
+ * reaching its deadline, or by interrupting the thread working on it. Generators poll {@link #isCancelled()} or
+ * register a listener, which is called from the thread calling {@link #cancel()}. Once a listener is registered on a
+ * token with deadline, a timer cancels the token when the deadline passes, so work that never polls is aborted too.
+ * The timer is released as soon as the last listener is removed, the token is cancelled or {@link #close() closed};
+ * a token kept only for polling holds no timer. Interrupts are only seen by polling.
+ */
+public final class CancellationToken implements AutoCloseable {
+
+  private static final class TimerHolder {
+
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static ScheduledThreadPoolExecutor createTimer()
+    {
+      ScheduledThreadPoolExecutor result = new ScheduledThreadPoolExecutor(1,
+                                                                           Thread.ofPlatform().
+                                                                           name("thumbnail-deadline").
+                                                                           daemon().
+                                                                           factory());
+      result.setRemoveOnCancelPolicy(true);
+      return result;
+    }
+
+  }
+
+  private static final class Registration {
+
+    private final Runnable listener;
+    private final AtomicBoolean fired = new AtomicBoolean();
+
+    private Registration(Runnable listener)
+    {
+      this.listener = listener;
+    }
+
+    private void fire()
+    {
+      if (fired.compareAndSet(false,
+                              true)) {
+        listener.run();
+      }
+    }
+
+  }
+
+  private final long deadline;
+  private final List<Registration> listeners = new CopyOnWriteArrayList<>();
+  private final AtomicBoolean cancelled = new AtomicBoolean();
+  private final Object timerLock = new Object();
+  /**
+   * the pending deadline task, guarded by {@code timerLock}. Its queue entry keeps the token and the listeners
+   * reachable, so it must not outlive the work.
+   */
+  private ScheduledFuture<?> timer;
+
+  private CancellationToken(long deadline)
+  {
+    this.deadline = deadline;
+  }
+
+  /**
+   * Create a token without deadline.
+   *
+   * @return new token
+   */
+  public static CancellationToken create()
+  {
+    return new CancellationToken(0);
+  }
+
+  /**
+   * Create a token which is cancelled automatically after {@code timeout}.
+   *
+   * @param timeout the timeout, measured from now
+   * @return new token
+   */
+  public static CancellationToken withTimeout(Duration timeout)
+  {
+    long tmp = System.nanoTime() + timeout.toNanos();
+    // 0 is reserved for "no deadline"
+    return new CancellationToken(tmp == 0 ? 1 : tmp);
+  }
+
+  /**
+   * Cancel the token and notify all registered listeners.
+   */
+  public void cancel()
+  {
+    if (cancelled.compareAndSet(false,
+                                true)) {
+      for (Registration r : listeners) {
+        r.fire();
+      }
+      releaseTimer(true);
+    }
+  }
+
+  /**
+   * Release the deadline timer and drop the listeners, the work using the token is finished. The token is not
+   * cancelled and can still be polled.
+   */
+  @Override
+  public void close()
+  {
+    listeners.clear();
+    releaseTimer(true);
+  }
+
+  public boolean isDeadlineExceeded()
+  {
+    return deadline != 0 && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Test if the work should stop.
+   *
+   * @return {@code true} if the token was cancelled, the deadline is exceeded or the current thread is interrupted.
+   */
+  public boolean isCancelled()
+  {
+    return cancelled.get() || isDeadlineExceeded() || Thread.currentThread().isInterrupted();
+  }
+
+  /**
+   * Throws if the work should stop.
+   *
+   * @throws InterruptedIOException if {@link #isCancelled()} returns {@code true}
+   */
+  public void throwIfCancelled() throws InterruptedIOException
+  {
+    // the deadline timer cancels the token as well, report the cause
+    if (isDeadlineExceeded()) {
+      throw new InterruptedIOException("thumbnail generation deadline exceeded");
+    }
+    if (cancelled.get()) {
+      throw new InterruptedIOException("thumbnail generation cancelled");
+    }
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException("thumbnail generation interrupted");
+    }
+  }
+
+  /**
+   * Register a listener called on {@link #cancel()} or when the deadline passes. If the token is already cancelled,
+   * the listener is called immediately. Each registration is called at most once.
+   *
+   * @param listener the listener
+   */
+  public void addCancelListener(Runnable listener)
+  {
+    Registration registration = new Registration(listener);
+    listeners.add(registration);
+    if (cancelled.get()) {
+      registration.fire();
+    } else {
+      scheduleDeadline();
+    }
+  }
+
+  public void removeCancelListener(Runnable listener)
+  {
+    for (Registration r : listeners) {
+      if (r.listener == listener) {
+        listeners.remove(r);
+        releaseTimer(false);
+        return;
+      }
+    }
+  }
+
+  private void scheduleDeadline()
+  {
+    if (deadline == 0) {
+      return;
+    }
+    synchronized (timerLock) {
+      if (timer == null && !cancelled.get()) {
+        timer = TimerHolder.TIMER.schedule(this::cancel,
+                                           Math.max(0,
+                                                    deadline - System.nanoTime()),
+                                           TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * Cancel the pending deadline task, which removes it from the timer queue.
+   *
+   * @param always {@code false} to keep the timer while listeners are registered
+   */
+  private void releaseTimer(boolean always)
+  {
+    synchronized (timerLock) {
+      if (timer != null && (always || listeners.isEmpty())) {
+        timer.cancel(false);
+        timer = null;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import at.or.reder.platformutils.ThumbnailService;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cold publisher of the thumbnails of one directory. Each subscription gets its own {@link SubmissionPublisher}; its
+ * bounded buffer blocks the workers if the subscriber is slow, the workers then hold their permits and the directory
+ * listing stops. So at most {@code parallelism} images are decoded at the same time and at most {@code bufferSize}
+ * results are queued, no matter how slow the subscriber is.
+ * <p>
+ * Works with any {@link ThumbnailService}: cached thumbnails are looked up with
+ * {@link ThumbnailService#getCachedThumbnail(Path, ThumbnailSize)}, missing ones are generated with the cancellable
+ * {@link ThumbnailService#getThumbnail(Path, ThumbnailSize, ThumbnailGenerator, CancellationToken)}.
+ */
+@RequiredArgsConstructor
+public final class DirectoryThumbnailPublisher implements Flow.Publisher<ThumbnailResult> {
+
+  private static final Executor EXECUTOR = r -> Thread.ofVirtual().name("thumbnail-publisher").start(r);
+
+  private final ThumbnailService service;
+  private final Path directory;
+  private final DirectoryStream.Filter<? super Path> filter;
+  private final ThumbnailSize thumbSize;
+  private final ThumbnailGenerator generator;
+  private final int parallelism;
+  private final int bufferSize;
+  /**
+   * tokens of the running publications of the service, so it can cancel them on shutdown.
+   */
+  private final Set<CancellationToken> running;
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ThumbnailResult> subscriber)
+  {
+    SubmissionPublisher<ThumbnailResult> publisher = new SubmissionPublisher<>(EXECUTOR,
+                                                                               bufferSize);
+    CancellationToken token = CancellationToken.create();
+    running.add(token);
+    publisher.subscribe(new CancellingSubscriber(subscriber,
+                                                 token));
+    EXECUTOR.execute(() -> publish(publisher,
+                                   token));
+  }
+
+  /**
+   * Runs in its own thread and is the only one closing {@code publisher}. A failing worker stores the failure and
+   * cancels the token, the listing loop then stops and waits for the remaining workers.
+   */
+  private void publish(SubmissionPublisher<ThumbnailResult> publisher,
+                       CancellationToken token)
+  {
+    final Semaphore permits = new Semaphore(parallelism);
+    final Phaser pending = new Phaser(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                                                                 filter)) {
+      for (Path file : stream) {
+        if (token.isCancelled() || failure.get() != null) {
+          // subscription cancelled or a worker failed
+          break;
+        }
+        Optional<Path> cached;
+        try {
+          cached = service.getCachedThumbnail(file,
+                                              thumbSize);
+        } catch (IOException ex) {
+          publisher.submit(new ThumbnailResult(file,
+                                               null,
+                                               false,
+                                               ex));
+          continue;
+        }
+        if (cached.isPresent()) {
+          publisher.submit(new ThumbnailResult(file,
+                                               cached.get(),
+                                               true,
+                                               null));
+          continue;
+        }
+        permits.acquire();
+        pending.register();
+        EXECUTOR.execute(() -> {
+          try {
+            generate(publisher,
+                     file,
+                     token);
+          } catch (RuntimeException | Error ex) {
+            failure.compareAndSet(null,
+                                  ex);
+            token.cancel();
+          } finally {
+            permits.release();
+            pending.arriveAndDeregister();
+          }
+        });
+      }
+    } catch (DirectoryIteratorException ex) {
+      failure.compareAndSet(null,
+                            ex.getCause());
+    } catch (IOException | RuntimeException | Error ex) {
+      failure.compareAndSet(null,
+                            ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      failure.compareAndSet(null,
+                            ex);
+    }
+    if (failure.get() != null) {
+      token.cancel();
+    }
+    // workers observe the cancelled token and finish quickly
+    pending.arriveAndAwaitAdvance();
+    running.remove(token);
+    Throwable th = failure.get();
+    if (th != null) {
+      publisher.closeExceptionally(th);
+    } else {
+      publisher.close();
+    }
+  }
+
+  private void generate(SubmissionPublisher<ThumbnailResult> publisher,
+                        Path file,
+                        CancellationToken token)
+  {
+    if (token.isCancelled()) {
+      return;
+    }
+    ThumbnailResult result;
+    try {
+      result = new ThumbnailResult(file,
+                                   service.getThumbnail(file,
+                                                        thumbSize,
+                                                        generator,
+                                                        token),
+                                   false,
+                                   null);
+    } catch (InterruptedIOException ex) {
+      // cancelled, nobody is interested in the result
+      return;
+    } catch (IOException ex) {
+      result = new ThumbnailResult(file,
+                                   null,
+                                   false,
+                                   ex);
+    }
+    publisher.submit(result);
+  }
+
+  /**
+   * Cancels the token as soon as the subscriber cancels its subscription, which aborts the generations in flight.
+   */
+  @RequiredArgsConstructor
+  private static final class CancellingSubscriber implements Flow.Subscriber<ThumbnailResult> {
+
+    private final Flow.Subscriber<? super ThumbnailResult> delegate;
+    private final CancellationToken token;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+      delegate.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n)
+        {
+          subscription.request(n);
+        }
+
+        @Override
+        public void cancel()
+        {
+          token.cancel();
+          subscription.cancel();
+        }
+
+      });
+    }
+
+    @Override
+    public void onNext(ThumbnailResult item)
+    {
+      delegate.onNext(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+      token.cancel();
+      delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete()
+    {
+      delegate.onComplete();
+    }
+
+  }
+
+}
@@ -25,6 +25,7 @@ import java.nio.file.Path;
 import java.util.Iterator;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
 import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.ImageInputStream;
 
@@ -70,7 +71,21 @@ public final class ImageThumbnailGenerator implements ThumbnailGenerator
                                       BufferedImage thumbImg,
                                       ThumbnailMetaData meta) throws IOException
   {
-    BufferedImage realImage = ImageIO.read(file.toFile());
+    return paintThumbnail(file,
+                          thumbImg,
+                          meta,
+                          CancellationToken.create());
+  }
+
+  @Override
+  public BufferedImage paintThumbnail(Path file,
+                                      BufferedImage thumbImg,
+                                      ThumbnailMetaData meta,
+                                      CancellationToken token) throws IOException
+  {
+    token.throwIfCancelled();
+    BufferedImage realImage = readImage(file,
+                                        token);
     meta.setWidth(realImage.getWidth());
     meta.setHeight(realImage.getHeight());
     Graphics2D g = thumbImg.createGraphics();
@@ -89,4 +104,111 @@ public final class ImageThumbnailGenerator implements ThumbnailGenerator
     }
   }
 
+  /**
+   * Like {@link ImageIO#read(java.io.File)}, but the reader is aborted as soon as the token is cancelled. Explicit
+   * cancellation and the deadline abort via listener, interrupts are detected by the read progress callbacks.
+   */
+  private BufferedImage readImage(Path file,
+                                  CancellationToken token) throws IOException
+  {
+    try (ImageInputStream iis = new FileImageInputStream(file.toFile())) {
+      Iterator<ImageReader> iter = ImageIO.getImageReaders(iis);
+      if (!iter.hasNext()) {
+        throw new IOException("No ImageReader for " + file.toString());
+      }
+      ImageReader reader = iter.next();
+      Runnable abort = reader::abort;
+      token.addCancelListener(abort);
+      try {
+        reader.setInput(iis,
+                        true,
+                        true);
+        reader.addIIOReadProgressListener(new CancellationProgressListener(token));
+        BufferedImage result = reader.read(0);
+        token.throwIfCancelled();
+        if (result == null) {
+          throw new IOException("Cannot read " + file.toString());
+        }
+        return result;
+      } finally {
+        token.removeCancelListener(abort);
+        reader.dispose();
+      }
+    }
+  }
+
+  private static final class CancellationProgressListener implements IIOReadProgressListener {
+
+    private final CancellationToken token;
+
+    private CancellationProgressListener(CancellationToken token)
+    {
+      this.token = token;
+    }
+
+    private void check(ImageReader source)
+    {
+      if (token.isCancelled()) {
+        source.abort();
+      }
+    }
+
+    @Override
+    public void sequenceStarted(ImageReader source,
+                                int minIndex)
+    {
+      check(source);
+    }
+
+    @Override
+    public void sequenceComplete(ImageReader source)
+    {
+    }
+
+    @Override
+    public void imageStarted(ImageReader source,
+                             int imageIndex)
+    {
+      check(source);
+    }
+
+    @Override
+    public void imageProgress(ImageReader source,
+                              float percentageDone)
+    {
+      check(source);
+    }
+
+    @Override
+    public void imageComplete(ImageReader source)
+    {
+    }
+
+    @Override
+    public void thumbnailStarted(ImageReader source,
+                                 int imageIndex,
+                                 int thumbnailIndex)
+    {
+      check(source);
+    }
+
+    @Override
+    public void thumbnailProgress(ImageReader source,
+                                  float percentageDone)
+    {
+      check(source);
+    }
+
+    @Override
+    public void thumbnailComplete(ImageReader source)
+    {
+    }
+
+    @Override
+    public void readAborted(ImageReader source)
+    {
+    }
+
+  }
+
 }
@@ -15,7 +15,12 @@
  */
 package at.or.reder.platformutils.thumbnails;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +34,13 @@ import org.w3c.dom.NodeList;
 
 public final class KDEThumbnailMetaData implements ThumbnailMetaData {
 
+  private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+  private static final int CHUNK_TEXT = 0x74455874;
+  private static final int CHUNK_ITXT = 0x69545874;
+  private static final int CHUNK_IDAT = 0x49444154;
+  private static final int CHUNK_IEND = 0x49454e44;
+  private static final int MAX_TEXT_CHUNK = 64 * 1024;
+
   private URI uri;
   private long mTime;
   private long size;
@@ -150,6 +162,164 @@ public final class KDEThumbnailMetaData implements ThumbnailMetaData {
     return result;
   }
 
+  /**
+   * Read the thumbnail attributes directly from the text chunks of a PNG file, without ImageIO and without decoding the
+   * image. Reading stops at the first IDAT chunk; with the usual chunk layout the whole header is read by a single
+   * {@code read} call.
+   *
+   * @param channel channel of the PNG file
+   * @return the metadata or {@code null} if the file is not a PNG file
+   * @throws IOException on Error
+   */
+  public static KDEThumbnailMetaData fromPng(FileChannel channel) throws IOException
+  {
+    PngHeaderReader reader = new PngHeaderReader(channel);
+    ByteBuffer buffer = reader.get(0,
+                                   PNG_SIGNATURE.length);
+    if (buffer == null) {
+      return null;
+    }
+    for (byte b : PNG_SIGNATURE) {
+      if (buffer.get() != b) {
+        return null;
+      }
+    }
+    Map<String, String> map = new HashMap<>();
+    long pos = PNG_SIGNATURE.length;
+    while ((buffer = reader.get(pos,
+                                8)) != null) {
+      int length = buffer.getInt();
+      int type = buffer.getInt();
+      if (length < 0 || type == CHUNK_IDAT || type == CHUNK_IEND) {
+        break;
+      }
+      if ((type == CHUNK_TEXT || type == CHUNK_ITXT) && length <= MAX_TEXT_CHUNK) {
+        buffer = reader.get(pos + 8,
+                            length);
+        if (buffer == null) {
+          break;
+        }
+        parseTextChunk(type,
+                       buffer,
+                       map);
+      }
+      pos += 12L + length;
+    }
+    return fromMap(map);
+  }
+
+  private static int indexOfZero(ByteBuffer buffer,
+                                 int from)
+  {
+    for (int i = from; i < buffer.limit(); ++i) {
+      if (buffer.get(i) == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String getString(ByteBuffer buffer,
+                                  int from,
+                                  int to,
+                                  Charset charset)
+  {
+    byte[] tmp = new byte[to - from];
+    buffer.get(from,
+               tmp);
+    return new String(tmp,
+                      charset);
+  }
+
+  private static void parseTextChunk(int type,
+                                     ByteBuffer buffer,
+                                     Map<String, String> map)
+  {
+    int start = buffer.position();
+    int keywordEnd = indexOfZero(buffer,
+                                 start);
+    if (keywordEnd < 0) {
+      return;
+    }
+    String keyword = getString(buffer,
+                               start,
+                               keywordEnd,
+                               StandardCharsets.ISO_8859_1);
+    if (!META_NAMES.contains(keyword)) {
+      return;
+    }
+    if (type == CHUNK_TEXT) {
+      map.put(keyword,
+              getString(buffer,
+                        keywordEnd + 1,
+                        buffer.limit(),
+                        StandardCharsets.ISO_8859_1));
+    } else {
+      // iTXt: compression flag, compression method, language tag, translated keyword, text
+      int flagPos = keywordEnd + 1;
+      if (flagPos + 2 > buffer.limit() || buffer.get(flagPos) != 0) {
+        return;
+      }
+      int langEnd = indexOfZero(buffer,
+                                flagPos + 2);
+      int translatedEnd = langEnd < 0 ? -1 : indexOfZero(buffer,
+                                                         langEnd + 1);
+      if (translatedEnd < 0) {
+        return;
+      }
+      map.put(keyword,
+              getString(buffer,
+                        translatedEnd + 1,
+                        buffer.limit(),
+                        StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Reads the PNG file in blocks, so that consecutive small chunks are served from the same buffer.
+   */
+  private static final class PngHeaderReader {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    private final FileChannel channel;
+    private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    private long blockPos;
+
+    private PngHeaderReader(FileChannel channel)
+    {
+      this.channel = channel;
+      block.limit(0);
+    }
+
+    /**
+     * Get a buffer containing {@code length} bytes from {@code pos} between its position and limit.
+     *
+     * @return the buffer or {@code null} at end of file
+     */
+    private ByteBuffer get(long pos,
+                           int length) throws IOException
+    {
+      if (pos < blockPos || pos + length > blockPos + block.limit()) {
+        if (block.capacity() < length) {
+          block = ByteBuffer.allocate(length);
+        }
+        block.clear();
+        blockPos = pos;
+        while (block.position() < length) {
+          int read = channel.read(block,
+                                  pos + block.position());
+          if (read < 0) {
+            return null;
+          }
+        }
+        block.flip();
+      }
+      return block.duplicate().position((int) (pos - blockPos)).limit((int) (pos - blockPos) + length);
+    }
+
+  }
+
   public static KDEThumbnailMetaData fromMeta(IIOMetadata meta)
   {
     String nativeName = meta.getNativeMetadataFormatName();
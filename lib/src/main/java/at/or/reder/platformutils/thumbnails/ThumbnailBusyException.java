@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a thumbnail is currently generated by another thread or process and the service is configured not to wait
+ * for it.
+ */
+public class ThumbnailBusyException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ThumbnailBusyException(String message)
+  {
+    super(message);
+  }
+
+}
@@ -58,4 +58,27 @@ public interface ThumbnailGenerator
                                       BufferedImage image,
                                       ThumbnailMetaData meta) throws IOException;
 
+  /**
+   * Paint the Thumbnail and stop as soon as {@code token} is cancelled. The default implementation checks the token
+   * only before painting; generators doing expensive decoding should override this method.
+   *
+   * @param file the file
+   * @param image image to paint to
+   * @param meta metadata to fill the width and height of the original image.
+   * @param token cancellation token
+   * @return image
+   * @throws java.io.InterruptedIOException if generation was cancelled
+   * @throws IOException on Error
+   */
+  public default BufferedImage paintThumbnail(Path file,
+                                              BufferedImage image,
+                                              ThumbnailMetaData meta,
+                                              CancellationToken token) throws IOException
+  {
+    token.throwIfCancelled();
+    return paintThumbnail(file,
+                          image,
+                          meta);
+  }
+
 }
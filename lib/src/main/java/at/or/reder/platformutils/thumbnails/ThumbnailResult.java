@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One element emitted when thumbnails for a whole directory are requested.
+ */
+@Getter
+@RequiredArgsConstructor
+public final class ThumbnailResult {
+
+  /**
+   * The original file.
+   */
+  private final Path file;
+  /**
+   * The thumbnail, {@code null} if generation failed.
+   */
+  private final Path thumbnail;
+  /**
+   * {@code true} if the thumbnail was taken from the cache without generating.
+   */
+  private final boolean cached;
+  /**
+   * The reason why generation failed, {@code null} on success.
+   */
+  private final IOException error;
+
+  public boolean isSuccess()
+  {
+    return thumbnail != null;
+  }
+
+}
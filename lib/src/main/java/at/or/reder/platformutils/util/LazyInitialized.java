@@ -15,29 +15,132 @@
  */
 package at.or.reder.platformutils.util;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
-import lombok.RequiredArgsConstructor;
 
-@RequiredArgsConstructor
+/**
+ * A lazily computed value. The initializer runs at most once per generation even under contention: the first caller
+ * publishes a pending future with a CAS and runs the initializer, concurrent callers wait for that future. No monitors
+ * are used, so waiting virtual threads are not pinned. The value can be dropped with {@link #reset()} or expire after
+ * a time to live.
+ *
+ * @param <T> type of the value
+ */
 public class LazyInitialized<T> implements Supplier<T> {
 
+  private static final VarHandle STATE;
+
+  static {
+    try {
+      STATE = MethodHandles.lookup().findVarHandle(LazyInitialized.class,
+                                                   "state",
+                                                   Object.class);
+    } catch (ReflectiveOperationException ex) {
+      throw new ExceptionInInitializerError(ex);
+    }
+  }
+
+  private static final class Value<T> {
+
+    private final Optional<T> value;
+    private final long expiresAt;
+
+    private Value(Optional<T> value,
+                  long expiresAt)
+    {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    private boolean isExpired(long ttlNanos)
+    {
+      return ttlNanos > 0 && System.nanoTime() - expiresAt >= 0;
+    }
+
+  }
+
   private final Supplier<T> initializer;
-  private Optional<T> value;
+  private final long ttlNanos;
+  // null, a pending CompletableFuture<Optional<T>> or a Value<T>
+  private volatile Object state;
+
+  public LazyInitialized(Supplier<T> initializer)
+  {
+    this(initializer,
+         null);
+  }
 
+  /**
+   * @param initializer computes the value
+   * @param ttl time after which the value is computed again, {@code null} or zero for never
+   */
+  public LazyInitialized(Supplier<T> initializer,
+                         Duration ttl)
+  {
+    this.initializer = initializer;
+    this.ttlNanos = ttl != null && ttl.isPositive() ? ttl.toNanos() : 0;
+  }
+
+  @SuppressWarnings("unchecked")
   private Optional<T> ensureCreated()
   {
-    synchronized (this) {
-      if (value != null) {
-        return value;
+    for (;;) {
+      Object current = state;
+      if (current instanceof Value<?> v && !v.isExpired(ttlNanos)) {
+        return (Optional<T>) v.value;
+      }
+      if (current instanceof CompletableFuture<?> pending) {
+        return (Optional<T>) await(pending);
       }
+      CompletableFuture<Optional<T>> mine = new CompletableFuture<>();
+      if (STATE.compareAndSet(this,
+                              current,
+                              mine)) {
+        return initialize(mine);
+      }
+    }
+  }
+
+  private Optional<T> initialize(CompletableFuture<Optional<T>> pending)
+  {
+    Optional<T> result;
+    try {
+      result = Optional.ofNullable(initializer.get());
+    } catch (RuntimeException | Error ex) {
+      // let the next caller try again
+      STATE.compareAndSet(this,
+                          pending,
+                          null);
+      pending.completeExceptionally(ex);
+      throw ex;
     }
-    T tmp = initializer.get();
-    synchronized (this) {
-      if (value == null) {
-        value = Optional.ofNullable(tmp);
+    // a reset() during initialization wins, the result is handed to the waiters only
+    STATE.compareAndSet(this,
+                        pending,
+                        new Value<>(result,
+                                    System.nanoTime() + ttlNanos));
+    pending.complete(result);
+    return result;
+  }
+
+  private static Object await(CompletableFuture<?> pending)
+  {
+    try {
+      return pending.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException re) {
+        throw re;
       }
-      return value;
+      if (ex.getCause() instanceof Error er) {
+        throw er;
+      }
+      throw ex;
     }
   }
 
@@ -51,4 +154,40 @@ public class LazyInitialized<T> implements Supplier<T> {
   {
     return ensureCreated().orElse(null);
   }
+
+  /**
+   * @return {@code true} if a value is available without running the initializer
+   */
+  public boolean isInitialized()
+  {
+    return state instanceof Value<?> v && !v.isExpired(ttlNanos);
+  }
+
+  /**
+   * Drops the value, the next access runs the initializer again. A running initialization still completes for the
+   * callers already waiting for it.
+   */
+  public void reset()
+  {
+    state = null;
+  }
+
+  /**
+   * Computes the value on {@code executor} unless it is already available.
+   *
+   * @param executor executor running the initializer
+   * @return a future completing with the value
+   */
+  public CompletableFuture<T> prefetchAsync(Executor executor)
+  {
+    Object current = state;
+    if (current instanceof Value<?> v && !v.isExpired(ttlNanos)) {
+      @SuppressWarnings("unchecked")
+      T value = (T) v.value.orElse(null);
+      return CompletableFuture.completedFuture(value);
+    }
+    return CompletableFuture.supplyAsync(this::get,
+                                         executor);
+  }
+
 }
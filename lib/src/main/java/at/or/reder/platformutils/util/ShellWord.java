@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.util;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Evaluates one word of a shell assignment, as found in {@code os-release} and {@code user-dirs.dirs}, following the
+ * POSIX quoting rules: single quotes are literal; inside double quotes a backslash only escapes {@code $ ` " \} and
+ * newline; outside of quotes a backslash escapes any character, whitespace ends the word and a {@code #} at the start
+ * of the word starts a comment. {@code $NAME} and {@code ${NAME}} are expanded outside of single quotes, command
+ * substitution is not supported.
+ */
+public final class ShellWord {
+
+  private static final String DOUBLE_QUOTE_ESCAPES = "$`\"\\\n";
+
+  private ShellWord()
+  {
+  }
+
+  /**
+   * Evaluate the word at {@code start} without expanding variables.
+   *
+   * @param line the line
+   * @param start index of the first character of the word
+   * @return the value
+   */
+  public static String parse(String line,
+                             int start)
+  {
+    return parse(line,
+                 start,
+                 name -> null);
+  }
+
+  /**
+   * Evaluate the word at {@code start}.
+   *
+   * @param line the line
+   * @param start index of the first character of the word
+   * @param variables value of a variable, {@code null} to keep the reference as it is written
+   * @return the value
+   */
+  public static String parse(String line,
+                             int start,
+                             UnaryOperator<String> variables)
+  {
+    StringBuilder builder = new StringBuilder(line.length() - start);
+    char quote = 0;
+    int len = line.length();
+    int i = start;
+    if (i < len && line.charAt(i) == '#') {
+      return "";
+    }
+    while (i < len) {
+      char c = line.charAt(i++);
+      if (quote == '\'') {
+        if (c == '\'') {
+          quote = 0;
+        } else {
+          builder.append(c);
+        }
+      } else if (c == '\\' && i < len) {
+        char next = line.charAt(i);
+        if (quote == '"' && DOUBLE_QUOTE_ESCAPES.indexOf(next) < 0) {
+          // literal backslash
+          builder.append(c);
+        } else {
+          builder.append(next);
+          ++i;
+        }
+      } else if (c == '$') {
+        i = expand(line,
+                   i,
+                   variables,
+                   builder);
+      } else if (c == '"') {
+        quote = quote == '"' ? 0 : '"';
+      } else if (quote == 0 && c == '\'') {
+        quote = '\'';
+      } else if (quote == 0 && Character.isWhitespace(c)) {
+        break;
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Expand the variable reference following a {@code $} at {@code pos - 1}.
+   *
+   * @return index of the first character after the reference
+   */
+  private static int expand(String line,
+                            int pos,
+                            UnaryOperator<String> variables,
+                            StringBuilder builder)
+  {
+    boolean braced = pos < line.length() && line.charAt(pos) == '{';
+    int nameStart = braced ? pos + 1 : pos;
+    int nameEnd = nameStart;
+    while (nameEnd < line.length() && isNameChar(line.charAt(nameEnd),
+                                                 nameEnd == nameStart)) {
+      ++nameEnd;
+    }
+    int end = nameEnd;
+    if (braced) {
+      if (nameEnd >= line.length() || line.charAt(nameEnd) != '}') {
+        // no plain ${NAME}, keep it
+        builder.append('$');
+        return pos;
+      }
+      ++end;
+    }
+    String value = nameEnd > nameStart ? variables.apply(line.substring(nameStart,
+                                                                        nameEnd)) : null;
+    if (value == null) {
+      builder.append('$');
+      return pos;
+    }
+    builder.append(value);
+    return end;
+  }
+
+  private static boolean isNameChar(char c,
+                                    boolean first)
+  {
+    return c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (!first && c >= '0' && c <= '9');
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OsReleaseTest {
+
+  private static final String UBUNTU = """
+                                       PRETTY_NAME="Ubuntu 24.04.1 LTS"
+                                       NAME="Ubuntu"
+                                       VERSION_ID="24.04"
+                                       VERSION="24.04.1 LTS (Noble Numbat)"
+                                       ID=ubuntu
+                                       ID_LIKE=debian
+                                       HOME_URL="https://www.ubuntu.com/"
+                                       """;
+
+  @TempDir
+  Path dir;
+
+  private static OsRelease parse(String content) throws IOException
+  {
+    return OsRelease.parse(new StringReader(content));
+  }
+
+  @Test
+  void testParse() throws IOException
+  {
+    OsRelease release = parse(UBUNTU);
+    assertEquals("ubuntu",
+                 release.getId());
+    assertEquals(List.of("debian"),
+                 release.getIdLike());
+    assertEquals("24.04",
+                 release.getVersionId());
+    assertEquals("Ubuntu 24.04.1 LTS",
+                 release.getPrettyName());
+  }
+
+  @Test
+  void testDefaults() throws IOException
+  {
+    OsRelease release = parse("# empty\n\nNAME=Nothing\n");
+    assertEquals("linux",
+                 release.getId());
+    assertTrue(release.getIdLike().isEmpty());
+    assertNull(release.getVersionId());
+    assertEquals("Linux",
+                 release.getPrettyName());
+  }
+
+  @Test
+  void testQuotingAndComments() throws IOException
+  {
+    OsRelease release = parse("""
+                              ID='opensuse-tumbleweed'
+                              ID_LIKE="opensuse suse"   # trailing comment
+                              PRETTY_NAME="openSUSE \\"Tumbleweed\\""
+                              """);
+    assertEquals("opensuse-tumbleweed",
+                 release.getId());
+    assertEquals(List.of("opensuse",
+                         "suse"),
+                 release.getIdLike());
+    assertEquals("openSUSE \"Tumbleweed\"",
+                 release.getPrettyName());
+  }
+
+  @Test
+  void testLoadFallsBackToSecondLocation() throws IOException
+  {
+    Path etc = dir.resolve("etc-os-release");
+    Path usrLib = Files.writeString(dir.resolve("usr-lib-os-release"),
+                                    "ID=fedora\n");
+    assertEquals("fedora",
+                 OsRelease.load(List.of(etc,
+                                        usrLib)).get().getId());
+    Files.writeString(etc,
+                      UBUNTU);
+    assertEquals("ubuntu",
+                 OsRelease.load(List.of(etc,
+                                        usrLib)).get().getId());
+    assertEquals(Optional.empty(),
+                 OsRelease.load(List.of(etc.resolveSibling("missing"))));
+  }
+
+  @Test
+  void testClassifyId()
+  {
+    assertEquals(Distribution.LINUX_UBUNTU,
+                 Distribution.classify("ubuntu"));
+    assertEquals(Distribution.LINUX_DEBIAN,
+                 Distribution.classify("debian"));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify("fedora"));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify("redhatenterpriseserver"));
+    assertEquals(Distribution.LINUX_SUSE,
+                 Distribution.classify("opensuse-leap"));
+    assertEquals(Distribution.LINUX_RPI,
+                 Distribution.classify("raspbian"));
+    assertNull(Distribution.classify("arch"));
+  }
+
+  @Test
+  void testClassifyRedHatFamily() throws IOException
+  {
+    // os-release has no "red hat" in ID, which lsb_release used to report, so the IDs are matched
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify(parse("ID=\"rhel\"\nID_LIKE=\"fedora\"\n")));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify(parse("ID=fedora\n")));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify(parse("ID=\"centos\"\nID_LIKE=\"rhel fedora\"\n")));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify(parse("ID=\"almalinux\"\nID_LIKE=\"rhel centos fedora\"\n")));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify("redhatenterpriseworkstation"));
+    // only whole IDs, not parts of other names
+    assertEquals(Distribution.GENERIC_LINUX,
+                 Distribution.classify(parse("ID=fedoraish\n")));
+  }
+
+  @Test
+  void testClassifyPrefersClosestRelative() throws IOException
+  {
+    // derivatives of Ubuntu list debian too, ubuntu must win
+    assertEquals(Distribution.LINUX_UBUNTU,
+                 Distribution.classify(parse("ID=linuxmint\nID_LIKE=\"ubuntu debian\"\n")));
+    assertEquals(Distribution.LINUX_UBUNTU,
+                 Distribution.classify(parse("ID=pop\nID_LIKE=\"ubuntu debian\"\n")));
+    assertEquals(Distribution.LINUX_UBUNTU,
+                 Distribution.classify(parse(UBUNTU)));
+    assertEquals(Distribution.LINUX_DEBIAN,
+                 Distribution.classify(parse("ID=kali\nID_LIKE=debian\n")));
+    assertEquals(Distribution.LINUX_RPI,
+                 Distribution.classify(parse("ID=raspbian\nID_LIKE=debian\n")));
+    assertEquals(Distribution.LINUX_REDHAT,
+                 Distribution.classify(parse("ID=rocky\nID_LIKE=\"rhel centos fedora\"\n")));
+    assertEquals(Distribution.GENERIC_LINUX,
+                 Distribution.classify(parse("ID=arch\n")));
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashProgressListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CrossDeviceMoverTest {
+
+  @TempDir
+  Path root;
+
+  @Test
+  void testCopyTree() throws IOException
+  {
+    Path source = Files.createDirectories(root.resolve("source/sub"));
+    source = source.getParent();
+    Files.writeString(source.resolve("a"),
+                      "0123456789");
+    Path b = Files.writeString(source.resolve("sub/b"),
+                               "abc");
+    Files.setPosixFilePermissions(b,
+                                  PosixFilePermissions.fromString("r--r-----"));
+    Files.setLastModifiedTime(b,
+                              FileTime.fromMillis(1_700_000_000_000L));
+    Files.createSymbolicLink(source.resolve("link"),
+                             Path.of("a"));
+    Files.setPosixFilePermissions(source.resolve("sub"),
+                                  PosixFilePermissions.fromString("r-xr-x---"));
+    Path target = root.resolve("target");
+    TrashProgress progress = TrashProgress.none();
+    try (ForkJoinPool pool = new ForkJoinPool(2)) {
+      new CrossDeviceMover(pool).copy(source,
+                                      target,
+                                      progress);
+    }
+    assertEquals("0123456789",
+                 Files.readString(target.resolve("a")));
+    assertEquals("abc",
+                 Files.readString(target.resolve("sub/b")));
+    assertEquals(PosixFilePermissions.fromString("r--r-----"),
+                 Files.getPosixFilePermissions(target.resolve("sub/b")));
+    assertEquals(FileTime.fromMillis(1_700_000_000_000L),
+                 Files.getLastModifiedTime(target.resolve("sub/b")));
+    // restored after the content was complete
+    assertEquals(PosixFilePermissions.fromString("r-xr-x---"),
+                 Files.getPosixFilePermissions(target.resolve("sub")));
+    assertTrue(Files.isSymbolicLink(target.resolve("link")));
+    assertEquals(Path.of("a"),
+                 Files.readSymbolicLink(target.resolve("link")));
+    // the source is only deleted on request
+    assertTrue(Files.exists(source.resolve("a")));
+  }
+
+  @Test
+  void testChangedSourceFailsTheCopy() throws IOException
+  {
+    Path source = Files.createDirectories(root.resolve("source"));
+    Path file = Files.writeString(source.resolve("growing"),
+                                  "0123456789");
+    Path target = root.resolve("target");
+    AtomicBoolean appended = new AtomicBoolean();
+    // another program appends while the file is copied
+    TrashProgressListener listener = (bytes, files) -> {
+      if (bytes > 0 && appended.compareAndSet(false,
+                                              true)) {
+        try {
+          Files.writeString(file,
+                            "more",
+                            StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+          throw new AssertionError(ex);
+        }
+      }
+    };
+    TrashProgress progress = new TrashProgress(listener,
+                                               () -> false);
+    try (ForkJoinPool pool = new ForkJoinPool(2)) {
+      IOException ex = assertThrows(IOException.class,
+                                    () -> new CrossDeviceMover(pool).copy(source,
+                                                                          target,
+                                                                          progress));
+      assertTrue(ex.getMessage().contains("changed while copying"));
+    }
+    // the incomplete copy is removed, the source is kept
+    assertFalse(Files.exists(target,
+                             LinkOption.NOFOLLOW_LINKS));
+    assertEquals("0123456789more",
+                 Files.readString(file));
+  }
+
+  @Test
+  void testCopyIntoExistingTargetFails() throws IOException
+  {
+    Path source = Files.writeString(root.resolve("source"),
+                                    "abc");
+    Path target = Files.writeString(root.resolve("target"),
+                                    "keep");
+    try (ForkJoinPool pool = new ForkJoinPool(2)) {
+      assertThrows(IOException.class,
+                   () -> new CrossDeviceMover(pool).copy(source,
+                                                         target,
+                                                         TrashProgress.none()));
+    }
+    assertEquals("abc",
+                 Files.readString(source));
+  }
+
+  @Test
+  void testDeleteSource() throws IOException
+  {
+    Path source = Files.createDirectories(root.resolve("source/a/b"));
+    Files.writeString(source.resolve("file"),
+                      "x");
+    try (ForkJoinPool pool = new ForkJoinPool(2)) {
+      new CrossDeviceMover(pool).deleteSource(root.resolve("source"));
+    }
+    assertFalse(Files.exists(root.resolve("source")));
+  }
+
+}
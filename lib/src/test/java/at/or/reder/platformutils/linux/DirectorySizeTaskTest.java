@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectorySizeTaskTest {
+
+  @TempDir
+  Path root;
+
+  /**
+   * Creates {@code depth} levels with {@code width} subdirectories each, every directory holds one file of 10 bytes.
+   *
+   * @return the number of directories created
+   */
+  private static int createTree(Path dir,
+                                int depth,
+                                int width) throws IOException
+  {
+    Files.createDirectories(dir);
+    Files.writeString(dir.resolve("file"),
+                      "0123456789");
+    int result = 1;
+    if (depth > 0) {
+      for (int i = 0; i < width; ++i) {
+        result += createTree(dir.resolve("d" + i),
+                             depth - 1,
+                             width);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  void testSumsRegularFiles() throws IOException
+  {
+    Path dir = root.resolve("tree");
+    int dirs = createTree(dir,
+                          3,
+                          3);
+    try (ForkJoinPool pool = new ForkJoinPool(4)) {
+      assertEquals(10L * dirs,
+                   pool.invoke(new DirectorySizeTask(dir)));
+    }
+  }
+
+  @Test
+  void testSymbolicLinksAreNotFollowed() throws IOException
+  {
+    Path outside = Files.writeString(root.resolve("big"),
+                                     "x".repeat(1000));
+    Path dir = Files.createDirectories(root.resolve("tree"));
+    Files.writeString(dir.resolve("file"),
+                      "abc");
+    Files.createSymbolicLink(dir.resolve("link"),
+                             outside);
+    Files.createSymbolicLink(dir.resolve("dirlink"),
+                             root);
+    assertEquals(3L,
+                 new DirectorySizeTask(dir).invoke());
+  }
+
+  @Test
+  void testMissingDirectory()
+  {
+    assertThrows(UncheckedIOException.class,
+                 () -> new DirectorySizeTask(root.resolve("missing")).invoke());
+  }
+
+  @Test
+  void testSizeIsComputedAfterTrashing() throws IOException
+  {
+    TestFolders folders = new TestFolders(root);
+    LinuxTrashService service = new LinuxTrashService(folders,
+                                                      new TrashDirectories(folders,
+                                                                           Files.writeString(root.resolve("mounts"),
+                                                                                             "")));
+    Path dir = root.resolve("data/tree");
+    int dirs = createTree(dir,
+                          2,
+                          4);
+    assertTrue(service.moveToTrash(dir));
+    // waits for the deferred computation and writes directorysizes
+    service.shutdown();
+    Path infoFile = folders.getTrashFolder().resolve("info/tree.trashinfo");
+    assertEquals(List.of(TrashInfoWriter.directorySizeLine(10L * dirs,
+                                                           Files.getLastModifiedTime(infoFile).toMillis(),
+                                                           "tree").trim()),
+                 Files.readAllLines(folders.getTrashFolder().resolve(TrashDirectory.DIRECTORY_SIZES)));
+    LinuxTrashService second = new LinuxTrashService(folders,
+                                                     new TrashDirectories(folders,
+                                                                          root.resolve("mounts")));
+    try (Stream<TrashEntry> entries = second.listTrash()) {
+      assertEquals(List.of(10L * dirs),
+                   entries.map(TrashEntry::getSize).toList());
+    }
+    second.shutdown();
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectorySizesWriterTest {
+
+  private static final long INFO_MTIME = 1_700_000_000_000L;
+
+  @TempDir
+  Path root;
+
+  private TrashDirectory createTrash() throws IOException
+  {
+    TrashDirectory trash = new TrashDirectory(root.resolve("Trash"),
+                                              null);
+    trash.ensureExists();
+    return trash;
+  }
+
+  /**
+   * Puts a directory with its info file into {@code trash}.
+   */
+  private static void putDirectory(TrashDirectory trash,
+                                   String trashName) throws IOException
+  {
+    Files.createDirectory(trash.getFilesDir().resolve(trashName));
+    Path infoFile = Files.writeString(trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX),
+                                      "[Trash Info]\nPath=/home/user/" + trashName + "\n");
+    Files.setLastModifiedTime(infoFile,
+                              FileTime.fromMillis(INFO_MTIME));
+  }
+
+  @Test
+  void testCloseWritesQueuedLines() throws IOException, InterruptedException
+  {
+    TrashDirectory trash = createTrash();
+    DirectorySizesWriter writer = new DirectorySizesWriter();
+    writer.append(trash.getDirectorySizesFile(),
+                  "1 1 a\n");
+    writer.append(trash.getDirectorySizesFile(),
+                  "2 1 b\n");
+    writer.close(5,
+                 TimeUnit.SECONDS);
+    assertEquals(List.of("1 1 a",
+                         "2 1 b"),
+                 Files.readAllLines(trash.getDirectorySizesFile()));
+    // written by the caller after close
+    writer.append(trash.getDirectorySizesFile(),
+                  "3 1 c\n");
+    assertEquals(3,
+                 Files.readAllLines(trash.getDirectorySizesFile()).size());
+  }
+
+  @Test
+  void testConcurrentAppendsKeepLinesIntact() throws IOException, InterruptedException
+  {
+    TrashDirectory trash = createTrash();
+    DirectorySizesWriter writer = new DirectorySizesWriter();
+    int threads = 8;
+    int linesPerThread = 200;
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; ++t) {
+      int id = t;
+      workers[t] = Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          return;
+        }
+        for (int i = 0; i < linesPerThread; ++i) {
+          writer.append(trash.getDirectorySizesFile(),
+                        i + " 1 t" + id + "-" + i + "\n");
+        }
+      });
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    writer.close(5,
+                 TimeUnit.SECONDS);
+    List<String> lines = Files.readAllLines(trash.getDirectorySizesFile());
+    assertEquals(threads * linesPerThread,
+                 lines.size());
+    for (String line : lines) {
+      assertEquals(3,
+                   line.split(" ").length,
+                   line);
+    }
+  }
+
+  @Test
+  void testCompactDropsStaleLines() throws IOException, InterruptedException
+  {
+    TrashDirectory trash = createTrash();
+    putDirectory(trash,
+                 "a b");
+    putDirectory(trash,
+                 "c");
+    Files.writeString(trash.getDirectorySizesFile(),
+                      // superseded by the later line of the same item
+                      "10 " + INFO_MTIME + " a%20b\n"
+                      // item no longer in the trash
+                      + "20 " + INFO_MTIME + " gone\n"
+                      // written for an earlier item of the same name
+                      + "30 1 c\n"
+                      + "garbage\n"
+                      + "40 " + INFO_MTIME + " a%20b\n");
+    DirectorySizesWriter writer = new DirectorySizesWriter();
+    // queued lines are flushed before compacting
+    writer.append(trash.getDirectorySizesFile(),
+                  "50 " + INFO_MTIME + " c\n");
+    writer.compact(trash);
+    assertEquals(List.of("40 " + INFO_MTIME + " a%20b",
+                         "50 " + INFO_MTIME + " c"),
+                 Files.readAllLines(trash.getDirectorySizesFile()));
+    try (var files = Files.list(trash.getRoot())) {
+      // no temporary file left behind
+      assertEquals(List.of(),
+                   files.filter(f -> f.getFileName().toString().endsWith(".tmp")).toList());
+    }
+    writer.close(5,
+                 TimeUnit.SECONDS);
+  }
+
+  @Test
+  void testCompactWithoutFile() throws IOException, InterruptedException
+  {
+    TrashDirectory trash = createTrash();
+    DirectorySizesWriter writer = new DirectorySizesWriter();
+    writer.compact(trash);
+    assertFalse(Files.exists(trash.getDirectorySizesFile()));
+    writer.close(5,
+                 TimeUnit.SECONDS);
+  }
+
+  @Test
+  void testAppendAfterCompactGoesToNewFile() throws IOException, InterruptedException
+  {
+    TrashDirectory trash = createTrash();
+    putDirectory(trash,
+                 "a");
+    Files.writeString(trash.getDirectorySizesFile(),
+                      "10 " + INFO_MTIME + " a\n");
+    DirectorySizesWriter writer = new DirectorySizesWriter();
+    writer.compact(trash);
+    writer.append(trash.getDirectorySizesFile(),
+                  "20 " + INFO_MTIME + " a\n");
+    writer.close(5,
+                 TimeUnit.SECONDS);
+    assertEquals(List.of("10 " + INFO_MTIME + " a",
+                         "20 " + INFO_MTIME + " a"),
+                 Files.readAllLines(trash.getDirectorySizesFile()));
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LinuxCommandServiceTest {
+
+  @TempDir
+  Path root;
+
+  private static Path createCommand(Path dir,
+                                    String name,
+                                    String permissions) throws IOException
+  {
+    Files.createDirectories(dir);
+    Path file = Files.writeString(dir.resolve(name),
+                                  "#!/bin/sh\n");
+    Files.setPosixFilePermissions(file,
+                                  PosixFilePermissions.fromString(permissions));
+    return file;
+  }
+
+  private LinuxCommandService createService(Path... dirs)
+  {
+    StringBuilder path = new StringBuilder();
+    for (Path dir : dirs) {
+      path.append(dir).append(File.pathSeparator);
+    }
+    return new LinuxCommandService(path.toString());
+  }
+
+  /**
+   * Cached results are revalidated at most once per second.
+   */
+  private static void waitForRevalidation()
+  {
+    try {
+      Thread.sleep(1100);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  void testFirstMatchWins() throws IOException
+  {
+    Path first = root.resolve("first");
+    Path second = root.resolve("second");
+    createCommand(second,
+                  "tool",
+                  "rwxr-xr-x");
+    Path expected = createCommand(first,
+                                  "tool",
+                                  "rwxr-xr-x");
+    LinuxCommandService service = createService(first,
+                                                second);
+    assertEquals(Optional.of(expected),
+                 service.resolveCommand("tool"));
+    assertEquals(List.of(expected.toString()),
+                 service.findCommand("tool").get().command());
+    assertFalse(service.resolveCommand("missing").isPresent());
+  }
+
+  @Test
+  void testNotExecutableIsSkipped() throws IOException
+  {
+    Path first = root.resolve("first");
+    Path second = root.resolve("second");
+    createCommand(first,
+                  "tool",
+                  "rw-r--r--");
+    Path expected = createCommand(second,
+                                  "tool",
+                                  "rwxr-xr-x");
+    Files.createDirectories(first.resolve("dir"));
+    LinuxCommandService service = createService(first,
+                                                second);
+    assertEquals(Optional.of(expected),
+                 service.resolveCommand("tool"));
+    // directories are no commands
+    assertFalse(service.resolveCommand("dir").isPresent());
+  }
+
+  @Test
+  void testNewCommandInvalidatesMiss() throws IOException
+  {
+    Path dir = Files.createDirectories(root.resolve("bin"));
+    LinuxCommandService service = createService(dir);
+    assertFalse(service.resolveCommand("tool").isPresent());
+    waitForRevalidation();
+    Path tool = createCommand(dir,
+                              "tool",
+                              "rwxr-xr-x");
+    assertEquals(Optional.of(tool),
+                 service.resolveCommand("tool"));
+  }
+
+  @Test
+  void testChmodIsSeenAfterMissExpired() throws IOException
+  {
+    Path dir = root.resolve("bin");
+    Path tool = createCommand(dir,
+                              "tool",
+                              "rw-r--r--");
+    LinuxCommandService service = createService(dir);
+    assertFalse(service.resolveCommand("tool").isPresent());
+    assertEquals(Map.of(),
+                 service.findCommands(Set.of("tool")));
+    // does not change the modification time of the directory
+    Files.setPosixFilePermissions(tool,
+                                  PosixFilePermissions.fromString("rwxr-xr-x"));
+    waitForRevalidation();
+    assertEquals(Map.of("tool",
+                        tool),
+                 service.findCommands(Set.of("tool")));
+    assertEquals(Optional.of(tool),
+                 service.resolveCommand("tool"));
+  }
+
+  @Test
+  void testFindCommandsKeepsOrder() throws IOException
+  {
+    Path first = root.resolve("first");
+    Path second = root.resolve("second");
+    Path b = createCommand(first,
+                           "b",
+                           "rwxr-xr-x");
+    Path a = createCommand(second,
+                           "a",
+                           "rwxr-xr-x");
+    Path c = createCommand(second,
+                           "c",
+                           "rwxr-xr-x");
+    LinuxCommandService service = createService(first,
+                                                second);
+    // cached before the sweep
+    service.resolveCommand("c");
+    Set<String> commands = new LinkedHashSet<>(List.of("c",
+                                                       "missing",
+                                                       "a",
+                                                       "b",
+                                                       c.toString()));
+    Map<String, Path> result = service.findCommands(commands);
+    assertEquals(List.of("c",
+                         "a",
+                         "b",
+                         c.toString()),
+                 List.copyOf(result.keySet()));
+    assertEquals(a,
+                 result.get("a"));
+    assertEquals(b,
+                 result.get("b"));
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LinuxPlatformTest {
+
+  @TempDir
+  Path root;
+
+  @Test
+  void testKernelHostNameFirst() throws IOException
+  {
+    Path kernel = Files.writeString(root.resolve("kernel"),
+                                    "uts-name\n");
+    Path etc = Files.writeString(root.resolve("etc"),
+                                 "configured\n");
+    assertEquals("uts-name",
+                 LinuxPlatform.loadHostName(kernel,
+                                            etc));
+  }
+
+  @Test
+  void testFallbackToEtcHostName() throws IOException
+  {
+    Path etc = Files.writeString(root.resolve("etc"),
+                                 "  configured  \nsecond line\n");
+    assertEquals("configured",
+                 LinuxPlatform.loadHostName(root.resolve("missing"),
+                                            etc));
+    Path empty = Files.writeString(root.resolve("empty"),
+                                   "\n");
+    assertEquals("configured",
+                 LinuxPlatform.loadHostName(empty,
+                                            etc));
+  }
+
+  @Test
+  void testFallbackToResolver() throws IOException
+  {
+    String expected = null;
+    try {
+      expected = InetAddress.getLocalHost().getHostName();
+    } catch (IOException ex) {
+      // no resolver, $HOSTNAME is the last resort
+    }
+    if (expected == null || expected.isBlank()) {
+      expected = System.getenv("HOSTNAME");
+    }
+    assertEquals(expected == null || expected.isBlank() ? null : expected.strip(),
+                 LinuxPlatform.loadHostName(root.resolve("missing"),
+                                            Files.writeString(root.resolve("empty"),
+                                                              "")));
+  }
+
+  @Test
+  void testProcHostName()
+  {
+    String hostName = LinuxPlatform.loadHostName(Path.of("/proc/sys/kernel/hostname"),
+                                                 root.resolve("missing"));
+    assertNotNull(hostName);
+    assertFalse(hostName.isBlank());
+  }
+
+}
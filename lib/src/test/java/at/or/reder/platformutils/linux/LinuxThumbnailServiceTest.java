@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.thumbnails.ImageThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.ThumbnailMetaData;
+import at.or.reder.platformutils.thumbnails.ThumbnailSize;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LinuxThumbnailServiceTest {
+
+  @TempDir
+  Path root;
+
+  private Path createImage(String name) throws IOException
+  {
+    Path file = Files.createDirectories(root.resolve("img")).resolve(name);
+    ImageIO.write(new BufferedImage(300,
+                                    200,
+                                    BufferedImage.TYPE_INT_RGB),
+                  "png",
+                  file.toFile());
+    return file;
+  }
+
+  @Test
+  void testCachedMetaData() throws IOException
+  {
+    LinuxThumbnailService service = new LinuxThumbnailService(new TestFolders(root));
+    Path img = createImage("a.png");
+    Path other = createImage("b.png");
+    service.getThumbnail(img,
+                         ThumbnailSize.NORMAL,
+                         new ImageThumbnailGenerator());
+    Map<Path, ThumbnailMetaData> meta = service.getCachedMetaData(List.of(img,
+                                                                          other),
+                                                                  null);
+    assertEquals(1,
+                 meta.size());
+    assertEquals(img.toUri(),
+                 meta.get(img).getUri());
+    assertEquals(Files.size(img),
+                 meta.get(img).getSize());
+    assertEquals(1,
+                 service.getCachedMetaData(List.of(img),
+                                           ThumbnailSize.NORMAL).size());
+    assertTrue(service.getCachedMetaData(List.of(img),
+                                         ThumbnailSize.LARGE).isEmpty());
+    // no thumbnails are generated by the query
+    assertFalse(service.getCachedThumbnail(other,
+                                           ThumbnailSize.NORMAL).isPresent());
+  }
+
+  @Test
+  void testOutdatedThumbnailIsIgnored() throws IOException
+  {
+    LinuxThumbnailService service = new LinuxThumbnailService(new TestFolders(root));
+    Path img = createImage("a.png");
+    service.getThumbnail(img,
+                         ThumbnailSize.NORMAL,
+                         new ImageThumbnailGenerator());
+    Files.setLastModifiedTime(img,
+                              FileTime.fromMillis(Files.getLastModifiedTime(img).toMillis() + 10_000));
+    assertTrue(service.getCachedMetaData(List.of(img),
+                                         null).isEmpty());
+    assertFalse(service.getCachedThumbnail(img,
+                                           ThumbnailSize.NORMAL).isPresent());
+  }
+
+  @Test
+  void testQueryLeavesBrokenThumbnail() throws IOException
+  {
+    LinuxThumbnailService service = new LinuxThumbnailService(new TestFolders(root));
+    Path img = createImage("a.png");
+    Path thumb = service.getThumbnail(img,
+                                      ThumbnailSize.NORMAL,
+                                      new ImageThumbnailGenerator());
+    Files.writeString(thumb,
+                      "garbage");
+    assertTrue(service.getCachedMetaData(List.of(img),
+                                         null).isEmpty());
+    assertTrue(Files.exists(thumb));
+    // generation replaces it
+    assertEquals(thumb,
+                 service.getThumbnail(img,
+                                      ThumbnailSize.NORMAL,
+                                      new ImageThumbnailGenerator()));
+    assertEquals(1,
+                 service.getCachedMetaData(List.of(img),
+                                           null).size());
+  }
+
+}
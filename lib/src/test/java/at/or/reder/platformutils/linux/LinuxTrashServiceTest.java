@@ -0,0 +1,461 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashEntry;
+import at.or.reder.platformutils.TrashPurgePolicy;
+import at.or.reder.platformutils.TrashReport;
+import at.or.reder.platformutils.TrashService.CollisionAction;
+import at.or.reder.platformutils.TrashService.Outcome;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LinuxTrashServiceTest {
+
+  @TempDir
+  Path root;
+
+  private TestFolders folders;
+
+  private static final class CountingRename implements BiFunction<Path, Path, CollisionAction> {
+
+    private int calls;
+
+    @Override
+    public CollisionAction apply(Path existing,
+                                 Path toRestore)
+    {
+      ++calls;
+      return CollisionAction.RENAME;
+    }
+
+  }
+
+  /**
+   * A service seeing only the home trash below {@link #root}, the trash directories of the real mounts are never
+   * touched.
+   */
+  private LinuxTrashService createService() throws IOException
+  {
+    folders = new TestFolders(root);
+    Path mounts = Files.writeString(root.resolve("mounts"),
+                                    "");
+    return new LinuxTrashService(folders,
+                                 new TrashDirectories(folders,
+                                                      mounts));
+  }
+
+  private Path createFile(String name,
+                          String content) throws IOException
+  {
+    Path file = root.resolve("data").resolve(name);
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file,
+                             content);
+  }
+
+  /**
+   * Deletion dates have a resolution of one second.
+   */
+  private static void nextSecond()
+  {
+    try {
+      Thread.sleep(1100);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Put an item into the home trash without the service, with a chosen deletion date.
+   */
+  private Path putIntoTrash(String trashName,
+                            String content,
+                            String deletionDate) throws IOException
+  {
+    TrashDirectory trash = new TrashDirectory(folders.getTrashFolder(),
+                                              null);
+    trash.ensureExists();
+    Path item = trash.getFilesDir().resolve(trashName);
+    if (content != null) {
+      Files.writeString(item,
+                        content);
+    } else {
+      Files.createDirectories(item.resolve("sub"));
+      Files.writeString(item.resolve("sub/file"),
+                        "12345");
+    }
+    Files.writeString(trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX),
+                      "[Trash Info]\nPath=" + root.resolve("data").resolve(trashName) + "\nDeletionDate=" + deletionDate
+                      + "\n");
+    return item;
+  }
+
+  private List<TrashEntry> list(LinuxTrashService service)
+  {
+    try (Stream<TrashEntry> entries = service.listTrash()) {
+      return entries.toList();
+    }
+  }
+
+  private TrashEntry single(LinuxTrashService service)
+  {
+    List<TrashEntry> entries = list(service);
+    assertEquals(1,
+                 entries.size());
+    return entries.get(0);
+  }
+
+  @Test
+  void testRestore() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "content");
+    assertTrue(service.moveToTrash(file));
+    assertFalse(Files.exists(file));
+    TrashEntry entry = single(service);
+    assertEquals(file,
+                 entry.getOriginalPath());
+    assertTrue(service.restoreFromTrash(file));
+    assertEquals("content",
+                 Files.readString(file));
+    assertTrue(list(service).isEmpty());
+    assertFalse(Files.exists(folders.getTrashFolder().resolve("info/a.txt.trashinfo")));
+    service.shutdown();
+  }
+
+  @Test
+  void testRestoreLatest() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "old");
+    service.moveToTrash(file);
+    nextSecond();
+    createFile("a.txt",
+               "new");
+    service.moveToTrash(file);
+    assertTrue(service.restoreFromTrash(file));
+    assertEquals("new",
+                 Files.readString(file));
+    Files.delete(file);
+    assertTrue(service.restoreFromTrash(file));
+    assertEquals("old",
+                 Files.readString(file));
+    assertFalse(service.restoreFromTrash(file));
+    service.shutdown();
+  }
+
+  @Test
+  void testRestoreDirectory() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path dir = root.resolve("data/dir");
+    Files.createDirectories(dir.resolve("sub"));
+    Files.writeString(dir.resolve("sub/file"),
+                      "x");
+    assertTrue(service.moveToTrash(dir));
+    assertTrue(service.restoreFromTrash(dir));
+    assertEquals("x",
+                 Files.readString(dir.resolve("sub/file")));
+    service.shutdown();
+  }
+
+  @Test
+  void testCollisionCancel() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "trashed");
+    service.moveToTrash(file);
+    createFile("a.txt",
+               "existing");
+    assertFalse(service.restoreFromTrash(file));
+    assertEquals("existing",
+                 Files.readString(file));
+    assertEquals(1,
+                 list(service).size());
+    service.shutdown();
+  }
+
+  @Test
+  void testCollisionRename() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "first");
+    service.moveToTrash(file);
+    nextSecond();
+    createFile("a.txt",
+               "second");
+    service.moveToTrash(file);
+    createFile("a.txt",
+               "existing");
+    createFile("a.txt_5",
+               "taken");
+    CountingRename rename = new CountingRename();
+    assertTrue(service.restoreFromTrash(file,
+                                        rename));
+    assertTrue(service.restoreFromTrash(file,
+                                        rename));
+    assertEquals(2,
+                 rename.calls);
+    // numbering continues after the highest suffix in use
+    assertEquals("second",
+                 Files.readString(file.resolveSibling("a.txt_6")));
+    assertEquals("first",
+                 Files.readString(file.resolveSibling("a.txt_7")));
+    assertEquals("existing",
+                 Files.readString(file));
+    service.shutdown();
+  }
+
+  @Test
+  void testCollisionOverwrite() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "trashed");
+    service.moveToTrash(file);
+    createFile("a.txt",
+               "existing");
+    assertTrue(service.restoreFromTrash(file,
+                                        (existing, toRestore) -> CollisionAction.OVERWRITE));
+    assertEquals("trashed",
+                 Files.readString(file));
+    // the overwritten file went to the trash
+    TrashEntry entry = single(service);
+    assertEquals("existing",
+                 Files.readString(entry.getTrashedFile()));
+    service.shutdown();
+  }
+
+  @Test
+  void testEntryOutsideTrashIsRejected() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "x");
+    service.moveToTrash(createFile("b.txt",
+                                   "y"));
+    TrashEntry forged = new TrashEntry("a.txt",
+                                       root.resolve("target"),
+                                       null,
+                                       file,
+                                       -1);
+    assertThrows(IllegalArgumentException.class,
+                 () -> service.restoreFromTrash(forged,
+                                                (existing, toRestore) -> CollisionAction.CANCEL));
+    assertTrue(Files.exists(file));
+    service.shutdown();
+  }
+
+  @Test
+  void testOriginalPathIsTakenFromInfoFile() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "x");
+    service.moveToTrash(file);
+    TrashEntry entry = single(service);
+    Path elsewhere = root.resolve("elsewhere/a.txt");
+    TrashEntry forged = new TrashEntry(entry.getTrashName(),
+                                       elsewhere,
+                                       entry.getDeletionDate(),
+                                       entry.getTrashedFile(),
+                                       entry.getSize());
+    assertTrue(service.restoreFromTrash(forged,
+                                        (existing, toRestore) -> CollisionAction.CANCEL));
+    assertEquals("x",
+                 Files.readString(file));
+    assertFalse(Files.exists(elsewhere));
+    service.shutdown();
+  }
+
+  @Test
+  void testStaleEntry() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path file = createFile("a.txt",
+                           "x");
+    service.moveToTrash(file);
+    TrashEntry entry = single(service);
+    assertTrue(service.restoreFromTrash(entry,
+                                        (existing, toRestore) -> CollisionAction.CANCEL));
+    // already restored
+    assertFalse(service.restoreFromTrash(entry,
+                                         (existing, toRestore) -> CollisionAction.CANCEL));
+    assertEquals("x",
+                 Files.readString(file));
+    service.shutdown();
+  }
+
+  @Test
+  void testEmptyTrash() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path a = createFile("a.txt",
+                        "x");
+    Path dir = root.resolve("data/dir");
+    Files.createDirectories(dir.resolve("sub"));
+    service.moveToTrash(a);
+    service.moveToTrash(dir);
+    TrashReport report = service.emptyTrash();
+    assertEquals(2,
+                 report.getOutcomes().size());
+    assertTrue(report.isSuccess());
+    assertTrue(report.getOutcomes().containsKey(folders.getTrashFolder().resolve("files/a.txt")));
+    assertTrue(list(service).isEmpty());
+    try (Stream<Path> files = Files.list(folders.getTrashFolder().resolve("files"))) {
+      assertEquals(0L,
+                   files.count());
+    }
+    try (Stream<Path> infos = Files.list(folders.getTrashFolder().resolve("info"))) {
+      assertEquals(0L,
+                   infos.count());
+    }
+    service.shutdown();
+  }
+
+  @Test
+  void testPurgeOlderThan() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path old = putIntoTrash("old",
+                            "x",
+                            "2000-01-01T00:00:00");
+    Path unknown = putIntoTrash("unknown",
+                                "x",
+                                "garbage");
+    Path recent = putIntoTrash("recent",
+                               "x",
+                               LocalDateTime.now().minusMinutes(1).truncatedTo(ChronoUnit.SECONDS).toString());
+    TrashReport report = service.purge(TrashPurgePolicy.olderThan(Duration.ofDays(1)));
+    assertEquals(Map.of(old,
+                        Outcome.SUCCESS),
+                 report.getOutcomes());
+    assertFalse(Files.exists(old));
+    assertTrue(Files.exists(unknown));
+    assertTrue(Files.exists(recent));
+    service.shutdown();
+  }
+
+  @Test
+  void testPurgeSizeQuota() throws IOException
+  {
+    LinuxTrashService service = createService();
+    Path first = putIntoTrash("first",
+                              "x".repeat(10),
+                              "2020-01-01T00:00:00");
+    Path second = putIntoTrash("second",
+                               null,
+                               "2021-01-01T00:00:00");
+    Path third = putIntoTrash("third",
+                              "x".repeat(30),
+                              "2022-01-01T00:00:00");
+    // 10 + 5 + 30 bytes, the oldest go until at most 32 bytes remain
+    TrashReport report = service.purge(TrashPurgePolicy.sizeQuota(32));
+    assertEquals(2,
+                 report.count(Outcome.SUCCESS));
+    assertFalse(Files.exists(first));
+    assertFalse(Files.exists(second));
+    assertTrue(Files.exists(third));
+    service.shutdown();
+  }
+
+  @Test
+  void testDirectorySizesOnlyComputedWhenNeeded() throws IOException
+  {
+    LinuxTrashService service = createService();
+    putIntoTrash("dir",
+                 null,
+                 "2020-01-01T00:00:00");
+    List<Long> seen = new ArrayList<>();
+    TrashPurgePolicy withoutSizes = new TrashPurgePolicy() {
+      @Override
+      public Collection<TrashEntry> select(List<TrashEntry> entries)
+      {
+        entries.forEach(e -> seen.add(e.getSize()));
+        return List.of();
+      }
+
+      @Override
+      public boolean needsSizes()
+      {
+        return false;
+      }
+
+    };
+    service.purge(withoutSizes);
+    service.purge(entries -> {
+      entries.forEach(e -> seen.add(e.getSize()));
+      return List.of();
+    });
+    assertEquals(List.of(-1L,
+                         5L),
+                 seen);
+    service.shutdown();
+  }
+
+  @Test
+  void testPurgeCompactsDirectorySizes() throws IOException
+  {
+    LinuxTrashService service = createService();
+    putIntoTrash("purged",
+                 null,
+                 "2000-01-01T00:00:00");
+    putIntoTrash("kept",
+                 null,
+                 LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString());
+    long keptMTime = Files.getLastModifiedTime(folders.getTrashFolder().resolve("info/kept.trashinfo")).toMillis();
+    Path sizes = folders.getTrashFolder().resolve(TrashDirectory.DIRECTORY_SIZES);
+    // a stale line of an earlier item named kept, the line of the purged item and the current line of kept
+    Files.writeString(sizes,
+                      "7 1 kept\n5 1 purged\n5 " + keptMTime + " kept\n");
+    service.purge(TrashPurgePolicy.olderThan(Duration.ofDays(1)));
+    assertEquals(List.of("5 " + keptMTime + " kept"),
+                 Files.readAllLines(sizes));
+    try (Stream<Path> files = Files.list(folders.getTrashFolder())) {
+      // no temporary file is left behind
+      assertEquals(Set.of("files",
+                          "info",
+                          TrashDirectory.DIRECTORY_SIZES),
+                   files.map(p -> p.getFileName().toString()).collect(Collectors.toSet()));
+    }
+    service.shutdown();
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import at.or.reder.platformutils.PlatformFolders;
+import java.nio.file.Path;
+
+/**
+ * PlatformFolders rooted in a test directory, so tests never touch the thumbnail cache or the trash of the user.
+ */
+final class TestFolders implements PlatformFolders {
+
+  private final Path root;
+
+  TestFolders(Path root)
+  {
+    this.root = root;
+  }
+
+  @Override
+  public Path getTrashFolder()
+  {
+    return root.resolve("Trash");
+  }
+
+  @Override
+  public Path getUserHome()
+  {
+    return root;
+  }
+
+  @Override
+  public Path getDownloadsFolder()
+  {
+    return root.resolve("Downloads");
+  }
+
+  @Override
+  public Path getDesktopFolder()
+  {
+    return root.resolve("Desktop");
+  }
+
+  @Override
+  public Path getDokumentsFolder()
+  {
+    return root.resolve("Documents");
+  }
+
+  @Override
+  public Path getPicturesFolder()
+  {
+    return root.resolve("Pictures");
+  }
+
+  @Override
+  public Path getVideosFolder()
+  {
+    return root.resolve("Videos");
+  }
+
+  @Override
+  public Path getMusicFolder()
+  {
+    return root.resolve("Music");
+  }
+
+  @Override
+  public Path getPublicDownloadsFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicDesktopFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicDokumentsFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicPicturesFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicVideosFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getPublicMusicFolder()
+  {
+    return root.resolve("Public");
+  }
+
+  @Override
+  public Path getCacheFolder()
+  {
+    return root.resolve(".cache");
+  }
+
+  @Override
+  public Path getThumbnailFolder()
+  {
+    return getCacheFolder().resolve("thumbnails");
+  }
+
+}
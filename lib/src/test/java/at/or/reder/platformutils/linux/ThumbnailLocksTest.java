@@ -0,0 +1,250 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.ThumbnailService;
+import at.or.reder.platformutils.thumbnails.CancellationToken;
+import at.or.reder.platformutils.thumbnails.ThumbnailBusyException;
+import at.or.reder.platformutils.thumbnails.ThumbnailGenerator;
+import at.or.reder.platformutils.thumbnails.ThumbnailMetaData;
+import at.or.reder.platformutils.thumbnails.ThumbnailSize;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ThumbnailLocksTest {
+
+  @TempDir
+  Path root;
+
+  /**
+   * Paints nothing, but blocks until {@code release} is counted down.
+   */
+  private static final class BlockingGenerator implements ThumbnailGenerator {
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public String getContentType(Path file)
+    {
+      return "application/octet-stream";
+    }
+
+    @Override
+    public Dimension getDimension(Path file)
+    {
+      return new Dimension(10,
+                           10);
+    }
+
+    @Override
+    public BufferedImage paintThumbnail(Path file,
+                                        BufferedImage image,
+                                        ThumbnailMetaData meta) throws IOException
+    {
+      calls.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      return image;
+    }
+
+  }
+
+  private static <T> T await(CompletableFuture<T> future) throws Exception
+  {
+    return future.get(10,
+                      TimeUnit.SECONDS);
+  }
+
+  @Test
+  void testLockFileIsDeletedOnRelease() throws IOException
+  {
+    ThumbnailLocks locks = new ThumbnailLocks();
+    Path lockFile = root.resolve("locks/a.lock");
+    try (ThumbnailLocks.Lock lock = locks.lock(lockFile,
+                                               true,
+                                               CancellationToken.create())) {
+      assertNotNull(lock);
+      assertTrue(Files.exists(lockFile));
+    }
+    assertFalse(Files.exists(lockFile));
+    // the name is free again
+    try (ThumbnailLocks.Lock lock = locks.lock(lockFile,
+                                               false,
+                                               CancellationToken.create())) {
+      assertNotNull(lock);
+    }
+  }
+
+  @Test
+  void testNoWaitGivesUpWhileHeld() throws Exception
+  {
+    ThumbnailLocks locks = new ThumbnailLocks();
+    Path lockFile = root.resolve("a.lock");
+    try (ThumbnailLocks.Lock lock = locks.lock(lockFile,
+                                               true,
+                                               CancellationToken.create())) {
+      assertNull(await(CompletableFuture.supplyAsync(() -> {
+        try {
+          return locks.lock(lockFile,
+                            false,
+                            CancellationToken.create());
+        } catch (IOException ex) {
+          throw new RuntimeException(ex);
+        }
+      })));
+    }
+  }
+
+  @Test
+  void testWaiterGetsLockAfterRelease() throws Exception
+  {
+    ThumbnailLocks locks = new ThumbnailLocks();
+    Path lockFile = root.resolve("a.lock");
+    ThumbnailLocks.Lock first = locks.lock(lockFile,
+                                           true,
+                                           CancellationToken.create());
+    CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+      try (ThumbnailLocks.Lock lock = locks.lock(lockFile,
+                                                 true,
+                                                 CancellationToken.create())) {
+        return lock != null;
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    Thread.sleep(150);
+    assertFalse(waiter.isDone());
+    first.close();
+    assertTrue(await(waiter));
+    assertFalse(Files.exists(lockFile));
+  }
+
+  @Test
+  void testCancelStopsWaiting() throws Exception
+  {
+    ThumbnailLocks locks = new ThumbnailLocks();
+    Path lockFile = root.resolve("a.lock");
+    try (ThumbnailLocks.Lock lock = locks.lock(lockFile,
+                                               true,
+                                               CancellationToken.create())) {
+      CancellationToken token = CancellationToken.create();
+      CompletableFuture<Throwable> waiter = CompletableFuture.supplyAsync(() -> {
+        try {
+          locks.lock(lockFile,
+                     true,
+                     token);
+          return null;
+        } catch (IOException ex) {
+          return ex;
+        }
+      });
+      Thread.sleep(100);
+      token.cancel();
+      assertTrue(await(waiter) instanceof InterruptedIOException);
+    }
+  }
+
+  @Test
+  void testSkipModeReportsBusy() throws Exception
+  {
+    LinuxThumbnailService service = new LinuxThumbnailService(new TestFolders(root));
+    service.setLockMode(ThumbnailService.LockMode.SKIP);
+    Path file = Files.writeString(root.resolve("file.bin"),
+                                  "data");
+    BlockingGenerator generator = new BlockingGenerator();
+    CompletableFuture<Path> first = CompletableFuture.supplyAsync(() -> {
+      try {
+        return service.getThumbnail(file,
+                                    ThumbnailSize.NORMAL,
+                                    generator);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    assertTrue(generator.started.await(10,
+                                       TimeUnit.SECONDS));
+    assertThrows(ThumbnailBusyException.class,
+                 () -> service.getThumbnail(file,
+                                            ThumbnailSize.NORMAL,
+                                            generator));
+    generator.release.countDown();
+    assertTrue(Files.exists(await(first)));
+    assertEquals(1,
+                 generator.calls.get());
+  }
+
+  @Test
+  void testWaitModeGeneratesOnce() throws Exception
+  {
+    LinuxThumbnailService service = new LinuxThumbnailService(new TestFolders(root));
+    service.setLockMode(ThumbnailService.LockMode.WAIT);
+    Path file = Files.writeString(root.resolve("file.bin"),
+                                  "data");
+    BlockingGenerator generator = new BlockingGenerator();
+    CompletableFuture<Path> first = CompletableFuture.supplyAsync(() -> {
+      try {
+        return service.getThumbnail(file,
+                                    ThumbnailSize.NORMAL,
+                                    generator);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    assertTrue(generator.started.await(10,
+                                       TimeUnit.SECONDS));
+    CompletableFuture<Path> second = CompletableFuture.supplyAsync(() -> {
+      try {
+        return service.getThumbnail(file,
+                                    ThumbnailSize.NORMAL,
+                                    generator);
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    Thread.sleep(100);
+    assertFalse(second.isDone());
+    generator.release.countDown();
+    // the waiter takes the thumbnail finished meanwhile
+    assertEquals(await(first),
+                 await(second));
+    assertEquals(1,
+                 generator.calls.get());
+  }
+
+}
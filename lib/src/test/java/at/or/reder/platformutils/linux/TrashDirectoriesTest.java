@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashDirectoriesTest {
+
+  private static final int UID = 4711;
+
+  @TempDir
+  Path root;
+
+  private static void chmod(String mode,
+                            Path path) throws IOException, InterruptedException
+  {
+    Process process = new ProcessBuilder("chmod",
+                                         mode,
+                                         path.toString()).inheritIO().start();
+    assertEquals(0,
+                 process.waitFor());
+  }
+
+  private static String mountLine(Path mountPoint)
+  {
+    return "tmpfs " + mountPoint.toString().replace(" ",
+                                                    "\\040") + " tmpfs rw,nosuid,nodev 0 0\n";
+  }
+
+  @Test
+  void testParseMountPoints()
+  {
+    assertEquals(List.of(Path.of("/"),
+                         Path.of("/media/my disk"),
+                         Path.of("/mnt/a\\b")),
+                 TrashDirectories.parseMountPoints("/dev/sda1 / ext4 rw 0 0\n"
+                                                   + "/dev/sdb1 /media/my\\040disk vfat rw 0 0\n"
+                                                   + "/dev/sdc1 /mnt/a\\134b ext4 rw 0 0\n"
+                                                   + "\n"));
+  }
+
+  @Test
+  void testFindsUserTrashOfMount() throws IOException
+  {
+    Path mount = Files.createDirectories(root.resolve("mnt/usb stick"));
+    Files.createDirectories(mount.resolve(".Trash-" + UID + "/info"));
+    // trash of another user
+    Files.createDirectories(mount.resolve(".Trash-1/info"));
+    Path empty = Files.createDirectories(root.resolve("mnt/empty"));
+    TrashDirectories directories = new TrashDirectories(new TestFolders(root));
+    List<TrashDirectory> trashes = directories.findMountTrashes(mountLine(mount) + mountLine(empty),
+                                                                UID);
+    assertEquals(1,
+                 trashes.size());
+    assertEquals(mount.resolve(".Trash-" + UID),
+                 trashes.get(0).getRoot());
+    assertEquals(mount,
+                 trashes.get(0).getTopDir());
+  }
+
+  @Test
+  void testAdminTrashNeedsStickyBit() throws Exception
+  {
+    Path mount = Files.createDirectories(root.resolve("mnt"));
+    Path adminTrash = Files.createDirectories(mount.resolve(".Trash"));
+    Files.createDirectories(adminTrash.resolve(UID + "/info"));
+    TrashDirectories directories = new TrashDirectories(new TestFolders(root));
+    chmod("1777",
+          adminTrash);
+    assertTrue(directories.isValidAdminTrash(adminTrash));
+    assertEquals(List.of(adminTrash.resolve(Integer.toString(UID))),
+                 directories.findMountTrashes(mountLine(mount),
+                                              UID).stream().map(TrashDirectory::getRoot).toList());
+    chmod("0777",
+          adminTrash);
+    assertFalse(directories.isValidAdminTrash(adminTrash));
+    assertTrue(directories.findMountTrashes(mountLine(mount),
+                                            UID).isEmpty());
+  }
+
+  @Test
+  void testAdminTrashMustNotBeSymlink() throws Exception
+  {
+    Path mount = Files.createDirectories(root.resolve("mnt"));
+    Path target = Files.createDirectories(root.resolve("elsewhere"));
+    chmod("1777",
+          target);
+    Path adminTrash = Files.createSymbolicLink(mount.resolve(".Trash"),
+                                               target);
+    TrashDirectories directories = new TrashDirectories(new TestFolders(root));
+    assertFalse(directories.isValidAdminTrash(adminTrash));
+  }
+
+  @Test
+  void testHomeTrashIsCreatedAndRecreated() throws IOException
+  {
+    TestFolders folders = new TestFolders(root);
+    Path file = Files.writeString(root.resolve("file.txt"),
+                                  "x");
+    TrashDirectories directories = new TrashDirectories(folders);
+    TrashDirectory trash = directories.findTrash(file);
+    assertTrue(trash.isHomeTrash());
+    assertEquals(folders.getTrashFolder(),
+                 trash.getRoot());
+    assertTrue(Files.isDirectory(trash.getInfoDir()));
+    assertTrue(Files.isDirectory(trash.getFilesDir()));
+    assertEquals(List.of(trash.getRoot()),
+                 directories.findExistingTrashes().stream()
+                         .map(TrashDirectory::getRoot)
+                         .filter(p -> p.startsWith(root))
+                         .toList());
+    Files.delete(trash.getInfoDir());
+    directories.invalidate(trash);
+    assertTrue(Files.isDirectory(directories.findTrash(file).getInfoDir()));
+  }
+
+  @Test
+  void testMountTrashStoresRelativePaths()
+  {
+    Path mount = root.resolve("mnt");
+    TrashDirectory trash = new TrashDirectory(mount.resolve(".Trash-" + UID),
+                                              mount);
+    assertEquals("dir/file.txt",
+                 trash.toInfoPath(mount.resolve("dir/file.txt")));
+    assertEquals(mount.resolve("dir/file.txt"),
+                 trash.resolveInfoPath("dir/file.txt"));
+    assertEquals(Path.of("/abs/file.txt"),
+                 trash.resolveInfoPath("/abs/file.txt"));
+    TrashDirectory home = new TrashDirectory(root.resolve("Trash"),
+                                             null);
+    assertEquals(mount.resolve("dir/file.txt").toString(),
+                 home.toInfoPath(mount.resolve("dir/file.txt")));
+  }
+
+}
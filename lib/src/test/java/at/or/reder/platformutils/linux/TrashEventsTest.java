@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashEventsTest {
+
+  @TempDir
+  Path root;
+
+  private LinuxTrashService createService() throws IOException
+  {
+    TestFolders folders = new TestFolders(root);
+    Path mounts = Files.writeString(root.resolve("mounts"),
+                                    "");
+    return new LinuxTrashService(folders,
+                                 new TrashDirectories(folders,
+                                                      mounts));
+  }
+
+  /**
+   * @return the events of the recording by name, each list in the order of recording
+   */
+  private Map<String, List<RecordedEvent>> record(LinuxTrashService service,
+                                                  Path... files) throws IOException
+  {
+    Path dump = root.resolve("events.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(TrashEvents.Operation.class);
+      recording.enable(TrashEvents.Validate.class);
+      recording.enable(TrashEvents.Move.class);
+      recording.start();
+      for (Path file : files) {
+        service.moveToTrash(file);
+      }
+      recording.stop();
+      recording.dump(dump);
+    }
+    return RecordingFile.readAllEvents(dump).stream()
+            .filter(e -> e.getEventType().getName().startsWith("at.or.reder.platformutils."))
+            .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+            .collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+  }
+
+  @Test
+  void testValidateRecordsItsOwnResult() throws IOException
+  {
+    LinuxTrashService service = createService();
+    try {
+      Path file = Files.writeString(root.resolve("file"),
+                                    "abc");
+      Map<String, List<RecordedEvent>> events = record(service,
+                                                       file,
+                                                       root.resolve("missing"));
+      List<RecordedEvent> validations = events.get("at.or.reder.platformutils.TrashValidate");
+      assertEquals(2,
+                   validations.size());
+      assertEquals(TrashEvents.VALID,
+                   validations.get(0).getString("result"));
+      assertEquals("NOT_FOUND",
+                   validations.get(1).getString("result"));
+      List<RecordedEvent> operations = events.get("at.or.reder.platformutils.Trash");
+      assertEquals(2,
+                   operations.size());
+      assertEquals(file.toString(),
+                   operations.get(0).getString("path"));
+      assertEquals("SUCCESS",
+                   operations.get(0).getString("outcome"));
+      assertEquals("NOT_FOUND",
+                   operations.get(1).getString("outcome"));
+      // the phases are enclosed by the operation
+      RecordedEvent move = events.get("at.or.reder.platformutils.TrashMove").get(0);
+      assertFalse(move.getStartTime().isBefore(operations.get(0).getStartTime()));
+      assertFalse(move.getEndTime().isAfter(operations.get(0).getEndTime()));
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void testStatistics() throws IOException
+  {
+    LinuxTrashService service = createService();
+    try {
+      long trashed = TrashStatistics.INSTANCE.getTrashed();
+      long failed = TrashStatistics.INSTANCE.getFailed();
+      long renamed = TrashStatistics.INSTANCE.getRenamed();
+      assertTrue(service.moveToTrash(Files.writeString(root.resolve("file"),
+                                                       "abc")));
+      assertFalse(service.moveToTrash(root.resolve("missing")));
+      // other tests may trash concurrently
+      assertTrue(TrashStatistics.INSTANCE.getTrashed() >= trashed + 1);
+      assertTrue(TrashStatistics.INSTANCE.getFailed() >= failed + 1);
+      assertTrue(TrashStatistics.INSTANCE.getRenamed() >= renamed + 1);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+}
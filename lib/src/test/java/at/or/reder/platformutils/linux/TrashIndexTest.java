@@ -0,0 +1,293 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashIndexTest {
+
+  @TempDir
+  Path root;
+
+  private TrashDirectory createTrash() throws IOException
+  {
+    TrashDirectory trash = new TrashDirectory(root.resolve("Trash"),
+                                              null);
+    trash.ensureExists();
+    return trash;
+  }
+
+  private static Path put(TrashDirectory trash,
+                          String trashName,
+                          String originalPath,
+                          String deletionDate) throws IOException
+  {
+    Files.writeString(trash.getFilesDir().resolve(trashName),
+                      "x");
+    return Files.writeString(trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX),
+                             "[Trash Info]\nPath=" + originalPath + "\nDeletionDate=" + deletionDate + "\n");
+  }
+
+  private static Set<String> names(List<TrashEntry> entries)
+  {
+    return entries.stream().map(TrashEntry::getTrashName).collect(Collectors.toSet());
+  }
+
+  private static LocalDateTime date(int day)
+  {
+    return LocalDateTime.of(2024,
+                            5,
+                            day,
+                            0,
+                            0);
+  }
+
+  @Test
+  void testQueryByPrefix() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    put(trash,
+        "b",
+        "/home/user/b",
+        "2024-05-01T10:00:00");
+    put(trash,
+        "c",
+        "/home/user/b/c",
+        "2024-05-02T10:00:00");
+    put(trash,
+        "d",
+        "/home/user/b/x/d",
+        "2024-05-03T10:00:00");
+    put(trash,
+        "bc",
+        "/home/user/bc",
+        "2024-05-04T10:00:00");
+    TrashIndex index = new TrashIndex(trash,
+                                      null,
+                                      () -> {
+                                      });
+    assertEquals(Set.of("b",
+                        "c",
+                        "d"),
+                 names(index.query(Path.of("/home/user/b"),
+                                   null,
+                                   null)));
+    assertEquals(Set.of("c",
+                        "d"),
+                 names(index.query(Path.of("/home/user/b"),
+                                   date(2),
+                                   null)));
+    assertEquals(4,
+                 index.query(null,
+                             null,
+                             null).size());
+    index.close();
+  }
+
+  @Test
+  void testQueryByDate() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    put(trash,
+        "a",
+        "/a",
+        "2024-05-01T10:00:00");
+    put(trash,
+        "b",
+        "/b",
+        "2024-05-02T10:00:00");
+    put(trash,
+        "c",
+        "/c",
+        "2024-05-03T10:00:00");
+    put(trash,
+        "unknown",
+        "/u",
+        "never");
+    TrashIndex index = new TrashIndex(trash,
+                                      null,
+                                      () -> {
+                                      });
+    // from inclusive, to exclusive
+    assertEquals(Set.of("b"),
+                 names(index.query(null,
+                                   LocalDateTime.of(2024,
+                                                    5,
+                                                    2,
+                                                    10,
+                                                    0),
+                                   date(3))));
+    assertEquals(Set.of("b",
+                        "c"),
+                 names(index.query(null,
+                                   date(2),
+                                   null)));
+    assertEquals(Set.of("a"),
+                 names(index.query(null,
+                                   null,
+                                   date(2))));
+    index.close();
+  }
+
+  @Test
+  void testFindLatest() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    put(trash,
+        "a",
+        "/home/user/a",
+        "2024-05-01T10:00:00");
+    put(trash,
+        "a.2",
+        "/home/user/a",
+        "2024-05-03T10:00:00");
+    put(trash,
+        "a.3",
+        "/home/user/a",
+        "2024-05-02T10:00:00");
+    TrashIndex index = new TrashIndex(trash,
+                                      null,
+                                      () -> {
+                                      });
+    assertEquals("a.2",
+                 index.findLatest(Path.of("/home/user/a")).get().getTrashName());
+    index.removed("a.2");
+    assertEquals("a.3",
+                 index.findLatest(Path.of("/home/user/a")).get().getTrashName());
+    assertFalse(index.findLatest(Path.of("/home/user/b")).isPresent());
+    index.close();
+  }
+
+  @Test
+  void testPersistedOnCloseOnly() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    put(trash,
+        "a",
+        "/home/user/a",
+        "2024-05-01T10:00:00");
+    Path cacheFile = root.resolve("cache/trash.idx");
+    TrashIndex index = new TrashIndex(trash,
+                                      cacheFile,
+                                      () -> {
+                                      });
+    assertEquals(1,
+                 index.query(null,
+                             null,
+                             null).size());
+    // queries never write
+    assertFalse(Files.exists(cacheFile));
+    index.close();
+    assertTrue(Files.exists(cacheFile));
+  }
+
+  @Test
+  void testLoadUsesCacheForUnchangedInfoFiles() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    Path unchanged = put(trash,
+                         "a",
+                         "/home/user/a",
+                         "2024-05-01T10:00:00");
+    Path changed = put(trash,
+                       "b",
+                       "/home/user/b",
+                       "2024-05-01T10:00:00");
+    Files.setLastModifiedTime(unchanged,
+                              FileTime.fromMillis(1_700_000_000_000L));
+    Files.setLastModifiedTime(changed,
+                              FileTime.fromMillis(1_700_000_000_000L));
+    Path cacheFile = root.resolve("cache/trash.idx");
+    TrashIndex index = new TrashIndex(trash,
+                                      cacheFile,
+                                      () -> {
+                                      });
+    index.sync();
+    index.close();
+    // only a stat for unchanged info files: a path changed in the cache alone is returned as it is
+    Files.writeString(cacheFile,
+                      Files.readString(cacheFile).replace("/home/user/a",
+                                                          "/from/cache"));
+    Files.writeString(changed,
+                      "[Trash Info]\nPath=/home/user/b2\nDeletionDate=2024-05-01T10:00:00\n");
+    Files.setLastModifiedTime(changed,
+                              FileTime.fromMillis(1_700_000_001_000L));
+    TrashIndex reloaded = new TrashIndex(trash,
+                                         cacheFile,
+                                         () -> {
+                                         });
+    assertEquals(Set.of(Path.of("/from/cache"),
+                        Path.of("/home/user/b2")),
+                 reloaded.query(null,
+                                null,
+                                null).stream().map(TrashEntry::getOriginalPath).collect(Collectors.toSet()));
+    reloaded.close();
+  }
+
+  @Test
+  void testExternalChangeIsReported() throws IOException, InterruptedException
+  {
+    TrashDirectory trash = createTrash();
+    AtomicInteger external = new AtomicInteger();
+    TrashIndex index = new TrashIndex(trash,
+                                      null,
+                                      external::incrementAndGet);
+    index.sync();
+    // an entry added by the service itself is no news
+    put(trash,
+        "own",
+        "/home/user/own",
+        "2024-05-01T10:00:00");
+    index.added(new TrashEntry("own",
+                               Path.of("/home/user/own"),
+                               date(1),
+                               trash.getFilesDir().resolve("own"),
+                               1));
+    put(trash,
+        "other",
+        "/home/user/other",
+        "2024-05-01T10:00:00");
+    // the watch service may report the change with a delay
+    for (int i = 0; i < 50 && external.get() == 0; ++i) {
+      Thread.sleep(100);
+      index.sync();
+    }
+    assertEquals(1,
+                 external.get());
+    assertEquals(Set.of("own",
+                        "other"),
+                 names(index.query(null,
+                                   null,
+                                   null)));
+    index.close();
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashInfoReaderTest {
+
+  @TempDir
+  Path root;
+
+  private TrashDirectory createTrash(Path topDir) throws IOException
+  {
+    TrashDirectory trash = new TrashDirectory(root.resolve("Trash"),
+                                              topDir);
+    trash.ensureExists();
+    return trash;
+  }
+
+  private static Path writeInfo(TrashDirectory trash,
+                                String trashName,
+                                String content) throws IOException
+  {
+    return Files.writeString(trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX),
+                             content);
+  }
+
+  @Test
+  void testGetTrashName()
+  {
+    assertEquals("a b",
+                 TrashInfoReader.getTrashName(Path.of("/t/info/a b.trashinfo")));
+    assertNull(TrashInfoReader.getTrashName(Path.of("/t/info/.trashinfo")));
+    assertNull(TrashInfoReader.getTrashName(Path.of("/t/info/a.txt")));
+  }
+
+  @Test
+  void testRead() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    Path infoFile = writeInfo(trash,
+                              "a b",
+                              "[Trash Info]\nPath=/home/user/a%20b\nDeletionDate=2024-05-01T10:20:30\n");
+    TrashEntry entry = new TrashInfoReader().read(trash,
+                                                  infoFile);
+    assertEquals("a b",
+                 entry.getTrashName());
+    assertEquals(Path.of("/home/user/a b"),
+                 entry.getOriginalPath());
+    assertEquals(LocalDateTime.of(2024,
+                                  5,
+                                  1,
+                                  10,
+                                  20,
+                                  30),
+                 entry.getDeletionDate());
+    assertEquals(trash.getFilesDir().resolve("a b"),
+                 entry.getTrashedFile());
+    assertEquals(-1L,
+                 entry.getSize());
+  }
+
+  @Test
+  void testReadIgnoresOtherGroupsAndBadDate() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    Path infoFile = writeInfo(trash,
+                              "a",
+                              "[Other]\nPath=/wrong\n[Trash Info]\nPath=/right\nDeletionDate=yesterday\n");
+    TrashEntry entry = new TrashInfoReader().read(trash,
+                                                  infoFile);
+    assertEquals(Path.of("/right"),
+                 entry.getOriginalPath());
+    assertNull(entry.getDeletionDate());
+  }
+
+  @Test
+  void testReadWithoutPath() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    Path infoFile = writeInfo(trash,
+                              "a",
+                              "[Trash Info]\nDeletionDate=2024-05-01T10:20:30\n");
+    assertNull(new TrashInfoReader().read(trash,
+                                          infoFile));
+  }
+
+  @Test
+  void testReadRelativeToTopDir() throws IOException
+  {
+    Path topDir = root.resolve("mnt");
+    TrashDirectory trash = createTrash(topDir);
+    Path infoFile = writeInfo(trash,
+                              "a",
+                              "[Trash Info]\nPath=dir/a\nDeletionDate=2024-05-01T10:20:30\n");
+    assertEquals(topDir.resolve("dir/a"),
+                 new TrashInfoReader().read(trash,
+                                            infoFile).getOriginalPath());
+  }
+
+  @Test
+  void testReadLongPath() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    String path = "/" + "x".repeat(5000);
+    Path infoFile = writeInfo(trash,
+                              "a",
+                              "[Trash Info]\nPath=" + path + "\nDeletionDate=2024-05-01T10:20:30\n");
+    assertEquals(Path.of(path),
+                 new TrashInfoReader().read(trash,
+                                            infoFile).getOriginalPath());
+  }
+
+  @Test
+  void testReadDirectorySizesLastLineWins() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    assertTrue(TrashInfoReader.readDirectorySizes(trash).isEmpty());
+    Files.createDirectory(trash.getFilesDir().resolve("a b"));
+    Path infoFile = writeInfo(trash,
+                              "a b",
+                              "[Trash Info]\nPath=/home/user/a%20b\n");
+    Files.setLastModifiedTime(infoFile,
+                              FileTime.fromMillis(2000));
+    Files.writeString(trash.getDirectorySizesFile(),
+                      "10 2000 a%20b\n20 2000 a%20b\nbroken\nx 1 c\n");
+    Map<String, TrashInfoReader.DirectorySize> sizes = TrashInfoReader.readDirectorySizes(trash);
+    assertEquals(1,
+                 sizes.size());
+    assertEquals(20L,
+                 new TrashInfoReader().read(trash,
+                                            infoFile,
+                                            sizes).getSize());
+  }
+
+  @Test
+  void testDirectorySizeOnlyUsedIfMTimeMatches() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    Files.createDirectory(trash.getFilesDir().resolve("dir"));
+    Path infoFile = writeInfo(trash,
+                              "dir",
+                              "[Trash Info]\nPath=/home/user/dir\nDeletionDate=2024-05-01T10:20:30\n");
+    Files.setLastModifiedTime(infoFile,
+                              FileTime.fromMillis(1_700_000_000_000L));
+    Files.writeString(trash.getDirectorySizesFile(),
+                      "4711 1700000000000 dir\n");
+    TrashInfoReader reader = new TrashInfoReader();
+    assertEquals(4711L,
+                 reader.read(trash,
+                             infoFile,
+                             TrashInfoReader.readDirectorySizes(trash)).getSize());
+    // a line left over from an earlier item of the same name
+    Files.setLastModifiedTime(infoFile,
+                              FileTime.fromMillis(1_700_000_001_000L));
+    assertEquals(-1L,
+                 reader.read(trash,
+                             infoFile,
+                             TrashInfoReader.readDirectorySizes(trash)).getSize());
+  }
+
+  @Test
+  void testSizeOfFileAndMissingItem() throws IOException
+  {
+    TrashDirectory trash = createTrash(null);
+    Files.writeString(trash.getFilesDir().resolve("f"),
+                      "12345");
+    Path infoFile = writeInfo(trash,
+                              "f",
+                              "[Trash Info]\nPath=/home/user/f\n");
+    Path orphan = writeInfo(trash,
+                            "gone",
+                            "[Trash Info]\nPath=/home/user/gone\n");
+    TrashInfoReader reader = new TrashInfoReader();
+    assertEquals(5L,
+                 reader.read(trash,
+                             infoFile,
+                             Map.of()).getSize());
+    assertNull(reader.read(trash,
+                           orphan,
+                           Map.of()));
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashEntry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashListingTest {
+
+  @TempDir
+  Path root;
+
+  private TrashDirectory createTrash(String name) throws IOException
+  {
+    TrashDirectory trash = new TrashDirectory(root.resolve(name),
+                                              null);
+    trash.ensureExists();
+    return trash;
+  }
+
+  private static void trashFile(TrashDirectory trash,
+                                String trashName,
+                                String content) throws IOException
+  {
+    Files.writeString(trash.getFilesDir().resolve(trashName),
+                      content);
+    writeInfo(trash,
+              trashName);
+  }
+
+  private static Path writeInfo(TrashDirectory trash,
+                                String trashName) throws IOException
+  {
+    return Files.writeString(trash.getInfoDir().resolve(trashName + TrashInfoReader.INFO_SUFFIX),
+                             "[Trash Info]\nPath=/home/user/" + trashName + "\nDeletionDate=2024-05-01T10:20:30\n");
+  }
+
+  private static Map<String, TrashEntry> list(List<TrashDirectory> trashes,
+                                              boolean parallel)
+  {
+    try (Stream<TrashEntry> stream = TrashListing.stream(trashes)) {
+      return (parallel ? stream.parallel() : stream).collect(Collectors.toMap(e -> e.getTrashedFile().toString(),
+                                                                            Function.identity()));
+    }
+  }
+
+  @Test
+  void testListsAllTrashes() throws IOException
+  {
+    TrashDirectory first = createTrash("first");
+    TrashDirectory second = createTrash("second");
+    trashFile(first,
+              "a",
+              "1");
+    trashFile(first,
+              "b",
+              "22");
+    trashFile(second,
+              "a",
+              "333");
+    Map<String, TrashEntry> entries = list(List.of(first,
+                                                   second),
+                                           false);
+    assertEquals(Set.of(first.getFilesDir().resolve("a").toString(),
+                        first.getFilesDir().resolve("b").toString(),
+                        second.getFilesDir().resolve("a").toString()),
+                 entries.keySet());
+    assertEquals(3L,
+                 entries.get(second.getFilesDir().resolve("a").toString()).getSize());
+    assertEquals(Path.of("/home/user/b"),
+                 entries.get(first.getFilesDir().resolve("b").toString()).getOriginalPath());
+  }
+
+  @Test
+  void testSkipsInvalidAndOrphanedInfoFiles() throws IOException
+  {
+    TrashDirectory trash = createTrash("Trash");
+    trashFile(trash,
+              "good",
+              "x");
+    writeInfo(trash,
+              "orphan");
+    Files.writeString(trash.getFilesDir().resolve("broken"),
+                      "x");
+    Files.writeString(trash.getInfoDir().resolve("broken" + TrashInfoReader.INFO_SUFFIX),
+                      "no trash info");
+    Files.writeString(trash.getInfoDir().resolve("not-an-info-file"),
+                      "");
+    assertEquals(Set.of(trash.getFilesDir().resolve("good").toString()),
+                 list(List.of(trash),
+                      false).keySet());
+  }
+
+  @Test
+  void testMissingInfoDirIsSkipped() throws IOException
+  {
+    TrashDirectory missing = new TrashDirectory(root.resolve("missing"),
+                                                null);
+    TrashDirectory trash = createTrash("Trash");
+    trashFile(trash,
+              "a",
+              "x");
+    assertEquals(1,
+                 list(List.of(missing,
+                              trash),
+                      false).size());
+  }
+
+  @Test
+  void testDirectorySizesFromCache() throws IOException
+  {
+    TrashDirectory trash = createTrash("Trash");
+    Files.createDirectory(trash.getFilesDir().resolve("cached"));
+    Files.createDirectory(trash.getFilesDir().resolve("unknown"));
+    Path info = writeInfo(trash,
+                          "cached");
+    writeInfo(trash,
+              "unknown");
+    Files.setLastModifiedTime(info,
+                              FileTime.fromMillis(1_700_000_000_000L));
+    Files.writeString(trash.getDirectorySizesFile(),
+                      "4711 1700000000000 cached\n");
+    Map<String, TrashEntry> entries = list(List.of(trash),
+                                           false);
+    assertEquals(4711L,
+                 entries.get(trash.getFilesDir().resolve("cached").toString()).getSize());
+    // never walked by the listing
+    assertEquals(-1L,
+                 entries.get(trash.getFilesDir().resolve("unknown").toString()).getSize());
+  }
+
+  @Test
+  void testParallelStreamReadsEverything() throws IOException
+  {
+    TrashDirectory first = createTrash("first");
+    TrashDirectory second = createTrash("second");
+    for (int i = 0; i < 500; ++i) {
+      trashFile(i % 2 == 0 ? first : second,
+                "f" + i,
+                "x".repeat(i));
+    }
+    Map<String, TrashEntry> sequential = list(List.of(first,
+                                                      second),
+                                              false);
+    Map<String, TrashEntry> parallel = list(List.of(first,
+                                                    second),
+                                            true);
+    assertEquals(500,
+                 parallel.size());
+    assertEquals(sequential.keySet(),
+                 parallel.keySet());
+    assertTrue(parallel.values().stream().allMatch(e -> e.getSize() == Integer.parseInt(e.getTrashName().substring(1))));
+  }
+
+  @Test
+  void testServiceListing() throws IOException
+  {
+    TestFolders folders = new TestFolders(root);
+    LinuxTrashService service = new LinuxTrashService(folders,
+                                                      new TrashDirectories(folders,
+                                                                           Files.writeString(root.resolve("mounts"),
+                                                                                             "")));
+    Path file = Files.writeString(root.resolve("file.txt"),
+                                  "abc");
+    service.moveToTrash(file);
+    try (Stream<TrashEntry> entries = service.listTrash()) {
+      List<TrashEntry> list = entries.toList();
+      assertEquals(1,
+                   list.size());
+      assertEquals(file,
+                   list.get(0).getOriginalPath());
+      assertEquals(3L,
+                   list.get(0).getSize());
+    }
+    service.shutdown();
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashNameAllocatorTest {
+
+  @TempDir
+  Path root;
+
+  private TrashDirectory createTrash() throws IOException
+  {
+    TrashDirectory trash = new TrashDirectory(root.resolve("Trash"),
+                                              null);
+    trash.ensureExists();
+    return trash;
+  }
+
+  private static String allocate(TrashNameAllocator allocator,
+                                 String name) throws IOException
+  {
+    try (TrashContext context = allocator.allocate(name)) {
+      context.setSuccess(true);
+      return context.getNewDataFile().getFileName().toString();
+    }
+  }
+
+  @Test
+  void testUniqueNameIsKept() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    TrashNameAllocator allocator = new TrashNameAllocator(trash);
+    assertEquals("file.txt",
+                 allocate(allocator,
+                          "file.txt"));
+    assertTrue(Files.exists(trash.getInfoDir().resolve("file.txt.trashinfo")));
+  }
+
+  @Test
+  void testCollisionsAreNumbered() throws IOException
+  {
+    TrashNameAllocator allocator = new TrashNameAllocator(createTrash());
+    assertEquals("a",
+                 allocate(allocator,
+                          "a"));
+    assertEquals("a_1",
+                 allocate(allocator,
+                          "a"));
+    assertEquals("a_2",
+                 allocate(allocator,
+                          "a"));
+  }
+
+  @Test
+  void testCounterSeededFromInfoDir() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    for (String name : List.of("a",
+                               "a_3",
+                               "a_17",
+                               "a_007",
+                               "a_x",
+                               "b_5")) {
+      Files.createFile(trash.getInfoDir().resolve(name + TrashInfoReader.INFO_SUFFIX));
+    }
+    TrashNameAllocator allocator = new TrashNameAllocator(trash);
+    // leading zeros and non numeric suffixes are no counters
+    assertEquals("a_18",
+                 allocate(allocator,
+                          "a"));
+    // b itself is free
+    assertEquals("b",
+                 allocate(allocator,
+                          "b"));
+    assertEquals("b_6",
+                 allocate(allocator,
+                          "b"));
+  }
+
+  @Test
+  void testNameTakenByOtherProcessIsSkipped() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    TrashNameAllocator allocator = new TrashNameAllocator(trash);
+    assertEquals("a",
+                 allocate(allocator,
+                          "a"));
+    assertEquals("a_1",
+                 allocate(allocator,
+                          "a"));
+    Files.createFile(trash.getInfoDir().resolve("a_2" + TrashInfoReader.INFO_SUFFIX));
+    assertEquals("a_3",
+                 allocate(allocator,
+                          "a"));
+  }
+
+  @Test
+  void testFailedContextRemovesInfoFile() throws IOException
+  {
+    TrashDirectory trash = createTrash();
+    TrashNameAllocator allocator = new TrashNameAllocator(trash);
+    try (TrashContext context = allocator.allocate("a")) {
+      assertTrue(Files.exists(context.getInfoFile()));
+    }
+    assertFalse(Files.exists(trash.getInfoDir().resolve("a" + TrashInfoReader.INFO_SUFFIX)));
+  }
+
+  @Test
+  void testConcurrentAllocationsAreUnique() throws Exception
+  {
+    TrashNameAllocator allocator = new TrashNameAllocator(createTrash());
+    Set<String> names = ConcurrentHashMap.newKeySet();
+    List<Future<?>> futures = new ArrayList<>();
+    try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+      for (int i = 0; i < 200; ++i) {
+        futures.add(executor.submit(() -> {
+          names.add(allocate(allocator,
+                             "same"));
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    }
+    assertEquals(200,
+                 names.size());
+    Set<String> expected = new HashSet<>();
+    expected.add("same");
+    for (int i = 1; i < 200; ++i) {
+      expected.add("same_" + i);
+    }
+    assertEquals(expected,
+                 names);
+  }
+
+}
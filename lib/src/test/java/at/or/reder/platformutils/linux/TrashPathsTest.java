@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class TrashPathsTest {
+
+  @Test
+  void testEncodeKeepsSlashesAndUnreserved()
+  {
+    assertEquals("/home/user/a-b_c.d~e",
+                 TrashPaths.encode("/home/user/a-b_c.d~e"));
+  }
+
+  @Test
+  void testEncodeEscapesBlankPlusAndPercent()
+  {
+    assertEquals("/tmp/a%20b%2Bc%25d",
+                 TrashPaths.encode("/tmp/a b+c%d"));
+  }
+
+  @Test
+  void testEncodeUsesUtf8()
+  {
+    assertEquals("/tmp/%C3%A4%E2%82%AC",
+                 TrashPaths.encode("/tmp/ä€"));
+  }
+
+  @Test
+  void testDecodeRoundTrip()
+  {
+    String path = "/home/user/Bilder/Urlaub 2024/ä ö+ü%.jpg";
+    assertEquals(path,
+                 TrashPaths.decode(TrashPaths.encode(path)));
+  }
+
+  @Test
+  void testDecodeKeepsPlus()
+  {
+    assertEquals("/tmp/a+b",
+                 TrashPaths.decode("/tmp/a+b"));
+  }
+
+  @Test
+  void testDecodeLowerCaseHex()
+  {
+    assertEquals("/tmp/a/b",
+                 TrashPaths.decode("/tmp/a%2fb"));
+    assertEquals("/tmp/ä",
+                 TrashPaths.decode("/tmp/%c3%a4"));
+  }
+
+  @Test
+  void testDecodeMalformedTakenLiterally()
+  {
+    assertEquals("/tmp/100%",
+                 TrashPaths.decode("/tmp/100%"));
+    assertEquals("/tmp/%zz",
+                 TrashPaths.decode("/tmp/%zz"));
+    assertEquals("/tmp/%4",
+                 TrashPaths.decode("/tmp/%4"));
+  }
+
+}
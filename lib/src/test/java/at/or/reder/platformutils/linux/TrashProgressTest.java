@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.TrashProgressListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashProgressTest {
+
+  @TempDir
+  Path root;
+
+  private LinuxTrashService createService() throws IOException
+  {
+    TestFolders folders = new TestFolders(root);
+    Path mounts = Files.writeString(root.resolve("mounts"),
+                                    "");
+    return new LinuxTrashService(folders,
+                                 new TrashDirectories(folders,
+                                                      mounts));
+  }
+
+  @Test
+  void testNoneIsNeverCancelled()
+  {
+    TrashProgress progress = TrashProgress.none();
+    progress.bytesDone(10);
+    progress.fileDone();
+    progress.checkCancelled();
+  }
+
+  @Test
+  void testCheckCancelled()
+  {
+    AtomicBoolean cancelled = new AtomicBoolean();
+    TrashProgress progress = new TrashProgress(null,
+                                               cancelled::get);
+    progress.checkCancelled();
+    cancelled.set(true);
+    assertThrows(CancellationException.class,
+                 progress::checkCancelled);
+  }
+
+  @Test
+  void testConcurrentUpdatesAreReportedInOrder() throws InterruptedException
+  {
+    List<long[]> reports = new CopyOnWriteArrayList<>();
+    AtomicInteger concurrent = new AtomicInteger();
+    AtomicBoolean overlapped = new AtomicBoolean();
+    TrashProgressListener listener = (bytes, files) -> {
+      if (concurrent.incrementAndGet() > 1) {
+        overlapped.set(true);
+      }
+      reports.add(new long[]{bytes, files});
+      concurrent.decrementAndGet();
+    };
+    TrashProgress progress = new TrashProgress(listener,
+                                               () -> false);
+    int threads = 8;
+    int updates = 1000;
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; ++t) {
+      workers[t] = Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          return;
+        }
+        for (int i = 0; i < updates; ++i) {
+          progress.bytesDone(3);
+          progress.fileDone();
+        }
+      });
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertFalse(overlapped.get());
+    long[] last = {0, 0};
+    for (long[] report : reports) {
+      assertTrue(report[0] >= last[0] && report[1] >= last[1]);
+      last = report;
+    }
+    // the final values are never lost
+    assertEquals(3L * threads * updates,
+                 last[0]);
+    assertEquals((long) threads * updates,
+                 last[1]);
+  }
+
+  @Test
+  void testMoveToTrashAsyncReportsProgress() throws IOException, InterruptedException, ExecutionException,
+                                                    TimeoutException
+  {
+    LinuxTrashService service = createService();
+    try {
+      Path file = Files.writeString(root.resolve("file"),
+                                    "0123456789");
+      List<long[]> reports = new CopyOnWriteArrayList<>();
+      TrashProgressListener listener = (bytes, files) -> reports.add(new long[]{bytes, files});
+      CompletableFuture<Boolean> result = service.moveToTrashAsync(file,
+                                                                   listener);
+      assertTrue(result.get(10,
+                            TimeUnit.SECONDS));
+      assertFalse(Files.exists(file));
+      long[] last = reports.get(reports.size() - 1);
+      assertEquals(10L,
+                   last[0]);
+      assertEquals(1L,
+                   last[1]);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void testMoveToTrashAsyncMissingFile() throws IOException, InterruptedException, ExecutionException,
+                                                TimeoutException
+  {
+    LinuxTrashService service = createService();
+    try {
+      assertFalse(service.moveToTrashAsync(root.resolve("missing"),
+                                           (bytes, files) -> {
+                                           }).get(10,
+                                                  TimeUnit.SECONDS));
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void testCancelledCopyIsRolledBack() throws IOException
+  {
+    Path source = Files.createDirectories(root.resolve("source"));
+    for (int i = 0; i < 20; ++i) {
+      Files.writeString(source.resolve("f" + i),
+                        "0123456789");
+    }
+    Path target = root.resolve("target");
+    AtomicBoolean cancelled = new AtomicBoolean();
+    // cancel as soon as the first file has been copied
+    TrashProgress progress = new TrashProgress((bytes, files) -> cancelled.set(files > 0),
+                                               cancelled::get);
+    try (ForkJoinPool pool = new ForkJoinPool(2)) {
+      CrossDeviceMover mover = new CrossDeviceMover(pool);
+      assertThrows(CancellationException.class,
+                   () -> mover.copy(source,
+                                    target,
+                                    progress));
+    }
+    assertFalse(Files.exists(target));
+    try (var files = Files.list(source)) {
+      assertEquals(20L,
+                   files.count());
+    }
+  }
+
+}
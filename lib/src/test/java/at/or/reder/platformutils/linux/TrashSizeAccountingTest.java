@@ -0,0 +1,172 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import at.or.reder.platformutils.TrashEntry;
+import at.or.reder.platformutils.TrashPurgePolicy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrashSizeAccountingTest {
+
+  @TempDir
+  Path root;
+
+  private static TrashEntry entry(String name,
+                                  long size)
+  {
+    return new TrashEntry(name,
+                          Path.of("/home/user").resolve(name),
+                          null,
+                          Path.of("/t/files").resolve(name),
+                          size);
+  }
+
+  private LinuxTrashService createService() throws IOException
+  {
+    TestFolders folders = new TestFolders(root);
+    Path mounts = Files.writeString(root.resolve("mounts"),
+                                    "");
+    return new LinuxTrashService(folders,
+                                 new TrashDirectories(folders,
+                                                      mounts));
+  }
+
+  private Path createFile(String name,
+                          String content) throws IOException
+  {
+    Path file = root.resolve("data").resolve(name);
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file,
+                             content);
+  }
+
+  @Test
+  void testLoadOnceThenAdjust()
+  {
+    TrashSizeAccounting accounting = new TrashSizeAccounting();
+    AtomicInteger loads = new AtomicInteger();
+    assertEquals(30L,
+                 accounting.getTotal(() -> {
+                   loads.incrementAndGet();
+                   // unknown sizes count as 0
+                   return Stream.of(entry("a",
+                                          10),
+                                    entry("b",
+                                          20),
+                                    entry("c",
+                                          -1));
+                 }));
+    accounting.set(Path.of("/t/files/d"),
+                   5);
+    accounting.update(Path.of("/t/files/c"),
+                      7);
+    accounting.remove(Path.of("/t/files/a"));
+    // neither in the trash
+    accounting.update(Path.of("/t/files/x"),
+                      100);
+    accounting.remove(Path.of("/t/files/y"));
+    assertEquals(32L,
+                 accounting.getTotal(() -> {
+                   loads.incrementAndGet();
+                   return Stream.empty();
+                 }));
+    assertEquals(1,
+                 loads.get());
+  }
+
+  @Test
+  void testInvalidateLoadsAgain()
+  {
+    TrashSizeAccounting accounting = new TrashSizeAccounting();
+    assertEquals(10L,
+                 accounting.getTotal(() -> Stream.of(entry("a",
+                                                           10))));
+    accounting.invalidate();
+    assertEquals(3L,
+                 accounting.getTotal(() -> Stream.of(entry("b",
+                                                           3))));
+  }
+
+  @Test
+  void testSetBeforeLoadIsNotCountedTwice()
+  {
+    TrashSizeAccounting accounting = new TrashSizeAccounting();
+    accounting.set(Path.of("/t/files/a"),
+                   10);
+    assertEquals(10L,
+                 accounting.getTotal(() -> Stream.of(entry("a",
+                                                           10))));
+  }
+
+  @Test
+  void testServiceTotal() throws IOException
+  {
+    LinuxTrashService service = createService();
+    try {
+      service.moveToTrash(createFile("file",
+                                     "0123456789"));
+      Path dir = root.resolve("data/dir");
+      Files.createDirectories(dir.resolve("sub"));
+      Files.writeString(dir.resolve("sub/file"),
+                        "12345");
+      service.moveToTrash(dir);
+      assertEquals(15L,
+                   service.getTrashSize());
+      service.purge(TrashPurgePolicy.all());
+      assertEquals(0L,
+                   service.getTrashSize());
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void testExternalChangeIsDetected() throws IOException, InterruptedException
+  {
+    LinuxTrashService service = createService();
+    try {
+      service.moveToTrash(createFile("file",
+                                     "0123456789"));
+      assertEquals(10L,
+                   service.getTrashSize());
+      // another program trashes a file
+      Path trash = new TestFolders(root).getTrashFolder();
+      Files.writeString(trash.resolve("files/other"),
+                        "abc");
+      Files.writeString(trash.resolve("info/other" + TrashInfoReader.INFO_SUFFIX),
+                        "[Trash Info]\nPath=/home/user/other\nDeletionDate=2024-05-01T10:20:30\n");
+      long total = service.getTrashSize();
+      // the watch service may report the change with a delay
+      for (int i = 0; i < 50 && total != 13L; ++i) {
+        Thread.sleep(100);
+        total = service.getTrashSize();
+      }
+      assertEquals(13L,
+                   total);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+}
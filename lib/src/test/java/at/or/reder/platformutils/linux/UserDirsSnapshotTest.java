@@ -0,0 +1,158 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UserDirsSnapshotTest {
+
+  @TempDir
+  Path home;
+
+  private Path writeUserDirs(String desktop) throws IOException
+  {
+    Path config = Files.createDirectories(home.resolve(".config"));
+    // like xdg-user-dirs-update, which replaces the file by a rename
+    Path tmp = Files.writeString(config.resolve("user-dirs.dirs.tmp"),
+                                 "XDG_DESKTOP_DIR=\"$HOME/" + desktop + "\"\n");
+    return Files.move(tmp,
+                      config.resolve("user-dirs.dirs"),
+                      StandardCopyOption.REPLACE_EXISTING,
+                      StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private UserDirsSnapshot createSnapshot(Runnable onChange)
+  {
+    return new UserDirsSnapshot(home,
+                                home.resolve(".config/user-dirs.dirs"),
+                                home.resolve("missing.defaults"),
+                                onChange);
+  }
+
+  @Test
+  void testGetLoadsOnce() throws IOException
+  {
+    writeUserDirs("Desktop");
+    UserDirsSnapshot snapshot = createSnapshot(() -> {
+    });
+    assertEquals(home.resolve("Desktop"),
+                 snapshot.get().get("XDG_DESKTOP_DIR"));
+    writeUserDirs("Schreibtisch");
+    // not watching, so the snapshot is kept until reloaded
+    assertSame(snapshot.get(),
+               snapshot.get());
+    assertEquals(home.resolve("Desktop"),
+                 snapshot.get().get("XDG_DESKTOP_DIR"));
+    assertTrue(snapshot.reload());
+    assertEquals(home.resolve("Schreibtisch"),
+                 snapshot.get().get("XDG_DESKTOP_DIR"));
+    assertFalse(snapshot.reload());
+  }
+
+  @Test
+  void testConcurrentReloadsPublishTheLatestContent() throws IOException, InterruptedException
+  {
+    writeUserDirs("d0");
+    UserDirsSnapshot snapshot = createSnapshot(() -> {
+    });
+    snapshot.get();
+    int threads = 4;
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] reloaders = new Thread[threads];
+    for (int t = 0; t < threads; ++t) {
+      reloaders[t] = Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          return;
+        }
+        for (int i = 0; i < 50; ++i) {
+          snapshot.reload();
+        }
+      });
+    }
+    start.countDown();
+    for (int i = 1; i <= 50; ++i) {
+      writeUserDirs("d" + i);
+    }
+    for (Thread reloader : reloaders) {
+      reloader.join();
+    }
+    // a reload after the last write, no older parse may replace its result
+    snapshot.reload();
+    assertEquals(home.resolve("d50"),
+                 snapshot.get().get("XDG_DESKTOP_DIR"));
+  }
+
+  @Test
+  void testWatchingNotifiesChanges() throws IOException, InterruptedException
+  {
+    writeUserDirs("Desktop");
+    CountDownLatch changed = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    UserDirsSnapshot snapshot = createSnapshot(() -> {
+      calls.incrementAndGet();
+      changed.countDown();
+    });
+    snapshot.get();
+    snapshot.startWatching();
+    try {
+      writeUserDirs("Schreibtisch");
+      assertTrue(changed.await(10,
+                               TimeUnit.SECONDS));
+      assertEquals(home.resolve("Schreibtisch"),
+                   snapshot.get().get("XDG_DESKTOP_DIR"));
+    } finally {
+      snapshot.stopWatching();
+    }
+    int notified = calls.get();
+    writeUserDirs("Desktop");
+    Thread.sleep(300);
+    // no longer watching
+    assertEquals(notified,
+                 calls.get());
+  }
+
+  @Test
+  void testStartWatchingReportsChangesMadeMeanwhile() throws IOException
+  {
+    writeUserDirs("Desktop");
+    AtomicInteger calls = new AtomicInteger();
+    UserDirsSnapshot snapshot = createSnapshot(calls::incrementAndGet);
+    snapshot.get();
+    writeUserDirs("Schreibtisch");
+    snapshot.startWatching();
+    snapshot.stopWatching();
+    assertEquals(1,
+                 calls.get());
+    assertEquals(home.resolve("Schreibtisch"),
+                 snapshot.get().get("XDG_DESKTOP_DIR"));
+  }
+
+}
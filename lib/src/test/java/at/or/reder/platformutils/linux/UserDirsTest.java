@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.linux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UserDirsTest {
+
+  @TempDir
+  Path home;
+
+  @Test
+  void testLoad() throws IOException
+  {
+    Path defaults = Files.writeString(home.resolve("user-dirs.defaults"),
+                                      "# default folders\nDESKTOP=Desktop\nMUSIC=Music\nVIDEOS=Videos\n");
+    Path userDirs = Files.writeString(home.resolve("user-dirs.dirs"),
+                                      """
+                                      # written by xdg-user-dirs-update
+                                      XDG_DESKTOP_DIR="$HOME/Schreibtisch"
+                                      XDG_MUSIC_DIR="${HOME}/Meine Musik"
+                                      XDG_DOWNLOAD_DIR=/data/downloads
+                                      XDG_TEMPLATES_DIR="$HOME/"
+                                      XDG_PUBLICSHARE_DIR=""
+                                      """);
+    Map<String, Path> dirs = UserDirs.load(home,
+                                           userDirs,
+                                           defaults);
+    assertEquals(home.resolve("Schreibtisch"),
+                 dirs.get("XDG_DESKTOP_DIR"));
+    assertEquals(home.resolve("Meine Musik"),
+                 dirs.get("XDG_MUSIC_DIR"));
+    assertEquals(Path.of("/data/downloads"),
+                 dirs.get("XDG_DOWNLOAD_DIR"));
+    assertEquals(home,
+                 dirs.get("XDG_TEMPLATES_DIR"));
+    // only in the defaults
+    assertEquals(home.resolve("Videos"),
+                 dirs.get("XDG_VIDEOS_DIR"));
+    assertFalse(dirs.containsKey("XDG_PUBLICSHARE_DIR"));
+  }
+
+  @Test
+  void testMissingFiles()
+  {
+    assertTrue(UserDirs.load(home,
+                             home.resolve("missing.dirs"),
+                             home.resolve("missing.defaults")).isEmpty());
+  }
+
+  @Test
+  void testResultIsImmutable()
+  {
+    Map<String, Path> dirs = UserDirs.load(home,
+                                           home.resolve("missing.dirs"),
+                                           home.resolve("missing.defaults"));
+    assertThrows(UnsupportedOperationException.class,
+                 () -> dirs.put("XDG_DESKTOP_DIR",
+                                home));
+  }
+
+}
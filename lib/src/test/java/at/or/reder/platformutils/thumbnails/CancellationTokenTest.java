@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class CancellationTokenTest {
+
+  @Test
+  void testListenersFireOnce() throws InterruptedIOException
+  {
+    CancellationToken token = CancellationToken.create();
+    AtomicInteger calls = new AtomicInteger();
+    token.addCancelListener(calls::incrementAndGet);
+    token.cancel();
+    token.cancel();
+    assertEquals(1,
+                 calls.get());
+    assertTrue(token.isCancelled());
+    // registered after cancel: called immediately
+    token.addCancelListener(calls::incrementAndGet);
+    assertEquals(2,
+                 calls.get());
+    assertThrows(InterruptedIOException.class,
+                 token::throwIfCancelled);
+  }
+
+  @Test
+  void testDeadlineFiresListener() throws InterruptedException
+  {
+    CancellationToken token = CancellationToken.withTimeout(Duration.ofMillis(20));
+    CountDownLatch fired = new CountDownLatch(1);
+    token.addCancelListener(fired::countDown);
+    assertTrue(fired.await(5,
+                           TimeUnit.SECONDS));
+    assertTrue(token.isDeadlineExceeded());
+    InterruptedIOException ex = assertThrows(InterruptedIOException.class,
+                                             token::throwIfCancelled);
+    assertTrue(ex.getMessage().contains("deadline"));
+  }
+
+  @Test
+  void testRemovedListenerReleasesTimer() throws InterruptedException
+  {
+    CancellationToken token = CancellationToken.withTimeout(Duration.ofMillis(50));
+    AtomicInteger calls = new AtomicInteger();
+    Runnable listener = calls::incrementAndGet;
+    token.addCancelListener(listener);
+    token.removeCancelListener(listener);
+    Thread.sleep(150);
+    assertEquals(0,
+                 calls.get());
+    // polling still sees the deadline
+    assertTrue(token.isCancelled());
+  }
+
+  @Test
+  void testClosedTokenDoesNotFire() throws InterruptedException
+  {
+    AtomicInteger calls = new AtomicInteger();
+    try (CancellationToken token = CancellationToken.withTimeout(Duration.ofMillis(50))) {
+      token.addCancelListener(calls::incrementAndGet);
+    }
+    Thread.sleep(150);
+    assertEquals(0,
+                 calls.get());
+  }
+
+  @Test
+  void testTimerRestartsForNewListener() throws InterruptedException
+  {
+    CancellationToken token = CancellationToken.withTimeout(Duration.ofMillis(50));
+    Runnable first = () -> {
+    };
+    token.addCancelListener(first);
+    token.removeCancelListener(first);
+    CountDownLatch fired = new CountDownLatch(1);
+    token.addCancelListener(fired::countDown);
+    assertTrue(fired.await(5,
+                           TimeUnit.SECONDS));
+  }
+
+}
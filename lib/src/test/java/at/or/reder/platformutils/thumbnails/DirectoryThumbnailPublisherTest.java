@@ -0,0 +1,300 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.or.reder.platformutils.ThumbnailService;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectoryThumbnailPublisherTest {
+
+  @TempDir
+  Path dir;
+
+  /**
+   * Files named {@code cached*} have a thumbnail, {@code broken*} fail, all others are generated.
+   */
+  private static class FakeService implements ThumbnailService {
+
+    final AtomicInteger generated = new AtomicInteger();
+    volatile CountDownLatch block;
+    final CountDownLatch aborted = new CountDownLatch(1);
+
+    @Override
+    public Path getThumbnail(Path file,
+                             ThumbnailSize thumbSize,
+                             ThumbnailGenerator generator) throws IOException
+    {
+      return getThumbnail(file,
+                          thumbSize,
+                          generator,
+                          CancellationToken.create());
+    }
+
+    @Override
+    public Path getThumbnail(Path file,
+                             ThumbnailSize thumbSize,
+                             ThumbnailGenerator generator,
+                             CancellationToken token) throws IOException
+    {
+      generated.incrementAndGet();
+      if (file.getFileName().toString().startsWith("broken")) {
+        throw new IOException("broken");
+      }
+      CountDownLatch b = block;
+      if (b != null) {
+        token.addCancelListener(aborted::countDown);
+        try {
+          b.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        token.throwIfCancelled();
+      }
+      return file.resolveSibling(file.getFileName() + ".png");
+    }
+
+    @Override
+    public Optional<Path> getCachedThumbnail(Path file,
+                                             ThumbnailSize thumbSize)
+    {
+      if (file.getFileName().toString().startsWith("cached")) {
+        return Optional.of(file.resolveSibling(file.getFileName() + ".png"));
+      }
+      return Optional.empty();
+    }
+
+  }
+
+  private static class Collector implements Flow.Subscriber<ThumbnailResult> {
+
+    final List<ThumbnailResult> results = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final long initialRequest;
+    volatile Flow.Subscription subscription;
+
+    Collector(long initialRequest)
+    {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+      this.subscription = subscription;
+      subscription.request(initialRequest);
+    }
+
+    @Override
+    public void onNext(ThumbnailResult item)
+    {
+      results.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+      error.set(throwable);
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete()
+    {
+      done.countDown();
+    }
+
+  }
+
+  private void createFiles(String prefix,
+                           int count) throws IOException
+  {
+    for (int i = 0; i < count; ++i) {
+      Files.createFile(dir.resolve(prefix + i));
+    }
+  }
+
+  private DirectoryThumbnailPublisher publisher(ThumbnailService service,
+                                                Path directory,
+                                                int parallelism,
+                                                int bufferSize,
+                                                Set<CancellationToken> running)
+  {
+    return new DirectoryThumbnailPublisher(service,
+                                           directory,
+                                           Files::isRegularFile,
+                                           ThumbnailSize.NORMAL,
+                                           null,
+                                           parallelism,
+                                           bufferSize,
+                                           running);
+  }
+
+  @Test
+  void testAllFilesAreEmitted() throws Exception
+  {
+    createFiles("cached",
+                3);
+    createFiles("new",
+                5);
+    createFiles("broken",
+                2);
+    Files.createDirectory(dir.resolve("subdir"));
+    FakeService service = new FakeService();
+    Set<CancellationToken> running = ConcurrentHashMap.newKeySet();
+    Collector collector = new Collector(Long.MAX_VALUE);
+    publisher(service,
+              dir,
+              4,
+              Flow.defaultBufferSize(),
+              running).subscribe(collector);
+    assertTrue(collector.done.await(10,
+                                    TimeUnit.SECONDS));
+    assertNull(collector.error.get());
+    assertEquals(10,
+                 collector.results.size());
+    assertEquals(3,
+                 collector.results.stream().filter(ThumbnailResult::isCached).count());
+    assertEquals(2,
+                 collector.results.stream().filter(r -> r.getError() != null).count());
+    // cached thumbnails are not generated
+    assertEquals(7,
+                 service.generated.get());
+    assertTrue(running.isEmpty());
+  }
+
+  @Test
+  void testSlowSubscriberStopsGeneration() throws Exception
+  {
+    createFiles("new",
+                200);
+    FakeService service = new FakeService();
+    Collector collector = new Collector(1);
+    publisher(service,
+              dir,
+              1,
+              1,
+              ConcurrentHashMap.newKeySet()).subscribe(collector);
+    Thread.sleep(300);
+    assertEquals(1,
+                 collector.results.size());
+    // one delivered, a few buffered or blocked in submit; the listing does not run ahead
+    assertTrue(service.generated.get() < 10,
+               "generated " + service.generated.get());
+    collector.subscription.request(Long.MAX_VALUE);
+    assertTrue(collector.done.await(10,
+                                    TimeUnit.SECONDS));
+    assertEquals(200,
+                 collector.results.size());
+  }
+
+  @Test
+  void testCancelAbortsRunningGeneration() throws Exception
+  {
+    createFiles("new",
+                4);
+    FakeService service = new FakeService();
+    service.block = new CountDownLatch(1);
+    Set<CancellationToken> running = ConcurrentHashMap.newKeySet();
+    Collector collector = new Collector(Long.MAX_VALUE);
+    publisher(service,
+              dir,
+              2,
+              Flow.defaultBufferSize(),
+              running).subscribe(collector);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (service.generated.get() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(running.isEmpty());
+    collector.subscription.cancel();
+    assertTrue(service.aborted.await(10,
+                                     TimeUnit.SECONDS));
+    service.block.countDown();
+    while (!running.isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(running.isEmpty());
+    // at most the parallel generations were started, none delivered after cancel
+    assertTrue(service.generated.get() <= 2);
+    assertTrue(collector.results.isEmpty());
+  }
+
+  @Test
+  void testMissingDirectoryTerminatesWithError() throws Exception
+  {
+    Collector collector = new Collector(Long.MAX_VALUE);
+    publisher(new FakeService(),
+              dir.resolve("missing"),
+              1,
+              Flow.defaultBufferSize(),
+              ConcurrentHashMap.newKeySet()).subscribe(collector);
+    assertTrue(collector.done.await(10,
+                                    TimeUnit.SECONDS));
+    assertNotNull(collector.error.get());
+    assertTrue(collector.error.get() instanceof IOException);
+  }
+
+  @Test
+  void testEverySubscriptionListsAgain() throws Exception
+  {
+    createFiles("new",
+                2);
+    FakeService service = new FakeService();
+    DirectoryThumbnailPublisher publisher = publisher(service,
+                                                      dir,
+                                                      1,
+                                                      Flow.defaultBufferSize(),
+                                                      ConcurrentHashMap.newKeySet());
+    Collector first = new Collector(Long.MAX_VALUE);
+    publisher.subscribe(first);
+    assertTrue(first.done.await(10,
+                                TimeUnit.SECONDS));
+    createFiles("more",
+                1);
+    Collector second = new Collector(Long.MAX_VALUE);
+    publisher.subscribe(second);
+    assertTrue(second.done.await(10,
+                                 TimeUnit.SECONDS));
+    assertEquals(2,
+                 first.results.size());
+    assertEquals(3,
+                 second.results.size());
+  }
+
+}
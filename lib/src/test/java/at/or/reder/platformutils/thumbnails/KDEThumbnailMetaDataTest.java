@@ -0,0 +1,202 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.thumbnails;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class KDEThumbnailMetaDataTest {
+
+  private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+  @TempDir
+  Path dir;
+
+  /**
+   * Builds PNG files chunk by chunk; the parser does not check CRCs, so they are left zero.
+   */
+  private static final class PngBuilder {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    PngBuilder() throws IOException
+    {
+      out.write(PNG_SIGNATURE);
+      chunk("IHDR",
+            new byte[13]);
+    }
+
+    PngBuilder chunk(String type,
+                     byte[] data) throws IOException
+    {
+      out.writeInt(data.length);
+      out.write(type.getBytes(StandardCharsets.ISO_8859_1));
+      out.write(data);
+      out.writeInt(0);
+      return this;
+    }
+
+    PngBuilder text(String keyword,
+                    String value) throws IOException
+    {
+      return chunk("tEXt",
+                   (keyword + "\0" + value).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    PngBuilder itxt(String keyword,
+                    String value) throws IOException
+    {
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      data.write(keyword.getBytes(StandardCharsets.ISO_8859_1));
+      // terminator, uncompressed, method, empty language tag, empty translated keyword
+      data.write(new byte[]{0, 0, 0, 0, 0});
+      data.write(value.getBytes(StandardCharsets.UTF_8));
+      return chunk("iTXt",
+                   data.toByteArray());
+    }
+
+    Path write(Path file) throws IOException
+    {
+      return Files.write(file,
+                         bytes.toByteArray());
+    }
+
+  }
+
+  private static KDEThumbnailMetaData read(Path file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file,
+                                                StandardOpenOption.READ)) {
+      return KDEThumbnailMetaData.fromPng(channel);
+    }
+  }
+
+  @Test
+  void testTextChunks() throws IOException
+  {
+    Path file = new PngBuilder()
+            .text(ThumbnailMetaData.THUMB_MTIME,
+                  "1700000000")
+            .text(ThumbnailMetaData.THUMB_SIZE,
+                  "12345")
+            .itxt(ThumbnailMetaData.THUMB_URI,
+                  "file:///tmp/%C3%A4.png")
+            .text(ThumbnailMetaData.THUMB_WIDTH,
+                  "640")
+            .text(ThumbnailMetaData.THUMB_HEIGHT,
+                  "480")
+            .text("Comment",
+                  "ignored")
+            .chunk("IDAT",
+                   new byte[16])
+            .chunk("IEND",
+                   new byte[0])
+            .write(dir.resolve("a.png"));
+    KDEThumbnailMetaData meta = read(file);
+    assertNotNull(meta);
+    assertEquals(1700000000L,
+                 meta.getMTime());
+    assertEquals(12345L,
+                 meta.getSize());
+    assertEquals(URI.create("file:///tmp/%C3%A4.png"),
+                 meta.getUri());
+    assertEquals(640,
+                 meta.getWidth());
+    assertEquals(480,
+                 meta.getHeight());
+  }
+
+  @Test
+  void testReadingStopsAtImageData() throws IOException
+  {
+    // chunks behind the image data are never looked at
+    Path file = new PngBuilder()
+            .text(ThumbnailMetaData.THUMB_MTIME,
+                  "1")
+            .chunk("IDAT",
+                   new byte[8])
+            .text(ThumbnailMetaData.THUMB_SIZE,
+                  "99")
+            .write(dir.resolve("a.png"));
+    KDEThumbnailMetaData meta = read(file);
+    assertEquals(1L,
+                 meta.getMTime());
+    assertEquals(0L,
+                 meta.getSize());
+  }
+
+  @Test
+  void testTruncatedFile() throws IOException
+  {
+    byte[] full = Files.readAllBytes(new PngBuilder()
+            .text(ThumbnailMetaData.THUMB_MTIME,
+                  "7")
+            .text(ThumbnailMetaData.THUMB_SIZE,
+                  "99")
+            .write(dir.resolve("full.png")));
+    // cut inside the second text chunk
+    Path file = Files.write(dir.resolve("cut.png"),
+                            Arrays.copyOf(full,
+                                                    full.length - 6));
+    KDEThumbnailMetaData meta = read(file);
+    assertEquals(7L,
+                 meta.getMTime());
+    assertEquals(0L,
+                 meta.getSize());
+  }
+
+  @Test
+  void testNotPng() throws IOException
+  {
+    assertNull(read(Files.writeString(dir.resolve("a.txt"),
+                                      "not a png file")));
+    assertNull(read(Files.write(dir.resolve("empty.png"),
+                                new byte[0])));
+  }
+
+  @Test
+  void testLargeTextChunkIsSkipped() throws IOException
+  {
+    Path file = new PngBuilder()
+            .text(ThumbnailMetaData.THUMB_DESCRIPTION,
+                  "x".repeat(70 * 1024))
+            .text(ThumbnailMetaData.THUMB_MTIME,
+                  "3")
+            .chunk("IEND",
+                   new byte[0])
+            .write(dir.resolve("a.png"));
+    KDEThumbnailMetaData meta = read(file);
+    assertNull(meta.getDescription());
+    assertEquals(3L,
+                 meta.getMTime());
+  }
+
+}
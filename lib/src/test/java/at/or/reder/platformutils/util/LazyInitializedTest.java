@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class LazyInitializedTest {
+
+  @Test
+  void testInitializedOnce()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInitialized<Integer> lazy = new LazyInitialized<>(calls::incrementAndGet);
+    assertFalse(lazy.isInitialized());
+    assertEquals(1,
+                 lazy.get());
+    assertEquals(1,
+                 lazy.get());
+    assertTrue(lazy.isInitialized());
+    assertEquals(1,
+                 calls.get());
+  }
+
+  @Test
+  void testSingleFlight() throws Exception
+  {
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    LazyInitialized<Integer> lazy = new LazyInitialized<>(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      return calls.incrementAndGet();
+    });
+    List<Future<Integer>> results = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < 100; ++i) {
+        results.add(executor.submit(lazy::get));
+      }
+      // let the callers pile up behind the first one
+      Thread.sleep(100);
+      release.countDown();
+      for (Future<Integer> f : results) {
+        assertEquals(1,
+                     f.get(10,
+                           TimeUnit.SECONDS));
+      }
+    }
+    assertEquals(1,
+                 calls.get());
+  }
+
+  @Test
+  void testNullValue()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInitialized<String> lazy = new LazyInitialized<>(() -> {
+      calls.incrementAndGet();
+      return null;
+    });
+    assertNull(lazy.get());
+    assertEquals(Optional.empty(),
+                 lazy.getOptional());
+    assertEquals(1,
+                 calls.get());
+  }
+
+  @Test
+  void testReset()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInitialized<Integer> lazy = new LazyInitialized<>(calls::incrementAndGet);
+    assertEquals(1,
+                 lazy.get());
+    lazy.reset();
+    assertFalse(lazy.isInitialized());
+    assertEquals(2,
+                 lazy.get());
+  }
+
+  @Test
+  void testTimeToLive() throws InterruptedException
+  {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInitialized<Integer> lazy = new LazyInitialized<>(calls::incrementAndGet,
+                                                          Duration.ofMillis(50));
+    assertEquals(1,
+                 lazy.get());
+    assertEquals(1,
+                 lazy.get());
+    Thread.sleep(80);
+    assertFalse(lazy.isInitialized());
+    assertEquals(2,
+                 lazy.get());
+  }
+
+  @Test
+  void testFailureIsRetried()
+  {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInitialized<String> lazy = new LazyInitialized<>(() -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalStateException("first call fails");
+      }
+      return "ok";
+    });
+    assertThrows(IllegalStateException.class,
+                 lazy::get);
+    assertFalse(lazy.isInitialized());
+    assertEquals("ok",
+                 lazy.get());
+  }
+
+  @Test
+  void testPrefetchAsync() throws Exception
+  {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInitialized<Integer> lazy = new LazyInitialized<>(calls::incrementAndGet);
+    try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+      assertEquals(1,
+                   lazy.prefetchAsync(executor).get(10,
+                                                    TimeUnit.SECONDS));
+      assertTrue(lazy.isInitialized());
+      // already available, completes without running the initializer
+      assertTrue(lazy.prefetchAsync(executor).isDone());
+    }
+    assertEquals(1,
+                 calls.get());
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2024 Wolfgang Reder.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.or.reder.platformutils.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+
+public class ShellWordTest {
+
+  private static final UnaryOperator<String> HOME = name -> "HOME".equals(name) ? "/home/user" : null;
+
+  private static String parse(String word)
+  {
+    return ShellWord.parse(word,
+                           0,
+                           HOME);
+  }
+
+  @Test
+  void testPlainWord()
+  {
+    assertEquals("Desktop",
+                 parse("Desktop"));
+    assertEquals("",
+                 parse(""));
+  }
+
+  @Test
+  void testStartOffset()
+  {
+    assertEquals("Music",
+                 ShellWord.parse("XDG_MUSIC_DIR=Music",
+                                 14));
+  }
+
+  @Test
+  void testDoubleQuotes()
+  {
+    assertEquals("/home/user/My Music",
+                 parse("\"$HOME/My Music\""));
+    assertEquals("Ubuntu 22.04.4 LTS",
+                 parse("\"Ubuntu 22.04.4 LTS\""));
+  }
+
+  @Test
+  void testBackslashInDoubleQuotes()
+  {
+    // only $ ` " \ are escaped, other backslashes are literal
+    assertEquals("a$b`c\"d\\e",
+                 parse("\"a\\$b\\`c\\\"d\\\\e\""));
+    assertEquals("C:\\temp\\n",
+                 parse("\"C:\\temp\\n\""));
+  }
+
+  @Test
+  void testBackslashUnquoted()
+  {
+    assertEquals("a b",
+                 parse("a\\ b"));
+    assertEquals("an",
+                 parse("a\\n"));
+  }
+
+  @Test
+  void testSingleQuotesAreLiteral()
+  {
+    assertEquals("$HOME/a\\b \"c\"",
+                 parse("'$HOME/a\\b \"c\"'"));
+  }
+
+  @Test
+  void testConcatenatedQuotes()
+  {
+    assertEquals("/home/user/a b'c",
+                 parse("$HOME/'a b'\"'c\""));
+  }
+
+  @Test
+  void testWhitespaceEndsWord()
+  {
+    assertEquals("debian",
+                 parse("debian ubuntu"));
+    assertEquals("x",
+                 parse("\"x\" # comment"));
+  }
+
+  @Test
+  void testComment()
+  {
+    assertEquals("",
+                 parse("# comment"));
+    // inside a word # is no comment
+    assertEquals("a#b",
+                 parse("a#b"));
+    assertEquals("#a",
+                 parse("\"#a\""));
+  }
+
+  @Test
+  void testExpansion()
+  {
+    assertEquals("/home/user/x",
+                 parse("${HOME}/x"));
+    assertEquals("/home/user",
+                 parse("$HOME"));
+    // unknown and incomplete references are kept
+    assertEquals("$HOMEDIR/x",
+                 parse("$HOMEDIR/x"));
+    assertEquals("${HOME",
+                 parse("\"${HOME\""));
+    assertEquals("a$",
+                 parse("a$"));
+    assertEquals("$HOME",
+                 ShellWord.parse("$HOME",
+                                 0));
+  }
+
+}